@@ -0,0 +1,126 @@
+package com.example.mongock.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates change-unit files of any size with a streaming generator, so even 10M-document files
+ * are written without holding them in memory.
+ */
+public final class ChangeUnitFiles {
+
+    public static final String COLLECTION_NAME = "bench_customer";
+
+    private static final String[] CITIES = {"Pune", "Berlin", "Austin", "Lyon", "Osaka"};
+
+    private ChangeUnitFiles() {
+    }
+
+    /**
+     * Writes {@code {"collectionName": ..., "insert": [...]}} with {@code documentCount} customer documents.
+     */
+    public static Path insertFile(Path directory, int documentCount) throws IOException {
+        Path file = directory.resolve("insert_" + documentCount + ".json");
+        try (JsonGenerator generator = open(file)) {
+            generator.writeStartObject();
+            generator.writeStringField("collectionName", COLLECTION_NAME);
+            generator.writeArrayFieldStart("insert");
+            for (int i = 0; i < documentCount; i++) {
+                writeCustomer(generator, i);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return file;
+    }
+
+    /**
+     * Writes an update change unit with one {@code $inc} query per customer id.
+     */
+    public static Path updateFile(Path directory, int queryCount) throws IOException {
+        Path file = directory.resolve("update_" + queryCount + ".json");
+        try (JsonGenerator generator = open(file)) {
+            generator.writeStartObject();
+            generator.writeStringField("collectionName", COLLECTION_NAME);
+            generator.writeObjectFieldStart("update");
+            generator.writeArrayFieldStart("queries");
+            for (int i = 0; i < queryCount; i++) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("query");
+                generator.writeNumberField("customerId", i);
+                generator.writeEndObject();
+                generator.writeObjectFieldStart("update");
+                generator.writeObjectFieldStart("$inc");
+                generator.writeNumberField("visits", 1);
+                generator.writeEndObject();
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a delete change unit with one query per customer id.
+     */
+    public static Path deleteFile(Path directory, int queryCount) throws IOException {
+        Path file = directory.resolve("delete_" + queryCount + ".json");
+        try (JsonGenerator generator = open(file)) {
+            generator.writeStartObject();
+            generator.writeStringField("collectionName", COLLECTION_NAME);
+            generator.writeObjectFieldStart("delete");
+            generator.writeArrayFieldStart("queries");
+            for (int i = 0; i < queryCount; i++) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart("query");
+                generator.writeNumberField("customerId", i);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        return file;
+    }
+
+    public static Path tempDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("mongock-bench");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    private static void writeCustomer(JsonGenerator generator, int id) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("customerId", id);
+        generator.writeStringField("name", "Customer " + id);
+        generator.writeStringField("email", "customer" + id + "@example.com");
+        generator.writeNumberField("age", 18 + id % 70);
+        generator.writeBooleanField("active", id % 3 != 0);
+        generator.writeNumberField("balance", id * 1.25);
+        generator.writeArrayFieldStart("tags");
+        generator.writeString(id % 2 == 0 ? "retail" : "wholesale");
+        generator.writeString("tier-" + id % 5);
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("address");
+        generator.writeStringField("city", CITIES[id % CITIES.length]);
+        generator.writeStringField("zip", String.format("%05d", id % 100000));
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static JsonGenerator open(Path file) throws IOException {
+        File target = file.toFile();
+        target.deleteOnExit();
+        return new ObjectMapper().getFactory().createGenerator(target, JsonEncoding.UTF8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mongock.benchmarks;
+
+import com.example.mongock.util.BsonConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonNode to {@link Document} conversion: the original {@code Document.parse(node.toString())} round trip
+ * against {@link BsonConverter}. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"1000"})
+    public int documentCount;
+
+    private JsonNode documents;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        Path file = ChangeUnitFiles.insertFile(ChangeUnitFiles.tempDirectory(), documentCount);
+        documents = new ObjectMapper().readTree(file.toFile()).get("insert");
+    }
+
+    @Benchmark
+    public void parseString(Blackhole blackhole, DocumentCounter counter) {
+        for (JsonNode document : documents) {
+            blackhole.consume(Document.parse(document.toString()));
+        }
+        counter.documents += documents.size();
+    }
+
+    @Benchmark
+    public void direct(Blackhole blackhole, DocumentCounter counter) {
+        for (JsonNode document : documents) {
+            blackhole.consume(BsonConverter.toDocument(document));
+        }
+        counter.documents += documents.size();
+    }
+}
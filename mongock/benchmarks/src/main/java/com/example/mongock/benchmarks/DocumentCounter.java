@@ -0,0 +1,23 @@
+package com.example.mongock.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary JMH counter: benchmarks add the documents they processed, and JMH reports them as docs/sec
+ * next to the primary score.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class DocumentCounter {
+
+    public long documents;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        documents = 0;
+    }
+}
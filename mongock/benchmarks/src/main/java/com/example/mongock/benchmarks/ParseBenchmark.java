@@ -0,0 +1,173 @@
+package com.example.mongock.benchmarks;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.Repository.ChangeUnitCheckpointRepository;
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.example.mongock.model.CollectionData;
+import com.example.mongock.service.ChangeLogService;
+import com.example.mongock.service.ChangeLogWriter;
+import com.example.mongock.service.ChangeUnitPlanner;
+import com.example.mongock.service.ChangeUnitService;
+import com.example.mongock.service.ChangeUnitStreamReader;
+import com.example.mongock.service.ChangeUnitTransactionService;
+import com.example.mongock.service.CollectionSwapService;
+import com.example.mongock.service.MigrationClientProfile;
+import com.example.mongock.service.MigrationLockService;
+import com.example.mongock.service.MigrationMetrics;
+import com.example.mongock.service.MigrationThrottle;
+import com.example.mongock.service.ReactiveChangeUnitEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the tree parse path ({@code readTree} + {@code readValue(CollectionData)}) with the streaming
+ * reader on generated insert files. The reader comes from a small Spring context whose {@link ChangeUnitService}
+ * hands documents to a blackhole, so nothing is written and no mongod is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1000", "100000"})
+    public int documentCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private File insertFile;
+
+    private ConfigurableApplicationContext context;
+    private ConsumingChangeUnitService consumingService;
+    private ChangeUnitStreamReader streamReader;
+    private ChangeUnitPlanner changeUnitPlanner;
+    private MongoTemplate mongoTemplate;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        Path directory = ChangeUnitFiles.tempDirectory();
+        insertFile = ChangeUnitFiles.insertFile(directory, documentCount).toFile();
+
+        context = new SpringApplicationBuilder(StreamingConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        consumingService = context.getBean(ConsumingChangeUnitService.class);
+        streamReader = context.getBean(ChangeUnitStreamReader.class);
+        changeUnitPlanner = context.getBean(ChangeUnitPlanner.class);
+        mongoTemplate = context.getBean(MongoTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public void treeParse(Blackhole blackhole, DocumentCounter counter) throws IOException {
+        JsonNode jsonTree = objectMapper.readTree(insertFile);
+        blackhole.consume(jsonTree.has("drop"));
+        CollectionData collectionData = objectMapper.readValue(insertFile, CollectionData.class);
+        for (JsonNode document : collectionData.getInsert().orElseThrow()) {
+            blackhole.consume(document);
+            counter.documents++;
+        }
+    }
+
+    @Benchmark
+    public void streamingParse(Blackhole blackhole, DocumentCounter counter) throws IOException {
+        consumingService.drainInto(blackhole, counter);
+        String filePath = insertFile.getPath();
+        streamReader.processCollectionData("bench", filePath, changeUnitPlanner.compile(filePath), mongoTemplate);
+    }
+
+    /**
+     * The stream reader's own wiring, with the consuming writer in place of {@link ChangeUnitService}. The Mongo
+     * client is created but never connected: the reader only reaches the database through the writer.
+     */
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import({ChangeUnitStreamReader.class, ChangeUnitTransactionService.class, ChangeUnitPlanner.class, ChangeLogService.class,
+            ChangeLogWriter.class, ChangeLogRepository.class, ChangeUnitCheckpointRepository.class, ReactiveChangeUnitEngine.class,
+            MigrationClientProfile.class, MigrationMetrics.class, MigrationThrottle.class, MigrationLockService.class,
+            MigrationLockRepository.class, CollectionSwapService.class})
+    static class StreamingConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        ConsumingChangeUnitService consumingChangeUnitService(ChangeLogService changeLogService, MigrationMetrics migrationMetrics,
+                                                              CollectionSwapService collectionSwapService, MigrationThrottle migrationThrottle,
+                                                              MigrationLockService migrationLockService) {
+            return new ConsumingChangeUnitService(changeLogService, migrationMetrics, collectionSwapService, migrationThrottle,
+                    migrationLockService);
+        }
+    }
+
+    /**
+     * Stands in for the writers: drains what the stream reader hands over without touching a database.
+     */
+    static class ConsumingChangeUnitService extends ChangeUnitService {
+        private Blackhole blackhole;
+        private DocumentCounter counter;
+
+        ConsumingChangeUnitService(ChangeLogService changeLogService, MigrationMetrics migrationMetrics,
+                                   CollectionSwapService collectionSwapService, MigrationThrottle migrationThrottle,
+                                   MigrationLockService migrationLockService) {
+            super(changeLogService, migrationMetrics, collectionSwapService, migrationThrottle, migrationLockService);
+        }
+
+        void drainInto(Blackhole blackhole, DocumentCounter counter) {
+            this.blackhole = blackhole;
+            this.counter = counter;
+        }
+
+        @Override
+        public void insertDocuments(String changeUnitId, String collectionName, Iterator<JsonNode> documents, MongoTemplate mongoTemplate) {
+            while (documents.hasNext()) {
+                blackhole.consume(documents.next());
+                counter.documents++;
+            }
+        }
+    }
+}
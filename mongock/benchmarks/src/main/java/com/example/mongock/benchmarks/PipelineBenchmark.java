@@ -0,0 +1,152 @@
+package com.example.mongock.benchmarks;
+
+import com.example.mongock.MongockApplication;
+import com.example.mongock.service.ChangeLogWriter;
+import com.example.mongock.service.ChangeUnitPlanner;
+import com.example.mongock.service.ChangeUnitService;
+import com.example.mongock.service.ChangeUnitStreamReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Indexes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end insert/update/delete paths of {@link ChangeUnitService} and the streaming reader against a running
+ * mongod, using the application's own Spring wiring. Point it at a server with
+ * {@code -jvmArgs "-Dspring.data.mongodb.host=... -Dspring.data.mongodb.port=..."} (defaults to localhost:27017).
+ * All writes go to the {@code mongock_bench} database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final String DATABASE_NAME = "mongock_bench";
+
+    @Param({"1000", "100000"})
+    public int documentCount;
+
+    private ConfigurableApplicationContext context;
+    private ChangeUnitService changeUnitService;
+    private ChangeUnitStreamReader streamReader;
+    private ChangeUnitPlanner changeUnitPlanner;
+    private ChangeLogWriter changeLogWriter;
+    private MongoTemplate mongoTemplate;
+
+    private Path insertFile;
+    private JsonNode insertDocuments;
+    private JsonNode updateQueries;
+    private JsonNode deleteQueries;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        Path directory = ChangeUnitFiles.tempDirectory();
+        Path emptyMapping = Files.writeString(directory.resolve("changeunit_mapping.json"), "{}");
+
+        // Command-line arguments win over the packaged application.properties; the empty mapping makes the runner a no-op
+        context = new SpringApplicationBuilder(MongockApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--mongock.changeunit.file.list=" + emptyMapping);
+        changeUnitService = context.getBean(ChangeUnitService.class);
+        streamReader = context.getBean(ChangeUnitStreamReader.class);
+        changeUnitPlanner = context.getBean(ChangeUnitPlanner.class);
+        changeLogWriter = context.getBean(ChangeLogWriter.class);
+        mongoTemplate = new MongoTemplate(context.getBean(MongoClient.class), DATABASE_NAME);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        insertFile = ChangeUnitFiles.insertFile(directory, documentCount);
+        insertDocuments = objectMapper.readTree(insertFile.toFile()).get("insert");
+        updateQueries = objectMapper.readTree(ChangeUnitFiles.updateFile(directory, documentCount).toFile()).get("update").get("queries");
+        deleteQueries = objectMapper.readTree(ChangeUnitFiles.deleteFile(directory, documentCount).toFile()).get("delete").get("queries");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        mongoTemplate.getDb().drop();
+        context.close();
+    }
+
+    @Benchmark
+    public void insert(EmptyCollection collection, DocumentCounter counter) {
+        changeUnitService.insertDocuments("bench-insert", ChangeUnitFiles.COLLECTION_NAME, insertDocuments.elements(), mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+        counter.documents += documentCount;
+    }
+
+    @Benchmark
+    public void streamingInsert(EmptyCollection collection, DocumentCounter counter) throws IOException {
+        String filePath = insertFile.toString();
+        streamReader.processCollectionData("bench-stream", filePath, changeUnitPlanner.compile(filePath), mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+        counter.documents += documentCount;
+    }
+
+    @Benchmark
+    public void update(SeededCollection collection, DocumentCounter counter) {
+        changeUnitService.applyUpdateQueries("bench-update", ChangeUnitFiles.COLLECTION_NAME, updateQueries.elements(), false, mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+        counter.documents += documentCount;
+    }
+
+    @Benchmark
+    public void delete(SeededCollection collection, DocumentCounter counter) {
+        changeUnitService.applyDeleteQueries("bench-delete", ChangeUnitFiles.COLLECTION_NAME, deleteQueries.elements(), false, mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+        counter.documents += documentCount;
+    }
+
+    private void recreateCollection() {
+        mongoTemplate.dropCollection(ChangeUnitFiles.COLLECTION_NAME);
+        mongoTemplate.getCollection(ChangeUnitFiles.COLLECTION_NAME).createIndex(Indexes.ascending("customerId"));
+    }
+
+    /**
+     * An empty, indexed target collection before every insert invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyCollection {
+        @Setup(Level.Invocation)
+        public void reset(PipelineBenchmark benchmark) {
+            benchmark.recreateCollection();
+        }
+    }
+
+    /**
+     * A target collection holding every generated document before every update/delete invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class SeededCollection {
+        @Setup(Level.Invocation)
+        public void reset(PipelineBenchmark benchmark) {
+            benchmark.recreateCollection();
+            benchmark.changeUnitService.insertDocuments("bench-seed", ChangeUnitFiles.COLLECTION_NAME,
+                    benchmark.insertDocuments.elements(), benchmark.mongoTemplate);
+            benchmark.changeLogWriter.flush(benchmark.mongoTemplate);
+        }
+    }
+}
@@ -7,12 +7,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+// The reactive engine builds its client from the migration profile when it is used; Boot's would open a second pool
+@SpringBootApplication(exclude = {MongoReactiveAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class,
+        MongoReactiveRepositoriesAutoConfiguration.class})
 public class MongockApplication implements CommandLineRunner {
 
     private final JsonFileReader jsonFileReader;
 
+    @Value("${mongock.background.enabled:false}")
+    private boolean backgroundEnabled;
+
     @Autowired
     public MongockApplication(JsonFileReader jsonFileReader) {
         this.jsonFileReader = jsonFileReader;
@@ -25,9 +35,24 @@ public class MongockApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        if (backgroundEnabled) {
+            return;
+        }
         // Provide the path to your migrations JSON file
         jsonFileReader.processChangeUnits();
 
     }
+
+    /**
+     * In background mode the change units run on their own thread once the application has started, instead of
+     * blocking startup; the thread keeps the JVM alive until they are done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void runInBackground() {
+        if (backgroundEnabled) {
+            Thread.ofPlatform().name("mongock-background").start(jsonFileReader::processChangeUnits);
+            System.out.println("Change units started in the background");
+        }
+    }
 }
 
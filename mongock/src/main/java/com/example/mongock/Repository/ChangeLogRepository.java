@@ -1,16 +1,29 @@
 package com.example.mongock.Repository;
 
 import com.example.mongock.model.ChangeLog;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
 @Repository
 public class ChangeLogRepository {
 
+    public static final String CHANGE_LOG_COLLECTION = "change_log";
+
+    private static final String APPLIED_INDEX_NAME = "appliedAt_changeUnitId_success";
+
+    private static final String RETENTION_INDEX_NAME = "appliedAt_ttl";
+
     @Autowired
     private MongoTemplate mongoTemplate; // Ensure this is dynamically switched for the correct database
 
@@ -21,10 +34,51 @@ public class ChangeLogRepository {
         System.out.println("Checking ChangeLog for ChangeUnit: " + changeUnitId);
         System.out.println("Using Database: " + mongoTemplate.getDb().getName());
 
-        return mongoTemplate.exists(query, ChangeLog.class);
+        return mongoTemplate.exists(query, ChangeLog.class, CHANGE_LOG_COLLECTION);
     }
 
     public void saveChangeLog(ChangeLog changeLog) {
-        mongoTemplate.save(changeLog);
+        mongoTemplate.save(changeLog, CHANGE_LOG_COLLECTION);
+    }
+
+    /**
+     * Creates the index backing the per-unit summary aggregations of {@link ChangeUnitSummaryRepository}, which match and
+     * sort step entries by {@code appliedAt}; a no-op when it already exists.
+     * Creating the index also creates the change log collection on first use.
+     */
+    public void ensureIndexes(MongoTemplate targetTemplate) {
+        targetTemplate.indexOps(CHANGE_LOG_COLLECTION).ensureIndex(new Index()
+                .on("appliedAt", Sort.Direction.ASC)
+                .on("changeUnitId", Sort.Direction.ASC)
+                .on("success", Sort.Direction.ASC)
+                .named(APPLIED_INDEX_NAME));
+    }
+
+    /**
+     * Lets the server delete step entries older than {@code retentionDays} through a TTL index on {@code appliedAt},
+     * changing the expiry in place when the retention changed and dropping the index when it is 0 (keep forever).
+     * Only safe once every unit has a summary: the applied check no longer reads these entries.
+     */
+    public void ensureStepRetention(MongoTemplate targetTemplate, long retentionDays) {
+        MongoCollection<Document> changeLog = targetTemplate.getCollection(CHANGE_LOG_COLLECTION);
+        Document existing = null;
+        for (Document index : changeLog.listIndexes()) {
+            if (RETENTION_INDEX_NAME.equals(index.getString("name"))) {
+                existing = index;
+            }
+        }
+        long expireAfterSeconds = TimeUnit.DAYS.toSeconds(retentionDays);
+        if (retentionDays <= 0) {
+            if (existing != null) {
+                changeLog.dropIndex(RETENTION_INDEX_NAME);
+            }
+        } else if (existing == null) {
+            changeLog.createIndex(Indexes.ascending("appliedAt"), new IndexOptions()
+                    .name(RETENTION_INDEX_NAME)
+                    .expireAfter(expireAfterSeconds, TimeUnit.SECONDS));
+        } else if (((Number) existing.get("expireAfterSeconds")).longValue() != expireAfterSeconds) {
+            targetTemplate.executeCommand(new Document("collMod", CHANGE_LOG_COLLECTION)
+                    .append("index", new Document("name", RETENTION_INDEX_NAME).append("expireAfterSeconds", expireAfterSeconds)));
+        }
     }
 }
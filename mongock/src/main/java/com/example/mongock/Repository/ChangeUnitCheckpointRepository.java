@@ -0,0 +1,29 @@
+package com.example.mongock.Repository;
+
+import com.example.mongock.model.ChangeUnitCheckpoint;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Checkpoints of unfinished data change units, kept in the target database next to the change log.
+ * Written directly rather than through the buffered change log writer, so a checkpoint is durable as soon as it is saved.
+ */
+@Repository
+public class ChangeUnitCheckpointRepository {
+
+    public static final String CHECKPOINT_COLLECTION = "change_log_checkpoint";
+
+    public ChangeUnitCheckpoint find(MongoTemplate targetTemplate, String changeUnitId) {
+        return targetTemplate.findById(changeUnitId, ChangeUnitCheckpoint.class, CHECKPOINT_COLLECTION);
+    }
+
+    public void save(MongoTemplate targetTemplate, ChangeUnitCheckpoint checkpoint) {
+        targetTemplate.save(checkpoint, CHECKPOINT_COLLECTION);
+    }
+
+    public void delete(MongoTemplate targetTemplate, String changeUnitId) {
+        targetTemplate.remove(new Query(Criteria.where("_id").is(changeUnitId)), CHECKPOINT_COLLECTION);
+    }
+}
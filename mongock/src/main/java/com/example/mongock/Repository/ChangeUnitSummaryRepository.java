@@ -0,0 +1,132 @@
+package com.example.mongock.Repository;
+
+import com.example.mongock.model.ChangeUnitSummary;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One summary document per change unit, keyed by its id, so the applied check is a single read of a collection
+ * with as many documents as there are change units. Summaries are built from the unit's change log entries on the
+ * server, with one aggregation per unit, or for every unit at once when a database has only the older per-step log.
+ */
+@Repository
+public class ChangeUnitSummaryRepository {
+
+    public static final String SUMMARY_COLLECTION = "change_log_summary";
+
+    public Map<String, ChangeUnitSummary> findAll(MongoTemplate targetTemplate) {
+        Map<String, ChangeUnitSummary> summaries = new LinkedHashMap<>();
+        for (ChangeUnitSummary summary : targetTemplate.findAll(ChangeUnitSummary.class, SUMMARY_COLLECTION)) {
+            summaries.put(summary.getChangeUnitId(), summary);
+        }
+        return summaries;
+    }
+
+    /**
+     * Totals of the change log entries {@code changeUnitId} wrote since {@code since}, as a summary without
+     * status, file or timing.
+     */
+    public ChangeUnitSummary summarizeSteps(MongoTemplate targetTemplate, String changeUnitId, LocalDateTime since) {
+        Object sinceValue = targetTemplate.getConverter().convertToMongoType(since);
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(Filters.gte("appliedAt", sinceValue), Filters.eq("changeUnitId", changeUnitId))),
+                Aggregates.sort(Sorts.ascending("appliedAt")),
+                stepTotals());
+        Document totals = targetTemplate.getCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION).aggregate(pipeline).first();
+        ChangeUnitSummary summary = totals != null ? targetTemplate.getConverter().read(ChangeUnitSummary.class, totals) : new ChangeUnitSummary();
+        summary.setChangeUnitId(changeUnitId);
+        return summary;
+    }
+
+    /**
+     * Writes the summary of a finished run over the previous one, counting the attempt.
+     */
+    public void upsert(MongoTemplate targetTemplate, ChangeUnitSummary summary) {
+        Update update = new Update()
+                .set("status", summary.getStatus())
+                .set("fileName", summary.getFileName())
+                .set("sha256", summary.getSha256())
+                .set("startedAt", summary.getStartedAt())
+                .set("finishedAt", summary.getFinishedAt())
+                .set("durationMillis", summary.getDurationMillis())
+                .set("steps", summary.getSteps())
+                .set("failedSteps", summary.getFailedSteps())
+                .set("insertedCount", summary.getInsertedCount())
+                .set("matchedCount", summary.getMatchedCount())
+                .set("modifiedCount", summary.getModifiedCount())
+                .set("deletedCount", summary.getDeletedCount())
+                .set("error", summary.getError())
+                .inc("attempts", 1);
+        targetTemplate.upsert(byId(summary.getChangeUnitId()), update, SUMMARY_COLLECTION);
+    }
+
+    /**
+     * Records the checksum of a unit summarized from an older change log, the first time it is seen applied.
+     */
+    public void adoptChecksum(MongoTemplate targetTemplate, String changeUnitId, String sha256) {
+        targetTemplate.updateFirst(byId(changeUnitId).addCriteria(Criteria.where("sha256").is(null)),
+                Update.update("sha256", sha256), SUMMARY_COLLECTION);
+    }
+
+    /**
+     * Summarizes every unit of the per-step change log, a unit counting as applied when its most recent entry
+     * succeeded (the rule the older applied check used). With {@code write}, the result is merged into the
+     * summary collection on the server, never replacing a summary that already exists; otherwise it is only read.
+     */
+    public List<ChangeUnitSummary> backfill(MongoTemplate targetTemplate, boolean write) {
+        List<Bson> pipeline = new ArrayList<>(List.of(
+                Aggregates.sort(Sorts.ascending("appliedAt")),
+                stepTotals(),
+                new Document("$set", new Document("status", new Document("$cond", List.of("$lastSuccess", ChangeUnitSummary.APPLIED, ChangeUnitSummary.FAILED)))
+                        .append("durationMillis", new Document("$subtract", List.of("$finishedAt", "$startedAt")))
+                        .append("attempts", 1)),
+                new Document("$unset", "lastSuccess")));
+        if (write) {
+            pipeline.add(Aggregates.merge(SUMMARY_COLLECTION, new MergeOptions()
+                    .whenMatched(MergeOptions.WhenMatched.KEEP_EXISTING)
+                    .whenNotMatched(MergeOptions.WhenNotMatched.INSERT)));
+            targetTemplate.getCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION).aggregate(pipeline).allowDiskUse(true).toCollection();
+            return targetTemplate.findAll(ChangeUnitSummary.class, SUMMARY_COLLECTION);
+        }
+        List<ChangeUnitSummary> summaries = new ArrayList<>();
+        for (Document document : targetTemplate.getCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION).aggregate(pipeline).allowDiskUse(true)) {
+            summaries.add(targetTemplate.getConverter().read(ChangeUnitSummary.class, document));
+        }
+        return summaries;
+    }
+
+    /**
+     * Groups entries in {@code appliedAt} order by change unit; missing counts add up as zero.
+     */
+    private static Document stepTotals() {
+        return new Document("$group", new Document("_id", "$changeUnitId")
+                .append("steps", new Document("$sum", 1))
+                .append("failedSteps", new Document("$sum", new Document("$cond", List.of("$success", 0, 1))))
+                .append("insertedCount", new Document("$sum", "$insertedCount"))
+                .append("matchedCount", new Document("$sum", "$matchedCount"))
+                .append("modifiedCount", new Document("$sum", "$modifiedCount"))
+                .append("deletedCount", new Document("$sum", "$deletedCount"))
+                .append("startedAt", new Document("$first", "$appliedAt"))
+                .append("finishedAt", new Document("$last", "$appliedAt"))
+                .append("lastSuccess", new Document("$last", "$success")));
+    }
+
+    private static Query byId(String changeUnitId) {
+        return new Query(Criteria.where("_id").is(changeUnitId));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.mongock.Repository;
+
+import com.example.mongock.model.MigrationLock;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Atomic operations on the per-database migration lock document. Every change goes through a single
+ * conditional update, so two instances can never both believe they acquired or renewed the same lease.
+ */
+@Repository
+public class MigrationLockRepository {
+
+    public static final String LOCK_COLLECTION = "change_log_lock";
+
+    public static final String LOCK_ID = "mongock";
+
+    /**
+     * Takes the lock when it is free, expired or already held by {@code owner}, and returns it with its new
+     * fencing token; returns null while another instance holds an unexpired lease. Always majority-acknowledged,
+     * whatever the template's write concern: a lock only one node knows about could be lost on failover.
+     */
+    public MigrationLock tryAcquire(MongoTemplate targetTemplate, String owner, Duration lease) {
+        Instant now = Instant.now();
+        Bson filter = Filters.and(Filters.eq("_id", LOCK_ID),
+                Filters.or(Filters.lt("expiresAt", now), Filters.eq("owner", owner)));
+        Bson update = Updates.combine(
+                Updates.set("owner", owner),
+                Updates.set("acquiredAt", now),
+                Updates.set("expiresAt", now.plus(lease)),
+                Updates.inc("fencingToken", 1L));
+        try {
+            Document lock = lockCollection(targetTemplate)
+                    .findOneAndUpdate(filter, update, new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+            return targetTemplate.getConverter().read(MigrationLock.class, lock);
+        } catch (MongoException e) {
+            if (ErrorCategory.fromErrorCode(e.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                throw e;
+            }
+            // The lock exists and the filter did not match it: someone else holds a valid lease
+            return null;
+        }
+    }
+
+    /**
+     * Extends the lease, as long as the lock still carries the holder's fencing token; false means it was lost.
+     * Majority-acknowledged like {@link #tryAcquire}: a renewal rolled back on failover would let the lease lapse unnoticed.
+     */
+    public boolean renew(MongoTemplate targetTemplate, MigrationLock lock, Duration lease) {
+        Instant expiresAt = Instant.now().plus(lease);
+        boolean renewed = lockCollection(targetTemplate).updateOne(heldBy(lock), Updates.set("expiresAt", expiresAt))
+                .getMatchedCount() > 0;
+        if (renewed) {
+            lock.setExpiresAt(expiresAt);
+        }
+        return renewed;
+    }
+
+    public boolean isHeld(MongoTemplate targetTemplate, MigrationLock lock) {
+        return lockCollection(targetTemplate).countDocuments(Filters.and(heldBy(lock), Filters.gt("expiresAt", Instant.now())),
+                new CountOptions().limit(1)) > 0;
+    }
+
+    /**
+     * Ends the lease immediately, majority-acknowledged so a failover cannot bring the released lease back.
+     * The document is kept rather than deleted so the fencing token keeps growing.
+     */
+    public void release(MongoTemplate targetTemplate, MigrationLock lock) {
+        lockCollection(targetTemplate).updateOne(heldBy(lock), Updates.set("expiresAt", Instant.EPOCH));
+    }
+
+    public MigrationLock find(MongoTemplate targetTemplate) {
+        return targetTemplate.findById(LOCK_ID, MigrationLock.class, LOCK_COLLECTION);
+    }
+
+    private static MongoCollection<Document> lockCollection(MongoTemplate targetTemplate) {
+        return targetTemplate.getCollection(LOCK_COLLECTION).withWriteConcern(WriteConcern.MAJORITY);
+    }
+
+    private static Bson heldBy(MigrationLock lock) {
+        return Filters.and(Filters.eq("_id", LOCK_ID),
+                Filters.eq("owner", lock.getOwner()),
+                Filters.eq("fencingToken", lock.getFencingToken()));
+    }
+}
@@ -5,7 +5,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 import java.util.List;
-@Document(collection = "changelog")
+@Document(collection = "change_log")
 public class ChangeLog {
 
     @Id
@@ -17,6 +17,12 @@ public class ChangeLog {
     private LocalDateTime appliedAt;
     private boolean success;
     private String  fileName;
+    private Long insertedCount;
+    private List<Integer> batchCounts;
+    private Long matchedCount;
+    private Long modifiedCount;
+    private Long deletedCount;
+    private List<Long> partitionMillis;
 
 
     public String getId() {
@@ -74,4 +80,52 @@ public class ChangeLog {
     public void setFileName(String fileName) {
         this.fileName = fileName;
     }
+
+    public Long getInsertedCount() {
+        return insertedCount;
+    }
+
+    public void setInsertedCount(Long insertedCount) {
+        this.insertedCount = insertedCount;
+    }
+
+    public List<Integer> getBatchCounts() {
+        return batchCounts;
+    }
+
+    public void setBatchCounts(List<Integer> batchCounts) {
+        this.batchCounts = batchCounts;
+    }
+
+    public Long getMatchedCount() {
+        return matchedCount;
+    }
+
+    public void setMatchedCount(Long matchedCount) {
+        this.matchedCount = matchedCount;
+    }
+
+    public Long getModifiedCount() {
+        return modifiedCount;
+    }
+
+    public void setModifiedCount(Long modifiedCount) {
+        this.modifiedCount = modifiedCount;
+    }
+
+    public Long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public void setDeletedCount(Long deletedCount) {
+        this.deletedCount = deletedCount;
+    }
+
+    public List<Long> getPartitionMillis() {
+        return partitionMillis;
+    }
+
+    public void setPartitionMillis(List<Long> partitionMillis) {
+        this.partitionMillis = partitionMillis;
+    }
 }
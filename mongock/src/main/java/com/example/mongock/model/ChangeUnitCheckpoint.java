@@ -0,0 +1,67 @@
+package com.example.mongock.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a data change unit that has not finished yet: the section being written and how many of its
+ * array elements (insert documents or update/delete queries) have been acknowledged. Stored next to the
+ * change log, one document per change unit, and removed once the unit completes.
+ */
+@Document(collection = "change_log_checkpoint")
+public class ChangeUnitCheckpoint {
+
+    @Id
+    private String changeUnitId;
+
+    private String sha256;
+    private String section;
+    private long position;
+    private long byteOffset;
+    private int lastBatchSize;
+    private LocalDateTime updatedAt;
+
+    public String getChangeUnitId() { return changeUnitId; }
+    public void setChangeUnitId(String changeUnitId) { this.changeUnitId = changeUnitId; }
+
+    /**
+     * Hash of the change-unit file the checkpoint refers to; a checkpoint of a different file version is not resumed.
+     */
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public String getSection() { return section; }
+    public void setSection(String section) { this.section = section; }
+
+    /**
+     * Number of elements of the section already acknowledged; a rerun skips exactly these.
+     */
+    public long getPosition() { return position; }
+    public void setPosition(long position) { this.position = position; }
+
+    /**
+     * File offset just after the last acknowledged element, for diagnostics.
+     */
+    public long getByteOffset() { return byteOffset; }
+    public void setByteOffset(long byteOffset) { this.byteOffset = byteOffset; }
+
+    public int getLastBatchSize() { return lastBatchSize; }
+    public void setLastBatchSize(int lastBatchSize) { this.lastBatchSize = lastBatchSize; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    @Override
+    public String toString() {
+        return "ChangeUnitCheckpoint{" +
+                "changeUnitId='" + changeUnitId + '\'' +
+                ", section='" + section + '\'' +
+                ", position=" + position +
+                ", byteOffset=" + byteOffset +
+                ", lastBatchSize=" + lastBatchSize +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.mongock.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled execution plan of one change-unit file: what it does, which collections it touches and how much
+ * data it carries, plus the size/modification time/SHA-256 the plan was compiled from. Plans are cached on disk
+ * so unchanged files never need to be parsed again just to decide how to run them.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChangeUnitPlan {
+    private int version;
+    private String fileName;
+    private long fileSize;
+    private long lastModified;
+    private String sha256;
+    private FileFormat format = FileFormat.JSON;
+
+    private List<OperationType> operations = new ArrayList<>();
+    private List<String> sections = new ArrayList<>();
+    private String collectionName;
+    private List<String> collections = new ArrayList<>();
+    private boolean barrier;
+    private Map<String, String> renames = new LinkedHashMap<>();
+    private boolean ordered = true;
+    private Boolean upsert;
+    private List<String> upsertKeys;
+    private JsonNode indexes;
+    private JsonNode tempIndexes;
+    private JsonNode transform;
+    private long insertCount;
+    private long updateCount;
+    private long deleteCount;
+    private List<String> problems = new ArrayList<>();
+
+    /**
+     * Plan format the entry was compiled with; entries of another format are recompiled.
+     */
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+
+    public long getLastModified() { return lastModified; }
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public FileFormat getFormat() { return format; }
+    public void setFormat(FileFormat format) { this.format = format; }
+
+    /**
+     * DROP, RENAME, CREATE or INDEXES for schema units; otherwise the INSERT/UPDATE/DELETE/TRANSFORM sections present, in execution order.
+     */
+    public List<OperationType> getOperations() { return operations; }
+    public void setOperations(List<OperationType> operations) { this.operations = operations; }
+
+    /**
+     * Top-level keys of the file in file order, used by the streaming reader to plan its passes.
+     */
+    public List<String> getSections() { return sections; }
+    public void setSections(List<String> sections) { this.sections = sections; }
+
+    public String getCollectionName() { return collectionName; }
+    public void setCollectionName(String collectionName) { this.collectionName = collectionName; }
+
+    /**
+     * Every collection the unit touches: created/dropped collections, both sides of a rename, or the data collection
+     * plus the collections its transform reads and writes.
+     */
+    public List<String> getCollections() { return collections; }
+    public void setCollections(List<String> collections) { this.collections = collections; }
+
+    /**
+     * Set when the unit may touch collections its plan cannot name (e.g. a transform stage reading another database),
+     * so the scheduler runs it alone.
+     */
+    public boolean isBarrier() { return barrier; }
+    public void setBarrier(boolean barrier) { this.barrier = barrier; }
+
+    /**
+     * Old to new collection names, in file order, for RENAME units.
+     */
+    public Map<String, String> getRenames() { return renames; }
+    public void setRenames(Map<String, String> renames) { this.renames = renames; }
+
+    public boolean isOrdered() { return ordered; }
+    public void setOrdered(boolean ordered) { this.ordered = ordered; }
+
+    public Boolean getUpsert() { return upsert; }
+    public void setUpsert(Boolean upsert) { this.upsert = upsert; }
+
+    public List<String> getUpsertKeys() { return upsertKeys; }
+    public void setUpsertKeys(List<String> upsertKeys) { this.upsertKeys = upsertKeys; }
+
+    /**
+     * The {@code indexes} section of an INDEXES unit, kept in the plan so the unit runs without reading the file.
+     */
+    public JsonNode getIndexes() { return indexes; }
+    public void setIndexes(JsonNode indexes) { this.indexes = indexes; }
+
+    /**
+     * Supporting indexes a data unit builds before its update/delete queries and drops afterwards.
+     */
+    public JsonNode getTempIndexes() { return tempIndexes; }
+    public void setTempIndexes(JsonNode tempIndexes) { this.tempIndexes = tempIndexes; }
+
+    /**
+     * The {@code transform} section of a data unit: an aggregation pipeline run on the server after the other data sections.
+     */
+    public JsonNode getTransform() { return transform; }
+    public void setTransform(JsonNode transform) { this.transform = transform; }
+
+    public long getInsertCount() { return insertCount; }
+    public void setInsertCount(long insertCount) { this.insertCount = insertCount; }
+
+    public long getUpdateCount() { return updateCount; }
+    public void setUpdateCount(long updateCount) { this.updateCount = updateCount; }
+
+    public long getDeleteCount() { return deleteCount; }
+    public void setDeleteCount(long deleteCount) { this.deleteCount = deleteCount; }
+
+    /**
+     * Schema problems found while compiling the file, each prefixed with the path of the offending element;
+     * a unit with problems is never run.
+     */
+    public List<String> getProblems() { return problems; }
+    public void setProblems(List<String> problems) { this.problems = problems; }
+
+    /**
+     * True when the file holds insert/update/delete/transform data rather than a drop, rename, create or index change.
+     */
+    @JsonIgnore
+    public boolean isCollectionData() {
+        return !operations.contains(OperationType.DROP) && !operations.contains(OperationType.RENAME)
+                && !operations.contains(OperationType.CREATE) && !operations.contains(OperationType.INDEXES);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeUnitPlan{" +
+                "fileName='" + fileName + '\'' +
+                ", operations=" + operations +
+                ", collections=" + collections +
+                ", insertCount=" + insertCount +
+                ", updateCount=" + updateCount +
+                ", deleteCount=" + deleteCount +
+                ", sha256='" + sha256 + '\'' +
+                '}';
+    }
+}
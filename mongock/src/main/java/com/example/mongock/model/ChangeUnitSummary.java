@@ -0,0 +1,106 @@
+package com.example.mongock.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of the last run of one change unit, stored next to the change log and upserted once when the unit
+ * finishes. The applied check reads only these documents; the per-step entries in {@code change_log} are kept
+ * for auditing and can expire (see {@code mongock.changelog.step-retention-days}).
+ */
+@Document(collection = "change_log_summary")
+public class ChangeUnitSummary {
+
+    public static final String APPLIED = "APPLIED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String changeUnitId;
+
+    private String status;
+    private String fileName;
+    private String sha256;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMillis;
+    private long steps;
+    private long failedSteps;
+    private long insertedCount;
+    private long matchedCount;
+    private long modifiedCount;
+    private long deletedCount;
+    private long attempts;
+    private String error;
+
+    public String getChangeUnitId() { return changeUnitId; }
+    public void setChangeUnitId(String changeUnitId) { this.changeUnitId = changeUnitId; }
+
+    /**
+     * {@link #APPLIED} when the unit finished and none of its steps failed, {@link #FAILED} otherwise.
+     */
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    /**
+     * SHA-256 of the change-unit file the unit ran from; null for summaries built from older change logs.
+     */
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public Long getDurationMillis() { return durationMillis; }
+    public void setDurationMillis(Long durationMillis) { this.durationMillis = durationMillis; }
+
+    /**
+     * Change log entries the last run wrote, and how many of them recorded a failure.
+     */
+    public long getSteps() { return steps; }
+    public void setSteps(long steps) { this.steps = steps; }
+
+    public long getFailedSteps() { return failedSteps; }
+    public void setFailedSteps(long failedSteps) { this.failedSteps = failedSteps; }
+
+    public long getInsertedCount() { return insertedCount; }
+    public void setInsertedCount(long insertedCount) { this.insertedCount = insertedCount; }
+
+    public long getMatchedCount() { return matchedCount; }
+    public void setMatchedCount(long matchedCount) { this.matchedCount = matchedCount; }
+
+    public long getModifiedCount() { return modifiedCount; }
+    public void setModifiedCount(long modifiedCount) { this.modifiedCount = modifiedCount; }
+
+    public long getDeletedCount() { return deletedCount; }
+    public void setDeletedCount(long deletedCount) { this.deletedCount = deletedCount; }
+
+    /**
+     * Number of runs of the unit, including the failed ones.
+     */
+    public long getAttempts() { return attempts; }
+    public void setAttempts(long attempts) { this.attempts = attempts; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public boolean isApplied() { return APPLIED.equals(status); }
+
+    @Override
+    public String toString() {
+        return "ChangeUnitSummary{" +
+                "changeUnitId='" + changeUnitId + '\'' +
+                ", status='" + status + '\'' +
+                ", sha256='" + sha256 + '\'' +
+                ", durationMillis=" + durationMillis +
+                ", steps=" + steps +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.mongock.model;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
 import java.util.Optional;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -9,6 +10,10 @@ public class CollectionData {
     private JsonNode insert;
     private JsonNode update;
     private JsonNode delete;
+    private Boolean ordered;
+    private Boolean upsert;
+    private List<String> upsertKeys;
+    private JsonNode tempIndexes;
 
     public String getCollectionName() { return collectionName; }
     public void setCollectionName(String collectionName) { this.collectionName = collectionName; }
@@ -22,6 +27,30 @@ public class CollectionData {
     public Optional<JsonNode> getDelete() { return Optional.ofNullable(delete); }
     public void setDelete(JsonNode delete) { this.delete = delete; }
 
+    /**
+     * Whether update/delete queries stop at the first failure; defaults to true so queries apply in file order.
+     */
+    public boolean isOrdered() { return ordered == null || ordered; }
+    public void setOrdered(Boolean ordered) { this.ordered = ordered; }
+
+    /**
+     * Whether inserts are written as idempotent upserts; unset falls back to {@code mongock.insert.mode}.
+     */
+    public Boolean getUpsert() { return upsert; }
+    public void setUpsert(Boolean upsert) { this.upsert = upsert; }
+
+    /**
+     * Fields identifying a document for upserts; without them the document's {@code _id}, or a hash of its content, is used.
+     */
+    public List<String> getUpsertKeys() { return upsertKeys; }
+    public void setUpsertKeys(List<String> upsertKeys) { this.upsertKeys = upsertKeys; }
+
+    /**
+     * Index specs built before the update/delete queries and dropped once the change unit is done.
+     */
+    public JsonNode getTempIndexes() { return tempIndexes; }
+    public void setTempIndexes(JsonNode tempIndexes) { this.tempIndexes = tempIndexes; }
+
     @Override
     public String toString() {
         return "CollectionData{" +
@@ -29,6 +58,10 @@ public class CollectionData {
                 ", insert=" + insert +
                 ", update=" + update +
                 ", delete=" + delete +
+                ", ordered=" + ordered +
+                ", upsert=" + upsert +
+                ", upsertKeys=" + upsertKeys +
+                ", tempIndexes=" + tempIndexes +
                 '}';
     }
 }
@@ -0,0 +1,40 @@
+package com.example.mongock.model;
+
+/**
+ * Outcome of running one database's change units, collected into the end-of-run summary.
+ */
+public class DatabaseResult {
+    private String databaseName;
+    private boolean success;
+    private long durationMillis;
+    private String error;
+
+    public DatabaseResult(String databaseName, boolean success, long durationMillis, String error) {
+        this.databaseName = databaseName;
+        this.success = success;
+        this.durationMillis = durationMillis;
+        this.error = error;
+    }
+
+    public String getDatabaseName() { return databaseName; }
+    public void setDatabaseName(String databaseName) { this.databaseName = databaseName; }
+
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+
+    public long getDurationMillis() { return durationMillis; }
+    public void setDurationMillis(long durationMillis) { this.durationMillis = durationMillis; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    @Override
+    public String toString() {
+        return "DatabaseResult{" +
+                "databaseName='" + databaseName + '\'' +
+                ", success=" + success +
+                ", durationMillis=" + durationMillis +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
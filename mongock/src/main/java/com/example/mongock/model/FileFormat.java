@@ -0,0 +1,10 @@
+package com.example.mongock.model;
+
+/**
+ * Layout of a change-unit file, chosen from its extension (after any {@code .gz}/{@code .zst} suffix).
+ */
+public enum FileFormat {
+    JSON,     // A change-unit object: drop/rename/create/indexes or collection data
+    NDJSON,   // One insert document per line (.ndjson, .jsonl)
+    BSON      // Concatenated BSON documents to insert, as written by mongodump (.bson)
+}
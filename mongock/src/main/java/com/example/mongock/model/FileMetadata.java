@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 public class FileMetadata {
     private String changeUnitId;
     private String fileName;
+    private String collectionName;
 
     // Getters and Setters
     public String getChangeUnitId() { return changeUnitId; }
@@ -14,11 +15,18 @@ public class FileMetadata {
     public String getFileName() { return fileName; }
     public void setFileName(String fileName) { this.fileName = fileName; }
 
+    /**
+     * Target collection of an NDJSON or BSON file; defaults to the file's base name.
+     */
+    public String getCollectionName() { return collectionName; }
+    public void setCollectionName(String collectionName) { this.collectionName = collectionName; }
+
     @Override
     public String toString() {
         return "FileMetadata{" +
                 "changeUnitId='" + changeUnitId + '\'' +
                 ", fileName='" + fileName + '\'' +
+                ", collectionName='" + collectionName + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,55 @@
+package com.example.mongock.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * The migration lock of one database, stored next to its change log. Whoever holds an unexpired lease runs the
+ * database's change units; the fencing token grows by one on every acquisition, so a holder whose lease was taken
+ * over can tell that it no longer owns the lock even if its own lease looks valid locally.
+ */
+@Document(collection = "change_log_lock")
+public class MigrationLock {
+
+    @Id
+    private String id;
+
+    private String owner;
+    private long fencingToken;
+    private Instant acquiredAt;
+    private Instant expiresAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    /**
+     * Host, process and instance of the holder, e.g. {@code 4711@pod-7/2f1c9a}.
+     */
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public long getFencingToken() { return fencingToken; }
+    public void setFencingToken(long fencingToken) { this.fencingToken = fencingToken; }
+
+    public Instant getAcquiredAt() { return acquiredAt; }
+    public void setAcquiredAt(Instant acquiredAt) { this.acquiredAt = acquiredAt; }
+
+    /**
+     * End of the current lease; an expired lock can be taken over by any instance.
+     */
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+
+    @Override
+    public String toString() {
+        return "MigrationLock{" +
+                "id='" + id + '\'' +
+                ", owner='" + owner + '\'' +
+                ", fencingToken=" + fencingToken +
+                ", acquiredAt=" + acquiredAt +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
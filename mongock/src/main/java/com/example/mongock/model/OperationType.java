@@ -6,7 +6,9 @@ public enum OperationType {
     UPDATE,   // Represents updating documents
     DELETE,   // Represents deleting documents
     RENAME,   // Represents renaming collection
-    DROP;     // Represents dropping collection
+    DROP,     // Represents dropping collection
+    INDEXES,  // Represents creating/dropping indexes
+    TRANSFORM; // Represents server-side aggregation pipeline transforms
 
     @Override
     public String toString() {
@@ -0,0 +1,29 @@
+package com.example.mongock.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcome of the pre-flight validation: every problem found in the mapping file and the change-unit files,
+ * and the plans compiled on the way, keyed by {@code database/changeUnitId}, for the run to reuse. Problems of
+ * units that are already applied are only warnings, since those units do not run again.
+ */
+public class ValidationReport {
+    private final List<String> problems = new ArrayList<>();
+    private final List<String> warnings = new ArrayList<>();
+    private final Map<String, ChangeUnitPlan> plans = new ConcurrentHashMap<>();
+
+    public List<String> getProblems() { return problems; }
+
+    public List<String> getWarnings() { return warnings; }
+
+    public Map<String, ChangeUnitPlan> getPlans() { return plans; }
+
+    public boolean isValid() { return problems.isEmpty(); }
+
+    public ChangeUnitPlan getPlan(String databaseName, String changeUnitId) {
+        return plans.get(databaseName + "/" + changeUnitId);
+    }
+}
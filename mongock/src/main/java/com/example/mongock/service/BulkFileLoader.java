@@ -0,0 +1,254 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileFormat;
+import com.example.mongock.util.ChangeUnitFileFormats;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads insert-only NDJSON and BSON files (optionally {@code .gz}/{@code .zst} compressed) into their collection.
+ * NDJSON lines are parsed one at a time and go through the regular insert/upsert writer; BSON documents are
+ * inserted exactly as read from the file, without being decoded or re-encoded.
+ * <p>
+ * Large uncompressed NDJSON files are memory-mapped and split on line boundaries into chunks that are
+ * parsed and inserted on {@code mongock.ndjson.threads} worker threads, each with its own {@code insertMany} batches,
+ * so a single file is no longer limited to one parser thread.
+ */
+@Service
+public class BulkFileLoader {
+
+    // A single mapping is limited to 2 GB; chunks stay well below that
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final ChangeUnitService changeUnitService;
+    private final ChangeLogService changeLogService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${mongock.ndjson.threads:4}")
+    private int threads;
+
+    @Value("${mongock.ndjson.min-parallel-bytes:16777216}")
+    private long minParallelBytes;
+
+    @Autowired
+    public BulkFileLoader(ChangeUnitService changeUnitService, ChangeLogService changeLogService, ObjectMapper objectMapper) {
+        this.changeUnitService = changeUnitService;
+        this.changeLogService = changeLogService;
+        this.objectMapper = objectMapper;
+    }
+
+    public void load(String changeUnitId, String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate) {
+        String collectionName = plan.getCollectionName();
+        try {
+            if (plan.getFormat() == FileFormat.NDJSON && threads > 1 && !ChangeUnitFileFormats.isCompressed(filePath)
+                    && plan.getFileSize() >= minParallelBytes) {
+                loadNdjsonInParallel(changeUnitId, filePath, collectionName, mongoTemplate);
+            } else {
+                loadSequentially(changeUnitId, filePath, plan, mongoTemplate);
+            }
+        } catch (Exception e) {
+            changeLogService.logChangeLog(changeUnitId, "TRANSACTION", Collections.emptyList(), false, mongoTemplate);
+            throw ChangeUnitException.failed(changeUnitId, "TRANSACTION", e);
+        }
+    }
+
+    private void loadSequentially(String changeUnitId, String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate)
+            throws IOException {
+        String collectionName = plan.getCollectionName();
+        try (InputStream in = ChangeUnitFileFormats.open(filePath)) {
+            if (plan.getFormat() == FileFormat.BSON) {
+                changeUnitService.insertRawDocuments(changeUnitId, collectionName, ChangeUnitFileFormats.bsonDocuments(in), mongoTemplate);
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                List<String> upsertKeys = changeUnitService.resolveUpsertKeys(null, null);
+                changeUnitService.writeInsertSection(changeUnitId, collectionName, lines(reader), upsertKeys, mongoTemplate);
+            }
+        }
+    }
+
+    /**
+     * Maps the file chunk by chunk and inserts the chunks concurrently; each chunk records its own INSERT entry.
+     * Every chunk runs to completion, so each one has recorded its INSERT entry, before the first failure is rethrown.
+     */
+    private void loadNdjsonInParallel(String changeUnitId, String filePath, String collectionName, MongoTemplate mongoTemplate)
+            throws Exception {
+        List<String> upsertKeys = changeUnitService.resolveUpsertKeys(null, null);
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long[] boundaries = lineBoundaries(channel);
+            ExecutorService executor = Executors.newFixedThreadPool(threads,
+                    Thread.ofPlatform().name("mongock-ndjson-", 0).factory());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i + 1 < boundaries.length; i++) {
+                    // Mapped up front: the mapping stays valid after the channel is closed
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]);
+                    futures.add(executor.submit(() -> changeUnitService.writeInsertSection(changeUnitId, collectionName,
+                            lines(chunk), upsertKeys, mongoTemplate)));
+                }
+                Exception failure = null;
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof Exception cause ? cause : e;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                System.out.println("Loaded " + filePath + " into collection " + collectionName + " in " + futures.size() + " parallel chunks");
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits the file into roughly equal ranges that each start at the beginning of a line: one per thread,
+     * and more when a range would exceed what a single mapping can hold.
+     */
+    private long[] lineBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int chunks = (int) Math.max(threads, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        for (int i = 1; i < chunks; i++) {
+            long position = Math.max(size * i / chunks, boundaries.get(boundaries.size() - 1));
+            long lineStart = nextLineStart(channel, position, probe);
+            if (lineStart >= size) {
+                break;
+            }
+            if (lineStart > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(lineStart);
+            }
+        }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parses the chunk's non-blank lines one at a time, as the writer pulls them.
+     */
+    private Iterator<JsonNode> lines(ByteBuffer chunk) {
+        return new Iterator<>() {
+            private int lineStart = nextNonBlank(0);
+
+            @Override
+            public boolean hasNext() {
+                return lineStart < chunk.limit();
+            }
+
+            @Override
+            public JsonNode next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int lineEnd = lineStart;
+                while (lineEnd < chunk.limit() && chunk.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                byte[] line = new byte[lineEnd - lineStart];
+                chunk.get(lineStart, line);
+                lineStart = nextNonBlank(lineEnd);
+                try {
+                    return objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            private int nextNonBlank(int position) {
+                while (position < chunk.limit() && Character.isWhitespace(chunk.get(position))) {
+                    position++;
+                }
+                return position;
+            }
+        };
+    }
+
+    /**
+     * Parses one non-blank line per document, as the writer pulls them.
+     */
+    private Iterator<JsonNode> lines(BufferedReader reader) {
+        return new Iterator<>() {
+            private String nextLine;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (nextLine == null) {
+                        String line = reader.readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                        if (!line.isBlank()) {
+                            nextLine = line;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public JsonNode next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = nextLine;
+                nextLine = null;
+                try {
+                    return objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -15,11 +15,13 @@ public class ChangeLogService {
 
     private final ChangeLogRepository changeLogRepository;
     private final MongoTemplate mongoTemplate;
+    private final ChangeLogWriter changeLogWriter;
 
     @Autowired
-    public ChangeLogService(ChangeLogRepository changeLogRepository, MongoTemplate mongoTemplate) {
+    public ChangeLogService(ChangeLogRepository changeLogRepository, MongoTemplate mongoTemplate, ChangeLogWriter changeLogWriter) {
         this.changeLogRepository = changeLogRepository;
         this.mongoTemplate = mongoTemplate;
+        this.changeLogWriter = changeLogWriter;
     }
 
     public void logChangeLog(String changeUnitId, String operation, String collectionName, boolean isSuccess, MongoTemplate mongoTemplate) {
@@ -27,20 +29,27 @@ public class ChangeLogService {
     }
 
     public void logChangeLog(String changeUnitId, String operation, List<String> collectionNames, boolean isSuccess, MongoTemplate mongoTemplate) {
-        try {
-            ChangeLog changeLog = new ChangeLog();
-            changeLog.setChangeUnitId(changeUnitId);
-            changeLog.setOperation(operation);
-            changeLog.setAppliedAt(LocalDateTime.now());
-            changeLog.setSuccess(isSuccess);
-            changeLog.setCollectionNames(collectionNames);
-
-            mongoTemplate.save(changeLog, "change_log");  // Ensure correct database
-            System.out.println("ChangeLog saved in database: " + mongoTemplate.getDb().getName());
-        } catch (Exception e) {
-            System.err.println("Error saving change log: " + e.getMessage());
-            e.printStackTrace();
-        }
+        saveChangeLog(createChangeLog(changeUnitId, operation, collectionNames, isSuccess), mongoTemplate);
+    }
+
+    /**
+     * Builds a change log entry so callers can attach operation statistics before saving it.
+     */
+    public ChangeLog createChangeLog(String changeUnitId, String operation, List<String> collectionNames, boolean isSuccess) {
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.setChangeUnitId(changeUnitId);
+        changeLog.setOperation(operation);
+        changeLog.setAppliedAt(LocalDateTime.now());
+        changeLog.setSuccess(isSuccess);
+        changeLog.setCollectionNames(collectionNames);
+        return changeLog;
+    }
+
+    /**
+     * Queues the entry for the target database; it is written by {@link ChangeLogWriter} in a batch.
+     */
+    public void saveChangeLog(ChangeLog changeLog, MongoTemplate mongoTemplate) {
+        changeLogWriter.enqueue(changeLog, mongoTemplate);  // Ensure correct database
     }
 
 }
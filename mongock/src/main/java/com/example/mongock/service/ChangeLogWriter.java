@@ -0,0 +1,185 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.model.ChangeLog;
+import com.mongodb.MongoBulkWriteException;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers change log entries per database and writes them with one {@code insertMany} per flush.
+ * Buffers are flushed in the background once they reach {@code mongock.changelog.flush-size} entries or
+ * every {@code mongock.changelog.flush-interval-ms}; callers flush explicitly at the end of each change unit,
+ * and everything still buffered is written on shutdown.
+ */
+@Component
+public class ChangeLogWriter {
+
+    // Keyed by template instance: each database gets its own buffer
+    private final Map<MongoTemplate, List<ChangeLog>> buffers = new ConcurrentHashMap<>();
+
+    // Session-bound templates of open transactions; their entries are only written by the owning thread
+    private final Map<MongoTemplate, List<ChangeLog>> transactionBuffers = new ConcurrentHashMap<>();
+
+    private final MigrationMetrics migrationMetrics;
+
+    private ScheduledExecutorService flushExecutor;
+
+    @Value("${mongock.changelog.flush-size:100}")
+    private int flushSize;
+
+    @Value("${mongock.changelog.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Autowired
+    public ChangeLogWriter(MigrationMetrics migrationMetrics) {
+        this.migrationMetrics = migrationMetrics;
+    }
+
+    @PostConstruct
+    void start() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mongock-changelog-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an entry for the given database; a full buffer is handed to the background flusher.
+     */
+    public void enqueue(ChangeLog changeLog, MongoTemplate mongoTemplate) {
+        List<ChangeLog> transactionBuffer = transactionBuffers.get(mongoTemplate);
+        if (transactionBuffer != null) {
+            transactionBuffer.add(changeLog);
+            return;
+        }
+
+        List<ChangeLog> buffer = buffers.computeIfAbsent(mongoTemplate, template -> new ArrayList<>());
+        boolean full;
+        synchronized (buffer) {
+            buffer.add(changeLog);
+            full = buffer.size() >= flushSize;
+        }
+        if (full) {
+            try {
+                flushExecutor.execute(() -> flushQuietly(mongoTemplate));
+            } catch (RejectedExecutionException e) {
+                flush(mongoTemplate);  // Shutting down: write on the caller's thread instead
+            }
+        }
+    }
+
+    /**
+     * Writes everything buffered for the given database and returns once it is stored. A flush already
+     * running in the background for the same database is waited for, so nothing queued before this call is pending.
+     * When the write fails, the entries the server did not store stay buffered, in order, and the error is rethrown:
+     * a unit whose entries are lost must not be summarized as applied.
+     */
+    public void flush(MongoTemplate mongoTemplate) {
+        List<ChangeLog> buffer = buffers.get(mongoTemplate);
+        if (buffer == null) {
+            return;
+        }
+        synchronized (buffer) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<ChangeLog> pending = new ArrayList<>(buffer);
+            buffer.clear();
+            Timer.Sample sample = migrationMetrics.start();
+            try {
+                mongoTemplate.insert(pending, ChangeLogRepository.CHANGE_LOG_COLLECTION);
+                migrationMetrics.recordChangeLogWrite(sample, mongoTemplate, pending.size());
+            } catch (RuntimeException e) {
+                List<ChangeLog> unwritten = pending.subList(writtenBefore(e), pending.size());
+                buffer.addAll(0, unwritten);
+                System.err.println("Error saving " + unwritten.size() + " change log entries, kept for the next flush: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The insert is ordered: everything before the first write error was stored.
+     */
+    private static int writtenBefore(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException && !bulkWriteException.getWriteErrors().isEmpty()) {
+                return bulkWriteException.getWriteErrors().get(0).getIndex();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Background and shutdown flushes only report failures; the entries stay buffered for the caller's flush to retry.
+     */
+    private void flushQuietly(MongoTemplate mongoTemplate) {
+        try {
+            flush(mongoTemplate);
+        } catch (RuntimeException e) {
+            // Already reported by flush
+        }
+    }
+
+    /**
+     * Routes entries queued for a session-bound template into a private buffer, so they are written inside
+     * that session's transaction rather than by the background flusher (a session must not be shared across threads).
+     */
+    public void bindTransaction(MongoTemplate sessionTemplate) {
+        transactionBuffers.put(sessionTemplate, new ArrayList<>());
+    }
+
+    /**
+     * Writes the transaction's entries through its session; call before committing so they commit with the data.
+     */
+    public void writeTransactionEntries(MongoTemplate sessionTemplate) {
+        List<ChangeLog> transactionBuffer = transactionBuffers.get(sessionTemplate);
+        if (transactionBuffer != null && !transactionBuffer.isEmpty()) {
+            Timer.Sample sample = migrationMetrics.start();
+            sessionTemplate.insert(new ArrayList<>(transactionBuffer), ChangeLogRepository.CHANGE_LOG_COLLECTION);
+            migrationMetrics.recordChangeLogWrite(sample, sessionTemplate, transactionBuffer.size());
+            transactionBuffer.clear();
+        }
+    }
+
+    /**
+     * Forgets a transaction's buffer; entries of an aborted transaction are dropped along with its writes.
+     */
+    public void unbindTransaction(MongoTemplate sessionTemplate) {
+        transactionBuffers.remove(sessionTemplate);
+    }
+
+    public void flushAll() {
+        for (MongoTemplate mongoTemplate : buffers.keySet()) {
+            flushQuietly(mongoTemplate);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+}
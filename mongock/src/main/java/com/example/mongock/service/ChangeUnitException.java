@@ -0,0 +1,27 @@
+package com.example.mongock.service;
+
+/**
+ * A step of a change unit failed. Thrown once the failed change log entry is recorded, so the unit is reported as
+ * failed, the units that depend on it are skipped and its database's result is a failure.
+ */
+public class ChangeUnitException extends RuntimeException {
+
+    private final String changeUnitId;
+
+    private ChangeUnitException(String changeUnitId, String operation, Throwable cause) {
+        super("ChangeUnit (" + changeUnitId + ") failed in " + operation + ": " + cause, cause);
+        this.changeUnitId = changeUnitId;
+    }
+
+    /**
+     * Wraps the cause, unless an inner step already reported this failure.
+     */
+    public static ChangeUnitException failed(String changeUnitId, String operation, Throwable cause) {
+        return cause instanceof ChangeUnitException changeUnitException ? changeUnitException
+                : new ChangeUnitException(changeUnitId, operation, cause);
+    }
+
+    public String getChangeUnitId() {
+        return changeUnitId;
+    }
+}
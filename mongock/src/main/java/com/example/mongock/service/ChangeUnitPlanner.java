@@ -0,0 +1,499 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileFormat;
+import com.example.mongock.model.OperationType;
+import com.example.mongock.util.ChangeUnitFileFormats;
+import com.example.mongock.util.ChangeUnitSchema;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles change-unit files into {@link ChangeUnitPlan}s and caches them in a local JSON file keyed by file path.
+ * A cached plan is reused when the file's size and SHA-256 are unchanged; the hash is always recomputed, since the
+ * applied/drift checks trust it and a same-size edit can keep its modification time. Anything else is recompiled
+ * with a single token scan that also computes the hash, so no file is ever read into a tree just to find out what it does.
+ */
+@Service
+public class ChangeUnitPlanner {
+
+    // Bump whenever the plan gains information, so plans cached by an older version are recompiled
+    static final int PLAN_VERSION = 7;
+
+    // Problems kept per file; a file broken throughout would otherwise report every element
+    private static final int MAX_PROBLEMS = 20;
+
+    private static final List<OperationType> DATA_OPERATIONS = List.of(OperationType.INSERT, OperationType.UPDATE, OperationType.DELETE,
+            OperationType.TRANSFORM);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ChangeUnitPlan> plans = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    @Value("${mongock.plan.cache-enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${mongock.plan.cache-path:.mongock/plan-cache.json}")
+    private String cachePath;
+
+    @Autowired
+    public ChangeUnitPlanner(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the plan of a change-unit file, from the cache when the file's bytes are unchanged.
+     */
+    public ChangeUnitPlan getPlan(String filePath) throws IOException {
+        if (!cacheEnabled) {
+            return compile(filePath);
+        }
+        loadCache();
+
+        File file = new File(filePath);
+        ChangeUnitPlan cached = plans.get(filePath);
+        // The modification time is not trusted: the hash skips the scan, not the read
+        if (cached != null && cached.getVersion() == PLAN_VERSION && cached.getFileSize() == file.length()
+                && cached.getSha256().equals(sha256(file))) {
+            if (cached.getLastModified() != file.lastModified()) {
+                cached.setLastModified(file.lastModified());
+                dirty = true;
+            }
+            return cached;
+        }
+
+        ChangeUnitPlan plan = compile(filePath);
+        plans.put(filePath, plan);
+        dirty = true;
+        return plan;
+    }
+
+    /**
+     * Returns the plan of a change-unit file with its target collection replaced, for NDJSON and BSON files whose
+     * mapping entry names the collection. The cached plan itself is left untouched.
+     */
+    public ChangeUnitPlan getPlan(String filePath, String collectionName) throws IOException {
+        ChangeUnitPlan plan = getPlan(filePath);
+        if (collectionName == null || plan.getFormat() == FileFormat.JSON) {
+            return plan;
+        }
+        ChangeUnitPlan copy = objectMapper.convertValue(plan, ChangeUnitPlan.class);
+        copy.setCollectionName(collectionName);
+        copy.setCollections(new ArrayList<>(List.of(collectionName)));
+        return copy;
+    }
+
+    /**
+     * Scans a change-unit file once, recording its top-level layout, target collections and element counts
+     * and hashing the bytes as they are read.
+     */
+    public ChangeUnitPlan compile(String filePath) throws IOException {
+        File file = new File(filePath);
+        ChangeUnitPlan plan = new ChangeUnitPlan();
+        plan.setVersion(PLAN_VERSION);
+        plan.setFileName(filePath);
+        plan.setFileSize(file.length());
+        plan.setLastModified(file.lastModified());
+        plan.setFormat(ChangeUnitFileFormats.format(filePath));
+
+        // The hash is taken over the file's bytes as stored, before any decompression
+        MessageDigest digest = newDigest();
+        try (InputStream raw = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), digest);
+             InputStream in = ChangeUnitFileFormats.decompress(filePath, raw)) {
+            switch (plan.getFormat()) {
+                case JSON -> scanJson(filePath, in, plan);
+                case NDJSON -> scanInsertOnly(plan, countLines(in));
+                case BSON -> scanInsertOnly(plan, countBsonDocuments(in));
+            }
+            // Parsers and decompressors may stop before the end (e.g. trailing whitespace); the hash has to cover the whole file
+            raw.transferTo(OutputStream.nullOutputStream());
+        }
+        plan.setSha256(HexFormat.of().formatHex(digest.digest()));
+        resolveOperations(plan);
+        checkPlan(plan);
+        return plan;
+    }
+
+    private void scanJson(String filePath, InputStream in, ChangeUnitPlan plan) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Change unit file must contain a JSON object: " + filePath);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                plan.getSections().add(fieldName);
+                switch (fieldName) {
+                    case "collectionName" -> {
+                        if (valueToken == JsonToken.VALUE_STRING) {
+                            plan.setCollectionName(parser.getText());
+                        } else {
+                            problem(plan, "collectionName: must be a string");
+                            parser.skipChildren();
+                        }
+                    }
+                    case "ordered" -> {
+                        if (valueToken.isBoolean()) {
+                            plan.setOrdered(parser.getBooleanValue());
+                        } else {
+                            problem(plan, "ordered: must be true or false");
+                            parser.skipChildren();
+                        }
+                    }
+                    case "upsert" -> {
+                        if (valueToken.isBoolean()) {
+                            plan.setUpsert(parser.getBooleanValue());
+                        } else {
+                            problem(plan, "upsert: must be true or false");
+                            parser.skipChildren();
+                        }
+                    }
+                    case "upsertKeys" -> {
+                        if (valueToken == JsonToken.START_ARRAY) {
+                            plan.setUpsertKeys(parser.readValueAs(new TypeReference<List<String>>() {}));
+                        } else {
+                            problem(plan, "upsertKeys: must be an array of field names");
+                            parser.skipChildren();
+                        }
+                    }
+                    case "drop", "create" -> {
+                        if (valueToken == JsonToken.START_ARRAY) {
+                            plan.getCollections().addAll(parser.readValueAs(new TypeReference<List<String>>() {}));
+                        } else {
+                            problem(plan, fieldName + ": must be an array of collection names");
+                            parser.skipChildren();
+                        }
+                    }
+                    case "indexes" -> {
+                        plan.setIndexes(parser.readValueAsTree());
+                        ChangeUnitSchema.checkIndexes(plan.getIndexes(), plan.getProblems());
+                    }
+                    case "tempIndexes" -> {
+                        plan.setTempIndexes(parser.readValueAsTree());
+                        ChangeUnitSchema.checkTempIndexes(plan.getTempIndexes(), plan.getProblems());
+                    }
+                    case "transform" -> {
+                        plan.setTransform(parser.readValueAsTree());
+                        ChangeUnitSchema.checkTransform(plan.getTransform(), plan.getProblems());
+                    }
+                    case "rename" -> {
+                        JsonNode renames = parser.readValueAsTree();
+                        ChangeUnitSchema.checkRenames(renames, plan.getProblems());
+                        for (JsonNode rename : renames) {
+                            if (rename.path("oldCollection").isTextual() && rename.path("newCollection").isTextual()) {
+                                plan.getRenames().put(rename.get("oldCollection").asText(), rename.get("newCollection").asText());
+                            }
+                        }
+                    }
+                    case "insert" -> plan.setInsertCount(valueToken == JsonToken.START_ARRAY ? countDocuments(parser, plan) : invalid(parser, plan,
+                            "insert: must be an array of documents"));
+                    case "update" -> plan.setUpdateCount(countQueries(parser, "update", plan));
+                    case "delete" -> plan.setDeleteCount(countQueries(parser, "delete", plan));
+                    default -> {
+                        problem(plan, fieldName + ": unknown key, expected one of " + new TreeSet<>(ChangeUnitSchema.TOP_LEVEL_KEYS));
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * NDJSON and BSON files only carry documents to insert; their collection is named after the file
+     * unless the mapping entry says otherwise.
+     */
+    private void scanInsertOnly(ChangeUnitPlan plan, long documents) {
+        plan.getSections().add("insert");
+        plan.setCollectionName(ChangeUnitFileFormats.baseName(plan.getFileName()));
+        plan.setInsertCount(documents);
+    }
+
+    private static long countLines(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long lines = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!line.isBlank()) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static long countBsonDocuments(InputStream in) throws IOException {
+        long documents = 0;
+        while (ChangeUnitFileFormats.readBsonDocument(in) != null) {
+            documents++;
+        }
+        return documents;
+    }
+
+    /**
+     * Writes the plans compiled or revalidated during this run back to the cache file.
+     */
+    public synchronized void saveCache() {
+        if (!cacheEnabled || !dirty) {
+            return;
+        }
+        try {
+            File cacheFile = new File(cachePath);
+            if (cacheFile.getParentFile() != null) {
+                cacheFile.getParentFile().mkdirs();
+            }
+            // Written to a temporary file first so an interrupted run never leaves a truncated cache behind
+            File tempFile = new File(cacheFile.getPath() + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(tempFile, new TreeMap<>(plans));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error writing plan cache: " + e.getMessage());
+        }
+    }
+
+    private synchronized void loadCache() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File cacheFile = new File(cachePath);
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try {
+            plans.putAll(objectMapper.readValue(cacheFile, new TypeReference<Map<String, ChangeUnitPlan>>() {}));
+            System.out.println("Loaded " + plans.size() + " cached change unit plans from: " + cacheFile.getAbsolutePath());
+        } catch (IOException e) {
+            // A corrupt or outdated cache only costs a recompile
+            System.err.println("Ignoring unreadable plan cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same precedence as the executor: drop, then rename, then create, then indexes, otherwise the data sections present.
+     */
+    private void resolveOperations(ChangeUnitPlan plan) {
+        List<String> sections = plan.getSections();
+        List<OperationType> operations = new ArrayList<>();
+        if (sections.contains("drop")) {
+            operations.add(OperationType.DROP);
+        } else if (sections.contains("rename")) {
+            operations.add(OperationType.RENAME);
+            plan.getRenames().forEach((oldName, newName) -> {
+                plan.getCollections().add(oldName);
+                plan.getCollections().add(newName);
+            });
+        } else if (sections.contains("create")) {
+            operations.add(OperationType.CREATE);
+        } else if (sections.contains("indexes")) {
+            operations.add(OperationType.INDEXES);
+            for (String action : List.of("create", "drop")) {
+                JsonNode entries = plan.getIndexes().path(action);
+                for (JsonNode entry : entries) {
+                    String collectionName = entry.path("collection").asText(null);
+                    if (collectionName != null && !plan.getCollections().contains(collectionName)) {
+                        plan.getCollections().add(collectionName);
+                    }
+                }
+            }
+        } else {
+            for (OperationType operation : DATA_OPERATIONS) {
+                if (sections.contains(operation.toString())) {
+                    operations.add(operation);
+                }
+            }
+            if (plan.getCollectionName() != null) {
+                plan.getCollections().add(plan.getCollectionName());
+            }
+            // A transform may write its results into another collection and read others through its stages
+            if (plan.getTransform() != null) {
+                JsonNode into = plan.getTransform().get("into");
+                if (into != null) {
+                    addCollection(into, plan.getCollections());
+                }
+                if (!addPipelineCollections(plan.getTransform().get("pipeline"), plan.getCollections())) {
+                    plan.setBarrier(true);
+                }
+            }
+        }
+        plan.setOperations(operations);
+    }
+
+    /**
+     * Adds the collections a pipeline reads or writes: {@code $lookup} and {@code $graphLookup} sources, {@code $unionWith},
+     * and the target of its own {@code $merge} or {@code $out}, following nested {@code $lookup}, {@code $unionWith} and
+     * {@code $facet} pipelines. Returns false when a stage names a collection the planner cannot resolve, such as one in
+     * another database.
+     */
+    private static boolean addPipelineCollections(JsonNode pipeline, List<String> collections) {
+        if (pipeline == null || !pipeline.isArray()) {
+            return true;
+        }
+        boolean resolved = true;
+        for (JsonNode stage : pipeline) {
+            for (Iterator<Map.Entry<String, JsonNode>> it = stage.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> entry = it.next();
+                JsonNode spec = entry.getValue();
+                switch (entry.getKey()) {
+                    case "$lookup" -> {
+                        // Without 'from' the sub-pipeline supplies its own documents
+                        resolved &= !spec.has("from") || addCollection(spec.get("from"), collections);
+                        resolved &= addPipelineCollections(spec.get("pipeline"), collections);
+                    }
+                    case "$graphLookup" -> resolved &= addCollection(spec.get("from"), collections);
+                    case "$unionWith" -> {
+                        if (spec.isObject()) {
+                            resolved &= !spec.has("coll") || addCollection(spec.get("coll"), collections);
+                            resolved &= addPipelineCollections(spec.get("pipeline"), collections);
+                        } else {
+                            resolved &= addCollection(spec, collections);
+                        }
+                    }
+                    case "$merge" -> resolved &= addCollection(spec.isObject() ? spec.get("into") : spec, collections);
+                    case "$out" -> resolved &= addCollection(spec, collections);
+                    case "$facet" -> {
+                        for (JsonNode facet : spec) {
+                            resolved &= addPipelineCollections(facet, collections);
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Adds a collection named by a string; {@code {db, coll}} forms and anything else are left unresolved.
+     */
+    private static boolean addCollection(JsonNode name, List<String> collections) {
+        if (name == null || !name.isTextual()) {
+            return false;
+        }
+        if (!collections.contains(name.asText())) {
+            collections.add(name.asText());
+        }
+        return true;
+    }
+
+    /**
+     * Problems only visible once the whole file is scanned, then caps the list at {@link #MAX_PROBLEMS}.
+     */
+    private void checkPlan(ChangeUnitPlan plan) {
+        List<String> problems = plan.getProblems();
+        if (plan.getOperations().isEmpty()) {
+            problems.add("no operation: expected one of insert, update, delete, transform, indexes, drop, create or rename");
+        } else if (plan.getCollectionName() == null && DATA_OPERATIONS.contains(plan.getOperations().get(0))) {
+            problems.add("collectionName: missing for a data change unit");
+        }
+        if (problems.size() > MAX_PROBLEMS) {
+            problems.subList(MAX_PROBLEMS, problems.size()).clear();
+            problems.add("... further problems not listed");
+        }
+    }
+
+    /**
+     * Counts the entries of an update/delete section's {@code queries} array, checking each one's shape.
+     */
+    private long countQueries(JsonParser parser, String section, ChangeUnitPlan plan) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return invalid(parser, plan, section + ": must be an object with a 'queries' array");
+        }
+        long count = 0;
+        boolean queriesFound = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "queries".equals(fieldName)) {
+                queriesFound = true;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    JsonNode entry = parser.readValueAsTree();
+                    // Past the cap the entries are only counted
+                    if (plan.getProblems().size() <= MAX_PROBLEMS) {
+                        ChangeUnitSchema.checkQuery(section + ".queries[" + count + "]", entry, "update".equals(section), plan.getProblems());
+                    }
+                    count++;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!queriesFound) {
+            problem(plan, section + ".queries: missing or not an array");
+        }
+        return count;
+    }
+
+    /**
+     * Counts the elements of an insert array without building them, checking that each one is a document.
+     */
+    private long countDocuments(JsonParser parser, ChangeUnitPlan plan) throws IOException {
+        long count = 0;
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_OBJECT && plan.getProblems().size() <= MAX_PROBLEMS) {
+                problem(plan, "insert[" + count + "]: must be a document");
+            }
+            parser.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    private long invalid(JsonParser parser, ChangeUnitPlan plan, String problem) throws IOException {
+        problem(plan, problem);
+        return skip(parser);
+    }
+
+    private static void problem(ChangeUnitPlan plan, String problem) {
+        plan.getProblems().add(problem);
+    }
+
+    private long skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return 0;
+    }
+
+    private String sha256(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
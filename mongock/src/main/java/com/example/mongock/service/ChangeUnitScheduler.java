@@ -0,0 +1,143 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the pending change units of one database as a dependency graph. Two units conflict when their plans
+ * share a collection (the data collection, created/dropped collections or either side of a rename); a unit
+ * waits for every earlier unit it conflicts with and runs concurrently with the rest, up to
+ * {@code mongock.parallel.max-units-per-database} at a time. Every collection therefore sees its units in
+ * change-unit order, which gives the same final state as running them one after another.
+ */
+@Service
+public class ChangeUnitScheduler {
+
+    @Value("${mongock.parallel.max-units-per-database:1}")
+    private int maxUnitsPerDatabase;
+
+    @Value("${mongock.parallel.virtual-threads:false}")
+    private boolean virtualThreadsEnabled;
+
+    /**
+     * Applies one change unit; exceptions fail the unit and skip everything that depends on it.
+     */
+    @FunctionalInterface
+    public interface ChangeUnitTask {
+        void apply(FileMetadata metadata) throws Exception;
+    }
+
+    /**
+     * Runs the units in the given order, overlapping non-conflicting ones. With a limit of one unit this is the plain serial loop.
+     * Throws the first failure once every unit that could still run has finished.
+     */
+    public void run(List<FileMetadata> units, Map<String, ChangeUnitPlan> plans, ChangeUnitTask task) throws Exception {
+        if (maxUnitsPerDatabase <= 1 || units.size() <= 1) {
+            for (FileMetadata unit : units) {
+                task.apply(unit);
+            }
+            return;
+        }
+
+        List<List<Integer>> dependencies = buildGraph(units, plans);
+        ThreadFactory threadFactory = virtualThreadsEnabled
+                ? Thread.ofVirtual().name("mongock-unit-", 0).factory()
+                : Thread.ofPlatform().name("mongock-unit-", 0).factory();
+        ExecutorService executor = Executors.newFixedThreadPool(maxUnitsPerDatabase, threadFactory);
+        Set<String> started = ConcurrentHashMap.newKeySet();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < units.size(); i++) {
+                FileMetadata unit = units.get(i);
+                CompletableFuture<?>[] upstream = dependencies.get(i).stream().map(futures::get).toArray(CompletableFuture[]::new);
+                futures.add(CompletableFuture.allOf(upstream).thenRunAsync(() -> {
+                    started.add(unit.getChangeUnitId());
+                    try {
+                        task.apply(unit);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+
+            Exception failure = null;
+            for (int i = 0; i < units.size(); i++) {
+                CompletableFuture<Void> future = futures.get(i);
+                String changeUnitId = units.get(i).getChangeUnitId();
+                if (!future.isCompletedExceptionally()) {
+                    continue;
+                }
+                if (!started.contains(changeUnitId)) {
+                    System.err.println("ChangeUnit (" + changeUnitId + ") skipped: a change unit it depends on failed.");
+                } else if (failure == null) {
+                    failure = unwrap(future);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * For each unit, the indexes of the earlier units it conflicts with. Units whose plan names no collection, or is
+     * marked as a barrier, conflict with everything.
+     */
+    private List<List<Integer>> buildGraph(List<FileMetadata> units, Map<String, ChangeUnitPlan> plans) {
+        List<Set<String>> collectionSets = units.stream()
+                .map(unit -> plans.get(unit.getChangeUnitId()))
+                .map(plan -> plan.isBarrier() ? Set.<String>of() : (Set<String>) new HashSet<>(plan.getCollections()))
+                .toList();
+        List<List<Integer>> dependencies = new ArrayList<>();
+        for (int i = 0; i < units.size(); i++) {
+            List<Integer> upstream = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                if (conflicts(collectionSets.get(i), collectionSets.get(j))) {
+                    upstream.add(j);
+                }
+            }
+            dependencies.add(upstream);
+        }
+        return dependencies;
+    }
+
+    private static boolean conflicts(Set<String> first, Set<String> second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return true;
+        }
+        for (String collectionName : first) {
+            if (second.contains(collectionName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Exception unwrap(CompletableFuture<Void> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return cause instanceof Exception exception ? exception : new IllegalStateException(cause);
+        }
+    }
+}
@@ -1,35 +1,87 @@
 package com.example.mongock.service;
 
+import com.example.mongock.model.ChangeLog;
 import com.example.mongock.model.CollectionData;
 import com.example.mongock.model.CreateData;
+import com.example.mongock.util.BsonConverter;
+import com.example.mongock.util.ChangeUnitSchema;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
 import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.InsertManyResult;
+import io.micrometer.core.instrument.Timer;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 @Service
-public class ChangeUnitService {
+public class ChangeUnitService implements ChangeUnitWriter {
+
+    private static final int NAMESPACE_NOT_FOUND = 26;
 
     private final ChangeLogService changeLogService;
-    private final ObjectMapper objectMapper;
+    private final MigrationMetrics migrationMetrics;
+    private final CollectionSwapService collectionSwapService;
+    private final MigrationThrottle migrationThrottle;
+    private final MigrationLockService migrationLockService;
+
+    @Value("${mongock.insert.batch-size:1000}")
+    private int insertBatchSize;
+
+    @Value("${mongock.insert.ordered:false}")
+    private boolean insertOrdered;
+
+    @Value("${mongock.insert.mode:insert}")
+    private String insertMode;
+
+    @Value("${mongock.bulk.batch-size:1000}")
+    private int bulkBatchSize;
 
     @Autowired
-    public ChangeUnitService(ChangeLogService changeLogService, ObjectMapper objectMapper) {
+    public ChangeUnitService(ChangeLogService changeLogService, MigrationMetrics migrationMetrics,
+                             CollectionSwapService collectionSwapService, MigrationThrottle migrationThrottle,
+                             MigrationLockService migrationLockService) {
         this.changeLogService = changeLogService;
-        this.objectMapper = objectMapper;
+        this.migrationMetrics = migrationMetrics;
+        this.collectionSwapService = collectionSwapService;
+        this.migrationThrottle = migrationThrottle;
+        this.migrationLockService = migrationLockService;
     }
 
     /**
      * Creates a collection if it does not exist.
      */
     public void createCollection(String changeUnitId, CreateData createData, MongoTemplate mongoTemplate) {
+        Timer.Sample sample = migrationMetrics.start();
+        String collectionNames = String.join(",", createData.getCreate());
         try {
             for (String collectionName : createData.getCreate()) {
                 if (!mongoTemplate.collectionExists(collectionName)) {
@@ -40,63 +92,118 @@ public class ChangeUnitService {
                 }
             }
             changeLogService.logChangeLog(changeUnitId, "CREATE", createData.getCreate(), true,mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "CREATE", collectionNames, true);
         } catch (Exception e) {
             changeLogService.logChangeLog(changeUnitId, "CREATE", createData.getCreate(), false, mongoTemplate);
-            e.printStackTrace();
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "CREATE", collectionNames, false);
+            throw ChangeUnitException.failed(changeUnitId, "CREATE", e);
         }
     }
 
     /**
-     * Drops a collection if it exists.
+     * Drops a collection if it exists. Large collections are renamed aside and dropped in the background
+     * when copy-and-swap is enabled.
      */
     public void dropCollection(String changeUnitId, String collectionName, MongoTemplate mongoTemplate) {
+        Timer.Sample sample = migrationMetrics.start();
         try {
-            if (mongoTemplate.collectionExists(collectionName)) {
-                mongoTemplate.dropCollection(collectionName);
+            if (collectionSwapService.appliesTo(mongoTemplate, collectionName)) {
+                collectionSwapService.dropInBackground(collectionName, mongoTemplate);
+                System.out.println("Dropped collection (in background): " + collectionName);
+                changeLogService.logChangeLog(changeUnitId, "DROP", List.of(collectionName), true, mongoTemplate);
+            } else if (mongoTemplate.collectionExists(collectionName)) {
+                // Checked first: since MongoDB 7.0 dropping a missing collection succeeds instead of raising NamespaceNotFound
+                mongoTemplate.getDb().runCommand(new Document("drop", collectionName));
                 System.out.println("Dropped collection: " + collectionName);
                 changeLogService.logChangeLog(changeUnitId, "DROP", List.of(collectionName), true, mongoTemplate);
             } else {
                 System.out.println("Collection does not exist: " + collectionName);
             }
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "DROP", collectionName, true);
         } catch (Exception e) {
             changeLogService.logChangeLog(changeUnitId, "DROP", List.of(collectionName), false, mongoTemplate);
-            e.printStackTrace();
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "DROP", collectionName, false);
+            throw ChangeUnitException.failed(changeUnitId, "DROP", e);
         }
     }
 
     /**
-     * Renames a collection if it exists.
+     * Renames a collection if it exists. Large collections are copied and swapped in when copy-and-swap is enabled.
      */
     public void renameCollection(String changeUnitId, String oldCollectionName, String newCollectionName, MongoTemplate mongoTemplate) {
+        Timer.Sample sample = migrationMetrics.start();
         try {
-            if (mongoTemplate.collectionExists(oldCollectionName)) {
-                mongoTemplate.getDb().getCollection(oldCollectionName)
-                        .renameCollection(new MongoNamespace(mongoTemplate.getDb().getName(), newCollectionName));
+            if (collectionSwapService.appliesTo(mongoTemplate, oldCollectionName)) {
+                long copied = collectionSwapService.copyAndSwap(changeUnitId, oldCollectionName, newCollectionName, mongoTemplate);
+                System.out.println("Copied and swapped collection: " + oldCollectionName + " → " + newCollectionName);
+                ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "RENAME", List.of(oldCollectionName, newCollectionName), true);
+                changeLog.setInsertedCount(copied);
+                changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            } else if (runIfExists(() -> mongoTemplate.getDb().getCollection(oldCollectionName)
+                    .renameCollection(new MongoNamespace(mongoTemplate.getDb().getName(), newCollectionName)))) {
                 System.out.println("Renamed collection: " + oldCollectionName + " → " + newCollectionName);
                 changeLogService.logChangeLog(changeUnitId, "RENAME", List.of(oldCollectionName, newCollectionName), true,mongoTemplate);
             } else {
                 System.out.println("Collection not found for rename: " + oldCollectionName);
             }
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "RENAME", oldCollectionName, true);
         } catch (Exception e) {
             changeLogService.logChangeLog(changeUnitId, "RENAME", List.of(oldCollectionName, newCollectionName), false, mongoTemplate);
-            e.printStackTrace();
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "RENAME", oldCollectionName, false);
+            throw ChangeUnitException.failed(changeUnitId, "RENAME", e);
+        }
+    }
+
+    /**
+     * Runs a rename and reports whether the collection existed, instead of checking with listCollections first.
+     */
+    private static boolean runIfExists(Runnable command) {
+        try {
+            command.run();
+            return true;
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() == NAMESPACE_NOT_FOUND) {
+                return false;
+            }
+            throw e;
         }
     }
 
     /**
      * Runs operations on a collection, including insert, update, and delete.
      */
-    public void runOperationsOnCollection(String changeUnitId, CollectionData collectionData, MongoTemplate mongoTemplate) {
+    public void runOperationsOnCollection(String changeUnitId, CollectionData collectionData, MongoTemplate mongoTemplate,
+                                          TemporaryIndexes temporaryIndexes) {
         try {
-            processInsertOperation(changeUnitId, collectionData, mongoTemplate);
-            processUpdateOperation(changeUnitId, collectionData, mongoTemplate);
-            processDeleteOperation(changeUnitId, collectionData, mongoTemplate);
+            applyCollectionData(changeUnitId, collectionData, mongoTemplate, temporaryIndexes);
         } catch (Exception e) {
             changeLogService.logChangeLog(changeUnitId, "TRANSACTION", Collections.emptyList(), false, mongoTemplate);
-            e.printStackTrace();
+            throw ChangeUnitException.failed(changeUnitId, "TRANSACTION", e);
         }
     }
 
+    /**
+     * Applies the insert, update and delete sections in that order, letting failures propagate to the caller
+     * (e.g. so a surrounding transaction can be aborted).
+     */
+    public void applyCollectionData(String changeUnitId, CollectionData collectionData, MongoTemplate mongoTemplate) {
+        applyCollectionData(changeUnitId, collectionData, mongoTemplate, TemporaryIndexes.none());
+    }
+
+    /**
+     * Same as {@link #applyCollectionData(String, CollectionData, MongoTemplate)}, building the unit's supporting
+     * indexes once the inserts are in and before the first update/delete query.
+     */
+    public void applyCollectionData(String changeUnitId, CollectionData collectionData, MongoTemplate mongoTemplate,
+                                    TemporaryIndexes temporaryIndexes) {
+        processInsertOperation(changeUnitId, collectionData, mongoTemplate);
+        if (collectionData.getUpdate().isPresent() || collectionData.getDelete().isPresent()) {
+            temporaryIndexes.ensureBuilt();
+        }
+        processUpdateOperation(changeUnitId, collectionData, mongoTemplate);
+        processDeleteOperation(changeUnitId, collectionData, mongoTemplate);
+    }
+
     /**
      * Inserts documents into a collection.
      */
@@ -106,17 +213,223 @@ public class ChangeUnitService {
 
             // Ensure insertNode is an array before iterating
             if (insertNode.isArray()) {
-                for (JsonNode document : insertNode) {
-                    mongoTemplate.insert(Document.parse(document.toString()), collectionName);
-                }
-                System.out.println("Inserted documents into collection: " + collectionName);
-                changeLogService.logChangeLog(changeUnitId, "INSERT", collectionName, true, mongoTemplate);
+                List<String> upsertKeys = resolveUpsertKeys(collectionData.getUpsert(), collectionData.getUpsertKeys());
+                writeInsertSection(changeUnitId, collectionName, insertNode.elements(), upsertKeys, mongoTemplate);
             } else {
                 System.err.println("Insert operation skipped: 'insert' field is not an array.");
             }
         });
     }
 
+    /**
+     * Returns the key fields to upsert on, an empty list to upsert on {@code _id}, or null for plain inserts.
+     * A change unit's own {@code upsert} flag wins; naming {@code upsertKeys} implies it; otherwise {@code mongock.insert.mode} decides.
+     */
+    public List<String> resolveUpsertKeys(Boolean upsert, List<String> upsertKeys) {
+        boolean enabled = upsert != null
+                ? upsert
+                : (upsertKeys != null && !upsertKeys.isEmpty()) || "upsert".equalsIgnoreCase(insertMode);
+        if (!enabled) {
+            return null;
+        }
+        return upsertKeys != null ? upsertKeys : List.of();
+    }
+
+    /**
+     * Writes an insert section as plain inserts, or as upserts when {@code upsertKeys} is not null.
+     */
+    @Override
+    public void writeInsertSection(String changeUnitId, String collectionName, Iterator<JsonNode> documents, List<String> upsertKeys,
+                                   MongoTemplate mongoTemplate) {
+        if (upsertKeys == null) {
+            insertDocuments(changeUnitId, collectionName, documents, mongoTemplate);
+        } else {
+            upsertDocuments(changeUnitId, collectionName, documents, upsertKeys, mongoTemplate);
+        }
+    }
+
+    /**
+     * Writes documents as {@code replaceOne} upserts in unordered {@code bulkWrite} batches, so a retried or
+     * partially rerun change unit converges on the same documents instead of failing on or duplicating them.
+     * Documents are matched on the key fields, or on {@code _id}; a document without one gets an {@code _id}
+     * derived from a SHA-256 of its canonical content (see {@link #upsertModels(List)}). Key fields are backed by a
+     * unique index, which {@link IndexService#ensureUniqueIndex} builds before the unit's data sections run.
+     */
+    public void upsertDocuments(String changeUnitId, String collectionName, Iterator<JsonNode> documents, List<String> keyFields,
+                                MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "INSERT", List.of(collectionName), true);
+        changeLog.setInsertedCount(0L);
+        changeLog.setMatchedCount(0L);
+        changeLog.setModifiedCount(0L);
+        applyBulkQueries(collectionName, documents, upsertModels(keyFields), insertOrdered, changeLog, mongoTemplate);
+
+        System.out.println("Upserted documents into collection: " + collectionName + " (inserted " + changeLog.getInsertedCount()
+                + ", matched " + changeLog.getMatchedCount() + ", modified " + changeLog.getModifiedCount() + ")");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    /**
+     * Maps the documents of one write to upsert models. Identical documents without an {@code _id} would get the same
+     * derived id and be stored once, so the second one is rejected instead: such rows need an {@code _id} of their own.
+     */
+    Function<JsonNode, WriteModel<Document>> upsertModels(List<String> keyFields) {
+        Set<ObjectId> derivedIds = new HashSet<>();
+        return documentNode -> toUpsertModel(documentNode, keyFields, derivedIds);
+    }
+
+    private static WriteModel<Document> toUpsertModel(JsonNode documentNode, List<String> keyFields, Set<ObjectId> derivedIds) {
+        Document document = BsonConverter.toDocument(documentNode);
+        Document filter = new Document();
+        if (keyFields.isEmpty()) {
+            if (!document.containsKey("_id")) {
+                ObjectId id = deterministicId(documentNode);
+                if (!derivedIds.add(id)) {
+                    throw new IllegalArgumentException("Identical documents without an _id would be upserted as one document;"
+                            + " give each one its own _id: " + documentNode);
+                }
+                document.put("_id", id);
+            }
+            filter.put("_id", document.get("_id"));
+        } else {
+            for (String keyField : keyFields) {
+                Object value = valueAt(document, keyField);
+                if (value == null) {
+                    throw new IllegalArgumentException("Document has no value for upsert key '" + keyField + "': " + documentNode);
+                }
+                filter.put(keyField, value);
+            }
+        }
+        return new ReplaceOneModel<>(filter, document, new ReplaceOptions().upsert(true));
+    }
+
+    // Dotted key fields address embedded documents
+    private static Object valueAt(Document document, String path) {
+        Object value = document;
+        for (String part : path.split("\\.")) {
+            if (!(value instanceof Document embedded)) {
+                return null;
+            }
+            value = embedded.get(part);
+        }
+        return value;
+    }
+
+    // First 12 bytes of the content hash, so derived ids are as compact as generated ones
+    private static ObjectId deterministicId(JsonNode documentNode) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical(documentNode).toString().getBytes(StandardCharsets.UTF_8));
+            return new ObjectId(Arrays.copyOf(hash, 12));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Keys sorted at every level, so reordering a document's fields does not change its derived id
+    private static JsonNode canonical(JsonNode node) {
+        if (node.isObject()) {
+            TreeMap<String, JsonNode> fields = new TreeMap<>();
+            node.fields().forEachRemaining(field -> fields.put(field.getKey(), canonical(field.getValue())));
+            ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+            sorted.setAll(fields);
+            return sorted;
+        }
+        if (node.isArray()) {
+            ArrayNode elements = JsonNodeFactory.instance.arrayNode(node.size());
+            node.forEach(element -> elements.add(canonical(element)));
+            return elements;
+        }
+        return node;
+    }
+
+    /**
+     * Inserts documents in batches of {@code mongock.insert.batch-size}, one {@code insertMany} round trip per batch.
+     * Documents are pulled from the iterator lazily, so at most one batch is held in memory at a time.
+     */
+    public void insertDocuments(String changeUnitId, String collectionName, Iterator<JsonNode> documents, MongoTemplate mongoTemplate) {
+        Iterator<Document> converted = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Document next() {
+                return BsonConverter.toDocument(documents.next());
+            }
+        };
+        insertAll(changeUnitId, collectionName, converted, Document.class, mongoTemplate);
+    }
+
+    /**
+     * Inserts documents read straight from a BSON file; they are sent to the server without being decoded.
+     */
+    public void insertRawDocuments(String changeUnitId, String collectionName, Iterator<RawBsonDocument> documents,
+                                   MongoTemplate mongoTemplate) {
+        insertAll(changeUnitId, collectionName, documents, RawBsonDocument.class, mongoTemplate);
+    }
+
+    private <T> void insertAll(String changeUnitId, String collectionName, Iterator<T> documents, Class<T> documentClass,
+                               MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "INSERT", List.of(collectionName), true);
+        changeLog.setInsertedCount(0L);
+        changeLog.setBatchCounts(new ArrayList<>());
+        List<T> batch = new ArrayList<>(insertBatchSize);
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            while (documents.hasNext()) {
+                batch.add(documents.next());
+                if (batch.size() >= insertBatchSize) {
+                    insertBatch(collectionName, batch, documentClass, changeLog, mongoTemplate);
+                    batch = new ArrayList<>(insertBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(collectionName, batch, documentClass, changeLog, mongoTemplate);
+            }
+        } catch (RuntimeException e) {
+            changeLog.setSuccess(false);
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "INSERT", collectionName, false);
+            migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "INSERT", collectionName, changeLog.getInsertedCount());
+            throw e;
+        }
+        migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "INSERT", collectionName, true);
+        migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "INSERT", collectionName, changeLog.getInsertedCount());
+        System.out.println("Inserted " + changeLog.getInsertedCount() + " documents into collection: " + collectionName
+                + " in " + changeLog.getBatchCounts().size() + " batches");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    /**
+     * Writes one batch with a single {@code insertMany} and records the acknowledged count on the change log entry.
+     * A partially applied unordered batch still records what the server acknowledged before the error is rethrown.
+     */
+    private <T> void insertBatch(String collectionName, List<T> batch, Class<T> documentClass, ChangeLog changeLog,
+                                 MongoTemplate mongoTemplate) {
+        migrationMetrics.recordBatch(mongoTemplate, "insert", collectionName, batch.size());
+        migrationThrottle.acquire(mongoTemplate, changeLog.getChangeUnitId(), batch.size());
+        migrationLockService.ensureHeld(mongoTemplate);
+        try {
+            long start = System.nanoTime();
+            InsertManyResult result = mongoTemplate.getCollection(collectionName).withDocumentClass(documentClass)
+                    .insertMany(batch, new InsertManyOptions().ordered(insertOrdered));
+            migrationThrottle.recordLatency(mongoTemplate, changeLog.getChangeUnitId(), System.nanoTime() - start);
+            recordInsertBatch(changeLog, result.getInsertedIds().size());
+        } catch (MongoBulkWriteException e) {
+            recordInsertBatch(changeLog, e.getWriteResult().getInsertedCount());
+            throw e;
+        }
+    }
+
+    void recordInsertBatch(ChangeLog changeLog, int insertedCount) {
+        if (changeLog.getBatchCounts() == null) {
+            changeLog.setBatchCounts(new ArrayList<>());
+            changeLog.setInsertedCount(0L);
+        }
+        changeLog.getBatchCounts().add(insertedCount);
+        changeLog.setInsertedCount(changeLog.getInsertedCount() + insertedCount);
+    }
+
 
 
     /**
@@ -128,35 +441,48 @@ public class ChangeUnitService {
             JsonNode queriesNode = updateNode.get("queries");
 
             if (queriesNode != null && queriesNode.isArray()) {
-                for (JsonNode queryNode : queriesNode) {
-                    JsonNode query = queryNode.get("query");
-                    JsonNode update = queryNode.get("update");
-                    updateDocument(collectionName, query, update, mongoTemplate);
-                }
-                System.out.println("Updated documents in collection: " + collectionName);
-                changeLogService.logChangeLog(changeUnitId, "UPDATE", collectionName, true,mongoTemplate);
+                applyUpdateQueries(changeUnitId, collectionName, queriesNode.elements(), collectionData.isOrdered(), mongoTemplate);
             } else {
                 System.err.println("Update operation skipped: 'queries' field is missing or not an array.");
             }
         });
     }
 
+    /**
+     * Applies {@code {query, update}} entries as {@code updateMany} models, grouped into
+     * {@code bulkWrite} batches of {@code mongock.bulk.batch-size}.
+     */
+    @Override
+    public void applyUpdateQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                                   MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "UPDATE", List.of(collectionName), true);
+        changeLog.setMatchedCount(0L);
+        changeLog.setModifiedCount(0L);
+        applyBulkQueries(collectionName, queries, this::toUpdateModel, ordered, changeLog, mongoTemplate);
+
+        if (changeLog.getMatchedCount() == 0) {
+            System.err.println("Update queries matched no documents in collection: " + collectionName);
+        }
+        System.out.println("Updated documents in collection: " + collectionName
+                + " (matched " + changeLog.getMatchedCount() + ", modified " + changeLog.getModifiedCount() + ")");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
 
-    private void updateDocument(String collectionName, JsonNode queryNode, JsonNode updateNode, MongoTemplate mongoTemplate) {
-        Map<String, Object> query = objectMapper.convertValue(queryNode, Map.class);
-        Map<String, Object> updateFields = objectMapper.convertValue(updateNode, Map.class);
+    WriteModel<Document> toUpdateModel(JsonNode queryNode) {
+        Document query = BsonConverter.toDocument(requireQuery(queryNode));
+        Document updateFields = BsonConverter.toDocument(queryNode.get("update"));
 
         Document updateDocument;
 
-        if (updateFields.containsKey("$set") || updateFields.containsKey("$inc") || updateFields.containsKey("$push")) {
+        if (ChangeUnitSchema.isOperatorUpdate(updateFields.keySet())) {
             // ✅ Use the update fields directly if they already contain MongoDB update operators
-            updateDocument = new Document(updateFields);
+            updateDocument = updateFields;
         } else {
             // ✅ Wrap in $set only if missing
             updateDocument = new Document("$set", updateFields);
         }
 
-        mongoTemplate.getCollection(collectionName).updateMany(new Document(query), updateDocument);
+        return new UpdateManyModel<>(query, updateDocument);
     }
 
 
@@ -169,12 +495,7 @@ public class ChangeUnitService {
             JsonNode queriesNode = deleteNode.get("queries");
 
             if (queriesNode != null && queriesNode.isArray()) {
-                for (JsonNode queryNode : queriesNode) {
-                    JsonNode query = queryNode.get("query");
-                    deleteDocument(collectionName, query, mongoTemplate);
-                }
-                System.out.println("Deleted documents in collection: " + collectionName);
-                changeLogService.logChangeLog(changeUnitId, "DELETE", collectionName, true, mongoTemplate);
+                applyDeleteQueries(changeUnitId, collectionName, queriesNode.elements(), collectionData.isOrdered(), mongoTemplate);
             } else {
                 System.err.println("Delete operation skipped: 'queries' field is missing or not an array.");
             }
@@ -183,8 +504,116 @@ public class ChangeUnitService {
 
 
 
-    private void deleteDocument(String collectionName, JsonNode queryNode, MongoTemplate mongoTemplate) {
-        Map<String, Object> query = objectMapper.convertValue(queryNode, Map.class);
-        mongoTemplate.getCollection(collectionName).deleteMany(new Document(query));
+    /**
+     * Applies {@code {query}} entries as {@code deleteMany} models, grouped into
+     * {@code bulkWrite} batches of {@code mongock.bulk.batch-size}.
+     */
+    @Override
+    public void applyDeleteQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                                   MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "DELETE", List.of(collectionName), true);
+        changeLog.setDeletedCount(0L);
+        applyBulkQueries(collectionName, queries, this::toDeleteModel, ordered, changeLog, mongoTemplate);
+
+        if (changeLog.getDeletedCount() == 0) {
+            System.err.println("Delete queries matched no documents in collection: " + collectionName);
+        }
+        System.out.println("Deleted " + changeLog.getDeletedCount() + " documents in collection: " + collectionName);
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    WriteModel<Document> toDeleteModel(JsonNode queryNode) {
+        return new DeleteManyModel<>(BsonConverter.toDocument(requireQuery(queryNode)));
+    }
+
+    private JsonNode requireQuery(JsonNode queryNode) {
+        JsonNode query = queryNode.get("query");
+        if (query == null || !query.isObject()) {
+            throw new IllegalArgumentException("Query entry has no 'query' object: " + queryNode);
+        }
+        return query;
+    }
+
+    /**
+     * Streams query entries into {@code bulkWrite} batches and accumulates the per-batch results on the change log entry.
+     * The entry is saved as failed before the error is rethrown, with whatever the server acknowledged so far.
+     */
+    private void applyBulkQueries(String collectionName, Iterator<JsonNode> queries, Function<JsonNode, WriteModel<Document>> toModel,
+                                  boolean ordered, ChangeLog changeLog, MongoTemplate mongoTemplate) {
+        changeLog.setBatchCounts(new ArrayList<>());
+        List<WriteModel<Document>> batch = new ArrayList<>(bulkBatchSize);
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            while (queries.hasNext()) {
+                batch.add(toModel.apply(queries.next()));
+                if (batch.size() >= bulkBatchSize) {
+                    bulkWriteBatch(collectionName, batch, ordered, changeLog, mongoTemplate);
+                    batch = new ArrayList<>(bulkBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                bulkWriteBatch(collectionName, batch, ordered, changeLog, mongoTemplate);
+            }
+        } catch (RuntimeException e) {
+            changeLog.setSuccess(false);
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            recordBulkMetrics(sample, collectionName, changeLog, mongoTemplate);
+            throw e;
+        }
+        recordBulkMetrics(sample, collectionName, changeLog, mongoTemplate);
+    }
+
+    void recordBulkMetrics(Timer.Sample sample, String collectionName, ChangeLog changeLog, MongoTemplate mongoTemplate) {
+        long documents = changeLog.getDeletedCount() != null
+                ? changeLog.getDeletedCount()
+                : changeLog.getMatchedCount() + (changeLog.getInsertedCount() != null ? changeLog.getInsertedCount() : 0);
+        migrationMetrics.recordOperation(sample, mongoTemplate, changeLog.getChangeUnitId(), changeLog.getOperation(), collectionName,
+                changeLog.isSuccess());
+        migrationMetrics.recordDocuments(mongoTemplate, changeLog.getChangeUnitId(), changeLog.getOperation(), collectionName, documents);
+    }
+
+    private void bulkWriteBatch(String collectionName, List<WriteModel<Document>> batch, boolean ordered, ChangeLog changeLog,
+                                MongoTemplate mongoTemplate) {
+        migrationMetrics.recordBatch(mongoTemplate, changeLog.getOperation().toLowerCase(), collectionName, batch.size());
+        migrationThrottle.acquire(mongoTemplate, changeLog.getChangeUnitId(), batch.size());
+        migrationLockService.ensureHeld(mongoTemplate);
+        try {
+            long start = System.nanoTime();
+            BulkWriteResult result = mongoTemplate.getCollection(collectionName)
+                    .bulkWrite(batch, new BulkWriteOptions().ordered(ordered));
+            migrationThrottle.recordLatency(mongoTemplate, changeLog.getChangeUnitId(), System.nanoTime() - start);
+            recordBulkBatch(changeLog, batch.size(), result, true);
+        } catch (MongoBulkWriteException e) {
+            recordBulkBatch(changeLog, batch.size(), e.getWriteResult(), false);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds one batch's result to the change log entry. For a batch that ran to completion, every query that matched
+     * something matched at least one document, so a matched (or deleted) count below the number of queries means at
+     * least that many of them matched nothing; the batch's position in the section is reported. The check is
+     * approximate: the server only returns totals per batch, so queries that matched nothing go unreported whenever
+     * others in the same batch matched several documents. A dry run explains the queries one by one.
+     */
+    void recordBulkBatch(ChangeLog changeLog, int batchSize, BulkWriteResult result, boolean complete) {
+        long first = changeLog.getBatchCounts().stream().mapToLong(Integer::longValue).sum();
+        changeLog.getBatchCounts().add(batchSize);
+        long affected = changeLog.getDeletedCount() != null ? result.getDeletedCount() : result.getMatchedCount() + result.getUpserts().size();
+        if (complete && affected < batchSize) {
+            System.err.println("At least " + (batchSize - affected) + " of " + changeLog.getOperation() + " queries " + first + "-"
+                    + (first + batchSize - 1) + " matched no documents in collection: " + changeLog.getCollectionNames().get(0)
+                    + " (approximate, from the batch totals; others may have gone unnoticed; a dry run lists them)");
+        }
+        if (changeLog.getMatchedCount() != null) {
+            changeLog.setMatchedCount(changeLog.getMatchedCount() + result.getMatchedCount());
+            changeLog.setModifiedCount(changeLog.getModifiedCount() + result.getModifiedCount());
+        }
+        if (changeLog.getDeletedCount() != null) {
+            changeLog.setDeletedCount(changeLog.getDeletedCount() + result.getDeletedCount());
+        }
+        if (changeLog.getInsertedCount() != null) {
+            changeLog.setInsertedCount(changeLog.getInsertedCount() + result.getUpserts().size());
+        }
     }
 }
@@ -0,0 +1,367 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeUnitCheckpointRepository;
+import com.example.mongock.model.ChangeUnitCheckpoint;
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.util.ChangeUnitFileFormats;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads change-unit files with Jackson's token stream instead of building a tree for the whole file.
+ * Only one insert document or update/delete query is materialised at a time, and the writers in
+ * {@link ChangeUnitService} pull them in batches, so heap usage does not grow with the file size.
+ * Which sections to read, and in how many passes, comes from the file's {@link ChangeUnitPlan}.
+ */
+@Service
+public class ChangeUnitStreamReader {
+
+    // Data sections are always applied in this order, regardless of their order in the file
+    private static final List<String> DATA_SECTIONS = List.of("insert", "update", "delete");
+
+    private final ChangeUnitService changeUnitService;
+    private final ChangeLogService changeLogService;
+    private final ChangeUnitTransactionService transactionService;
+    private final ChangeUnitCheckpointRepository checkpointRepository;
+    private final ReactiveChangeUnitEngine reactiveEngine;
+    private final ObjectMapper objectMapper;
+
+    @Value("${mongock.checkpoint.enabled:false}")
+    private boolean checkpointsEnabled;
+
+    @Value("${mongock.checkpoint.interval:10000}")
+    private int checkpointInterval;
+
+    @Autowired
+    public ChangeUnitStreamReader(ChangeUnitService changeUnitService, ChangeLogService changeLogService,
+                                  ChangeUnitTransactionService transactionService,
+                                  ChangeUnitCheckpointRepository checkpointRepository, ReactiveChangeUnitEngine reactiveEngine,
+                                  ObjectMapper objectMapper) {
+        this.changeUnitService = changeUnitService;
+        this.changeLogService = changeLogService;
+        this.transactionService = transactionService;
+        this.checkpointRepository = checkpointRepository;
+        this.reactiveEngine = reactiveEngine;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Streams the insert, update and delete sections of a collection data file into the writers.
+     * Files that list the sections in the usual insert/update/delete order are read in a single pass.
+     * With checkpoints or transactions enabled, a unit that failed part-way resumes after its last acknowledged chunk.
+     */
+    public void processCollectionData(String changeUnitId, String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate) {
+        processCollectionData(changeUnitId, filePath, plan, mongoTemplate, TemporaryIndexes.none());
+    }
+
+    /**
+     * Same as {@link #processCollectionData(String, String, ChangeUnitPlan, MongoTemplate)}, building the unit's
+     * supporting indexes right before its first update/delete section.
+     */
+    public void processCollectionData(String changeUnitId, String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate,
+                                      TemporaryIndexes temporaryIndexes) {
+        try {
+            ChangeUnitCheckpoint checkpoint = tracksProgress() ? loadCheckpoint(changeUnitId, plan, mongoTemplate) : null;
+            List<String> pending = DATA_SECTIONS.stream()
+                    .filter(plan.getSections()::contains)
+                    .filter(section -> checkpoint == null
+                            || DATA_SECTIONS.indexOf(section) >= DATA_SECTIONS.indexOf(checkpoint.getSection()))
+                    .toList();
+            int next = 0;
+            while (next < pending.size()) {
+                next = streamPass(changeUnitId, filePath, plan, checkpoint, pending, next, temporaryIndexes, mongoTemplate);
+            }
+            if (tracksProgress()) {
+                checkpointRepository.delete(mongoTemplate, changeUnitId);
+            }
+        } catch (Exception e) {
+            changeLogService.logChangeLog(changeUnitId, "TRANSACTION", Collections.emptyList(), false, mongoTemplate);
+            throw ChangeUnitException.failed(changeUnitId, "TRANSACTION", e);
+        }
+    }
+
+    /**
+     * Reads the file once, applying every pending section that appears in order and skipping the rest.
+     * Returns the index of the first section still to be applied.
+     */
+    private int streamPass(String changeUnitId, String filePath, ChangeUnitPlan plan, ChangeUnitCheckpoint checkpoint,
+                           List<String> pending, int next, TemporaryIndexes temporaryIndexes, MongoTemplate mongoTemplate) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(ChangeUnitFileFormats.open(filePath))) {
+            expectStartObject(parser, filePath);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                if (next < pending.size() && fieldName.equals(pending.get(next))) {
+                    if (!"insert".equals(fieldName)) {
+                        temporaryIndexes.ensureBuilt();
+                    }
+                    long resumeAt = checkpoint != null && fieldName.equals(checkpoint.getSection()) ? checkpoint.getPosition() : 0;
+                    SectionWriter sectionWriter = new SectionWriter(changeUnitId, plan.getSha256(), fieldName, resumeAt, parser);
+                    processSection(sectionWriter, plan, mongoTemplate);
+                    next++;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return next;
+    }
+
+    private void processSection(SectionWriter sectionWriter, ChangeUnitPlan plan, MongoTemplate mongoTemplate) throws IOException {
+        String collectionName = plan.getCollectionName();
+        boolean ordered = plan.isOrdered();
+        String changeUnitId = sectionWriter.changeUnitId;
+        String section = sectionWriter.section;
+        JsonParser parser = sectionWriter.parser;
+        ChangeUnitWriter writer = writer();
+        if ("insert".equals(section)) {
+            if (parser.currentToken() == JsonToken.START_ARRAY) {
+                List<String> upsertKeys = changeUnitService.resolveUpsertKeys(plan.getUpsert(), plan.getUpsertKeys());
+                BiConsumer<Iterator<JsonNode>, MongoTemplate> insert =
+                        (documents, template) -> writer.writeInsertSection(changeUnitId, collectionName, documents, upsertKeys, template);
+                if (upsertKeys == null && checkpointsEnabled && !transactionService.isEnabled()) {
+                    // The chunk after the last checkpoint may be partly written already: replay it as _id upserts
+                    sectionWriter.writeReplayable(mongoTemplate, insert,
+                            (documents, template) -> writer.writeInsertSection(changeUnitId, collectionName, documents, List.of(), template));
+                } else {
+                    sectionWriter.write(mongoTemplate, insert);
+                }
+            } else {
+                System.err.println("Insert operation skipped: 'insert' field is not an array.");
+                parser.skipChildren();
+            }
+            return;
+        }
+
+        boolean queriesFound = false;
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("queries".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    queriesFound = true;
+                    if ("update".equals(section)) {
+                        sectionWriter.write(mongoTemplate,
+                                (queries, template) -> writer.applyUpdateQueries(changeUnitId, collectionName, queries, ordered, template));
+                    } else {
+                        sectionWriter.write(mongoTemplate,
+                                (queries, template) -> writer.applyDeleteQueries(changeUnitId, collectionName, queries, ordered, template));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        if (!queriesFound) {
+            String operation = "update".equals(section) ? "Update" : "Delete";
+            System.err.println(operation + " operation skipped: 'queries' field is missing or not an array.");
+        }
+    }
+
+    /**
+     * Streamed sections are committed in several transactions, so with transactions enabled every chunk records its
+     * checkpoint in its own transaction even when {@code mongock.checkpoint.enabled} is off.
+     */
+    private boolean tracksProgress() {
+        return checkpointsEnabled || transactionService.isEnabled();
+    }
+
+    /**
+     * The reactive engine when it is selected; transactions bind writes to a blocking session, so they keep the blocking writer.
+     */
+    private ChangeUnitWriter writer() {
+        return reactiveEngine != null && reactiveEngine.isEnabled() && !transactionService.isEnabled()
+                ? reactiveEngine
+                : changeUnitService;
+    }
+
+    /**
+     * Returns the unit's checkpoint if it was taken on the same version of the file; a stale one is discarded.
+     */
+    private ChangeUnitCheckpoint loadCheckpoint(String changeUnitId, ChangeUnitPlan plan, MongoTemplate mongoTemplate) {
+        ChangeUnitCheckpoint checkpoint = checkpointRepository.find(mongoTemplate, changeUnitId);
+        if (checkpoint == null) {
+            return null;
+        }
+        if (!Objects.equals(checkpoint.getSha256(), plan.getSha256())) {
+            System.err.println("ChangeUnit (" + changeUnitId + ") file changed since its checkpoint; starting from the beginning.");
+            checkpointRepository.delete(mongoTemplate, changeUnitId);
+            return null;
+        }
+        System.out.println("ChangeUnit (" + changeUnitId + ") resuming " + checkpoint.getSection()
+                + " after element " + checkpoint.getPosition());
+        return checkpoint;
+    }
+
+    /**
+     * Writes one array section, skipping the elements a checkpoint already covers and, with checkpoints enabled,
+     * saving a new checkpoint after every {@code mongock.checkpoint.interval} acknowledged elements. A failure
+     * between two checkpoints replays at most that one chunk: the first chunk a run writes. For plain inserts that
+     * chunk goes to the replay writer ({@code _id} upserts), and documents without an {@code _id} get one derived
+     * from their position in the section, so the replay finds what the failed run wrote instead of failing on
+     * duplicate keys or duplicating documents. With transactions, each transaction-sized chunk saves its checkpoint
+     * in the same transaction, so nothing is replayed.
+     */
+    private class SectionWriter {
+        private final String changeUnitId;
+        private final String sha256;
+        private final String section;
+        private final JsonParser parser;
+        private long position;
+
+        SectionWriter(String changeUnitId, String sha256, String section, long position, JsonParser parser) {
+            this.changeUnitId = changeUnitId;
+            this.sha256 = sha256;
+            this.section = section;
+            this.position = position;
+            this.parser = parser;
+        }
+
+        void write(MongoTemplate mongoTemplate, BiConsumer<Iterator<JsonNode>, MongoTemplate> writer) throws IOException {
+            write(mongoTemplate, writer, null);
+        }
+
+        void writeReplayable(MongoTemplate mongoTemplate, BiConsumer<Iterator<JsonNode>, MongoTemplate> writer,
+                             BiConsumer<Iterator<JsonNode>, MongoTemplate> replayWriter) throws IOException {
+            write(mongoTemplate, writer, replayWriter);
+        }
+
+        private void write(MongoTemplate mongoTemplate, BiConsumer<Iterator<JsonNode>, MongoTemplate> writer,
+                           BiConsumer<Iterator<JsonNode>, MongoTemplate> replayWriter) throws IOException {
+            skipElements(parser, position);
+            Iterator<JsonNode> items = arrayElements(parser);
+            if (transactionService.isEnabled()) {
+                long start = position;
+                position += transactionService.runInChunks(items, mongoTemplate, writer, (sessionTemplate, committed, chunkSize) ->
+                        checkpointRepository.save(sessionTemplate, checkpoint(start + committed, chunkSize)));
+                return;
+            }
+            if (!checkpointsEnabled) {
+                writer.accept(items, mongoTemplate);
+                return;
+            }
+            boolean replay = replayWriter != null;
+            while (items.hasNext()) {
+                List<JsonNode> chunk = new ArrayList<>();
+                while (chunk.size() < checkpointInterval && items.hasNext()) {
+                    JsonNode element = items.next();
+                    chunk.add(replayWriter != null ? withPositionId(element, position + chunk.size()) : element);
+                }
+                (replay ? replayWriter : writer).accept(chunk.iterator(), mongoTemplate);
+                replay = false;
+                position += chunk.size();
+                checkpointRepository.save(mongoTemplate, checkpoint(position, chunk.size()));
+            }
+        }
+
+        /**
+         * Gives a document without an {@code _id} one derived from the unit and its position in the section, the same
+         * on every run of the same file version.
+         */
+        private JsonNode withPositionId(JsonNode element, long index) {
+            if (!(element instanceof ObjectNode document) || document.has("_id")) {
+                return element;
+            }
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256")
+                        .digest((changeUnitId + "/" + section + "/" + index).getBytes(StandardCharsets.UTF_8));
+                document.putObject("_id").put("$oid", new ObjectId(Arrays.copyOf(hash, 12)).toHexString());
+                return document;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        private ChangeUnitCheckpoint checkpoint(long position, int lastBatchSize) {
+            ChangeUnitCheckpoint checkpoint = new ChangeUnitCheckpoint();
+            checkpoint.setChangeUnitId(changeUnitId);
+            checkpoint.setSha256(sha256);
+            checkpoint.setSection(section);
+            checkpoint.setPosition(position);
+            checkpoint.setByteOffset(parser.currentLocation().getByteOffset());
+            checkpoint.setLastBatchSize(lastBatchSize);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Skips the first {@code count} elements of the array the parser is positioned on, tokenizing them without building trees.
+     */
+    private static void skipElements(JsonParser parser, long count) throws IOException {
+        for (long skipped = 0; skipped < count; skipped++) {
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                throw new IOException("Checkpoint position " + count + " is past the end of the section (" + skipped + " elements)");
+            }
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Iterates the elements of the array the parser is positioned on, reading one element tree per call.
+     * The parser is left on the closing {@code END_ARRAY} once the iterator is exhausted.
+     */
+    private Iterator<JsonNode> arrayElements(JsonParser parser) {
+        return new Iterator<>() {
+            private JsonNode nextElement;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (nextElement == null && !finished) {
+                    try {
+                        if (parser.nextToken() == JsonToken.END_ARRAY) {
+                            finished = true;
+                        } else {
+                            nextElement = parser.readValueAsTree();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return nextElement != null;
+            }
+
+            @Override
+            public JsonNode next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                JsonNode element = nextElement;
+                nextElement = null;
+                return element;
+            }
+        };
+    }
+
+    private void expectStartObject(JsonParser parser, String filePath) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Change unit file must contain a JSON object: " + filePath);
+        }
+    }
+}
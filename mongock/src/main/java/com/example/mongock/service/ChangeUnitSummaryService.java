@@ -0,0 +1,118 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.Repository.ChangeUnitSummaryRepository;
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.ChangeUnitSummary;
+import com.example.mongock.model.FileMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one summary per change unit (status, checksum of its file, duration and document counts) next to the
+ * per-step change log, and decides from it whether a unit still has to run. A unit counts as applied once its last
+ * run succeeded, whatever day that was; when its file changed since, {@code mongock.changelog.checksum-mismatch}
+ * decides: {@code fail} stops the database before its first write, {@code warn} skips the unit with a warning and
+ * {@code rerun} runs it again.
+ */
+@Service
+public class ChangeUnitSummaryService {
+
+    private final ChangeUnitSummaryRepository summaryRepository;
+    private final ChangeLogRepository changeLogRepository;
+
+    @Value("${mongock.changelog.step-retention-days:0}")
+    private long stepRetentionDays;
+
+    @Value("${mongock.changelog.checksum-mismatch:fail}")
+    private String checksumMismatch;
+
+    @Autowired
+    public ChangeUnitSummaryService(ChangeUnitSummaryRepository summaryRepository, ChangeLogRepository changeLogRepository) {
+        this.summaryRepository = summaryRepository;
+        this.changeLogRepository = changeLogRepository;
+    }
+
+    /**
+     * Loads every summary of a database. A database that only has the older per-step change log gets its summaries
+     * built from it first, or, with {@code write} false (dry run), only computed; step retention is applied after that,
+     * so no entry expires before its unit is summarized.
+     */
+    public Map<String, ChangeUnitSummary> loadSummaries(MongoTemplate mongoTemplate, boolean write) {
+        Map<String, ChangeUnitSummary> summaries = summaryRepository.findAll(mongoTemplate);
+        if (summaries.isEmpty()) {
+            List<ChangeUnitSummary> backfilled = summaryRepository.backfill(mongoTemplate, write);
+            backfilled.forEach(summary -> summaries.put(summary.getChangeUnitId(), summary));
+            if (!backfilled.isEmpty()) {
+                System.out.println((write ? "Built " : "Computed ") + backfilled.size()
+                        + " change unit summaries from the existing change log of database: " + mongoTemplate.getDb().getName());
+            }
+        }
+        if (write) {
+            changeLogRepository.ensureStepRetention(mongoTemplate, stepRetentionDays);
+        }
+        return summaries;
+    }
+
+    /**
+     * Whether the unit can be skipped. A changed file of an applied unit is handled as configured; under {@code fail}
+     * the unit is added to {@code mismatches} for the caller to report, so every changed file is listed at once.
+     */
+    public boolean isApplied(FileMetadata metadata, ChangeUnitPlan plan, ChangeUnitSummary summary, List<String> mismatches) {
+        if (summary == null || !summary.isApplied()) {
+            return false;
+        }
+        if (summary.getSha256() == null || summary.getSha256().equals(plan.getSha256())) {
+            return true;
+        }
+        String message = "ChangeUnit (" + metadata.getChangeUnitId() + ") was applied from a different version of " + metadata.getFileName()
+                + " (sha256 " + summary.getSha256() + ", now " + plan.getSha256() + ")";
+        switch (checksumMismatch.toLowerCase()) {
+            case "rerun" -> {
+                System.out.println(message + ", running it again.");
+                return false;
+            }
+            case "warn" -> System.err.println("WARNING: " + message + ", not running it again.");
+            default -> mismatches.add(message);
+        }
+        return true;
+    }
+
+    /**
+     * Stores the checksum of an applied unit whose summary came from the older change log and has none yet,
+     * so later changes to its file are detected.
+     */
+    public void adoptChecksum(MongoTemplate mongoTemplate, ChangeUnitSummary summary, ChangeUnitPlan plan) {
+        if (summary != null && summary.getSha256() == null) {
+            summaryRepository.adoptChecksum(mongoTemplate, summary.getChangeUnitId(), plan.getSha256());
+        }
+    }
+
+    /**
+     * Upserts the unit's summary from the change log entries it wrote since {@code startedAt}; call after they are flushed.
+     * Failures are thrown: the applied check only reads summaries, so a unit without one would run again in full next
+     * time, and must be reported as failed rather than as applied.
+     */
+    public void record(FileMetadata metadata, ChangeUnitPlan plan, LocalDateTime startedAt, long startNanos, Exception failure,
+                       MongoTemplate mongoTemplate) {
+        // Stored dates have millisecond precision
+        ChangeUnitSummary summary = summaryRepository.summarizeSteps(mongoTemplate, metadata.getChangeUnitId(),
+                startedAt.truncatedTo(ChronoUnit.MILLIS));
+        summary.setStatus(failure == null && summary.getFailedSteps() == 0 ? ChangeUnitSummary.APPLIED : ChangeUnitSummary.FAILED);
+        summary.setFileName(metadata.getFileName());
+        summary.setSha256(plan.getSha256());
+        summary.setStartedAt(startedAt);
+        summary.setFinishedAt(LocalDateTime.now());
+        summary.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        summary.setError(failure != null ? failure.toString() : null);
+        summaryRepository.upsert(mongoTemplate, summary);
+    }
+}
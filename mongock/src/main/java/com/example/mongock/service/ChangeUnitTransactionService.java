@@ -0,0 +1,204 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.CollectionData;
+import com.example.mongock.util.BsonConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.MongoException;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs change-unit writes inside multi-document transactions when {@code mongock.transaction.enabled} is set.
+ * Every write and change log entry of a transaction goes through a session-bound {@link MongoTemplate}, and
+ * transactions are retried on {@code TransientTransactionError} / {@code UnknownTransactionCommitResult}.
+ * Large sections are split into several transactions of at most {@code mongock.transaction.max-documents}
+ * documents and roughly {@code mongock.transaction.max-bytes}, keeping each one well inside the server's
+ * transaction size and lifetime limits. Transactions need a replica set (a single-node one is enough).
+ */
+@Service
+public class ChangeUnitTransactionService {
+
+    private final ChangeUnitService changeUnitService;
+    private final ChangeLogService changeLogService;
+    private final ChangeLogWriter changeLogWriter;
+    private final MigrationClientProfile migrationClientProfile;
+
+    @Value("${mongock.transaction.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mongock.transaction.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${mongock.transaction.max-documents:5000}")
+    private int maxDocuments;
+
+    @Value("${mongock.transaction.max-bytes:8388608}")
+    private long maxBytes;
+
+    @Autowired
+    public ChangeUnitTransactionService(ChangeUnitService changeUnitService, ChangeLogService changeLogService,
+                                        ChangeLogWriter changeLogWriter, MigrationClientProfile migrationClientProfile) {
+        this.changeUnitService = changeUnitService;
+        this.changeLogService = changeLogService;
+        this.changeLogWriter = changeLogWriter;
+        this.migrationClientProfile = migrationClientProfile;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies a data change unit in one transaction, or, when its inserts exceed the transaction limits,
+     * commits the inserts in chunks first and the updates/deletes in a final transaction. Chunked inserts must be
+     * upserts, since a rerun after a later failure writes the already committed chunks again. Supporting indexes
+     * are built beforehand, outside any transaction.
+     */
+    public void runCollectionData(String changeUnitId, CollectionData collectionData, MongoTemplate mongoTemplate,
+                                  TemporaryIndexes temporaryIndexes) {
+        try {
+            JsonNode insertNode = collectionData.getInsert().filter(JsonNode::isArray).orElse(null);
+            if (insertNode != null && exceedsLimits(insertNode)) {
+                String collectionName = collectionData.getCollectionName();
+                List<String> upsertKeys = changeUnitService.resolveUpsertKeys(collectionData.getUpsert(), collectionData.getUpsertKeys());
+                if (upsertKeys == null) {
+                    throw new IllegalStateException("Inserts into " + collectionName + " exceed the transaction limits and would be"
+                            + " committed in several transactions; set 'upsert' on the change unit or enable mongock.checkpoint.enabled");
+                }
+                runInChunks(insertNode.elements(), mongoTemplate,
+                        (chunk, sessionTemplate) -> changeUnitService.writeInsertSection(changeUnitId, collectionName, chunk, upsertKeys, sessionTemplate),
+                        ChunkProgress.NONE);
+                collectionData.setInsert(null);
+            }
+            if (collectionData.getUpdate().isPresent() || collectionData.getDelete().isPresent()) {
+                temporaryIndexes.ensureBuilt();
+            }
+            runInTransaction(mongoTemplate, sessionTemplate -> changeUnitService.applyCollectionData(changeUnitId, collectionData, sessionTemplate));
+        } catch (Exception e) {
+            changeLogService.logChangeLog(changeUnitId, "TRANSACTION", Collections.emptyList(), false, mongoTemplate);
+            throw ChangeUnitException.failed(changeUnitId, "TRANSACTION", e);
+        }
+    }
+
+    /**
+     * Pulls items into chunks bounded by the transaction limits and hands each chunk to the writer in its own transaction.
+     * Chunks are buffered so a retried transaction replays exactly the same items, and {@code progress} is recorded in
+     * each chunk's transaction, so it is committed together with the chunk. Returns the number of items written.
+     */
+    public long runInChunks(Iterator<JsonNode> items, MongoTemplate mongoTemplate,
+                            BiConsumer<Iterator<JsonNode>, MongoTemplate> writer, ChunkProgress progress) {
+        long written = 0;
+        while (items.hasNext()) {
+            List<JsonNode> chunk = new ArrayList<>();
+            long chunkBytes = 0;
+            while (items.hasNext() && chunk.size() < maxDocuments && chunkBytes < maxBytes) {
+                JsonNode item = items.next();
+                chunk.add(item);
+                chunkBytes += BsonConverter.estimateSize(item);
+            }
+            long committed = written + chunk.size();
+            runInTransaction(mongoTemplate, sessionTemplate -> {
+                writer.accept(chunk.iterator(), sessionTemplate);
+                progress.record(sessionTemplate, committed, chunk.size());
+            });
+            written = committed;
+        }
+        return written;
+    }
+
+    /**
+     * Runs the body in a transaction on a fresh session, committing its change log entries with it.
+     */
+    public void runInTransaction(MongoTemplate mongoTemplate, Consumer<MongoTemplate> body) {
+        TransactionOptions options = TransactionOptions.builder()
+                .readConcern(ReadConcern.SNAPSHOT)
+                .writeConcern(WriteConcern.MAJORITY)
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+            try (ClientSession session = migrationClientProfile.client().startSession()) {
+                MongoTemplate sessionTemplate = mongoTemplate.withSession(session);
+                changeLogWriter.bindTransaction(sessionTemplate);
+                try {
+                    session.startTransaction(options);
+                    body.accept(sessionTemplate);
+                    changeLogWriter.writeTransactionEntries(sessionTemplate);
+                    commitWithRetry(session);
+                    return;
+                } catch (RuntimeException e) {
+                    abortQuietly(session);
+                    if (attempt < maxAttempts && hasErrorLabel(e, MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                        System.err.println("Transient transaction error, retrying (attempt " + (attempt + 1) + "): " + e.getMessage());
+                        continue;
+                    }
+                    throw e;
+                } finally {
+                    changeLogWriter.unbindTransaction(sessionTemplate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records how far a chunked write got, inside the transaction of the chunk it describes.
+     */
+    @FunctionalInterface
+    public interface ChunkProgress {
+
+        ChunkProgress NONE = (sessionTemplate, itemsCommitted, chunkSize) -> { };
+
+        void record(MongoTemplate sessionTemplate, long itemsCommitted, int chunkSize);
+    }
+
+    private void commitWithRetry(ClientSession session) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.commitTransaction();
+                return;
+            } catch (MongoException e) {
+                if (attempt < maxAttempts && e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                    System.err.println("Unknown commit result, retrying commit (attempt " + (attempt + 1) + ")");
+                    continue;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void abortQuietly(ClientSession session) {
+        if (session.hasActiveTransaction()) {
+            try {
+                session.abortTransaction();
+            } catch (MongoException e) {
+                System.err.println("Error aborting transaction: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean exceedsLimits(JsonNode insertNode) {
+        return insertNode.size() > maxDocuments || BsonConverter.estimateSize(insertNode) > maxBytes;
+    }
+
+    // Template calls wrap driver errors in Spring's DataAccessException, so the label is looked up along the cause chain
+    private static boolean hasErrorLabel(Throwable error, String label) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && mongoException.hasErrorLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.ValidationReport;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pre-flight check of the mapping file and every change-unit file it references, run before anything is written.
+ * Mapping problems (missing ids or file names, duplicate ids within a database, missing files) are found first;
+ * the remaining files are then compiled by {@link ChangeUnitPlanner} on {@code mongock.validation.threads} threads,
+ * which checks their schema in the same scan that builds the plan. The plans go into the report so the run
+ * never parses a file twice.
+ * <p>
+ * Only pending units can fail validation. Files of applied units may have been pruned, or predate a newer rule;
+ * their problems are reported as warnings, and the run checks them again should such a unit run after all.
+ */
+@Service
+public class ChangeUnitValidator {
+
+    private final ChangeUnitPlanner changeUnitPlanner;
+
+    @Value("${mongock.validation.threads:4}")
+    private int threads;
+
+    @Autowired
+    public ChangeUnitValidator(ChangeUnitPlanner changeUnitPlanner) {
+        this.changeUnitPlanner = changeUnitPlanner;
+    }
+
+    /**
+     * Validates every unit of the mapping; {@code appliedChangeUnitIds} holds, per database, the units that are
+     * already applied there.
+     */
+    public ValidationReport validate(JsonNode rootNode, Map<String, Set<String>> appliedChangeUnitIds) throws InterruptedException {
+        ValidationReport report = new ValidationReport();
+        if (!rootNode.isObject()) {
+            report.getProblems().add("mapping file: must be an object of database names to change unit lists");
+            return report;
+        }
+
+        List<UnitCheck> checks = new ArrayList<>();
+        rootNode.fields().forEachRemaining(database -> checkMapping(database.getKey(), database.getValue(),
+                appliedChangeUnitIds.getOrDefault(database.getKey(), Set.of()), report, checks));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), Thread.ofPlatform().name("mongock-validate-", 0).factory());
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (UnitCheck check : checks) {
+                futures.add(executor.submit(() -> compile(check, report)));
+            }
+            // Collected in mapping order, so the report reads the same on every run
+            for (int i = 0; i < futures.size(); i++) {
+                UnitCheck check = checks.get(i);
+                try {
+                    futures.get(i).get().forEach(problem -> report(check, problem, report));
+                } catch (ExecutionException e) {
+                    report(check, String.valueOf(e.getCause()), report);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return report;
+    }
+
+    private void checkMapping(String databaseName, JsonNode changeUnits, Set<String> appliedIds, ValidationReport report,
+                              List<UnitCheck> checks) {
+        if (!changeUnits.isArray()) {
+            report.getProblems().add(databaseName + ": must be an array of change units");
+            return;
+        }
+        Set<String> changeUnitIds = new HashSet<>();
+        for (int i = 0; i < changeUnits.size(); i++) {
+            JsonNode entry = changeUnits.get(i);
+            String changeUnitId = entry.path("changeUnitId").asText("");
+            String fileName = entry.path("fileName").asText("");
+            String collectionName = entry.path("collectionName").asText(null);
+            if (changeUnitId.isBlank()) {
+                report.getProblems().add(databaseName + "[" + i + "]: missing 'changeUnitId'");
+                continue;
+            }
+            UnitCheck check = new UnitCheck(databaseName, changeUnitId, fileName, collectionName, appliedIds.contains(changeUnitId));
+            if (!changeUnitIds.add(changeUnitId)) {
+                report.getProblems().add(check.prefix() + "duplicate changeUnitId in " + databaseName);
+            } else if (fileName.isBlank()) {
+                report(check, "missing 'fileName'", report);
+            } else if (!new File(fileName).isFile()) {
+                report(check, "file not found", report);
+            } else {
+                checks.add(check);
+            }
+        }
+    }
+
+    private static void report(UnitCheck check, String problem, ValidationReport report) {
+        if (check.applied()) {
+            report.getWarnings().add(check.prefix() + problem + " (already applied, not run again)");
+        } else {
+            report.getProblems().add(check.prefix() + problem);
+        }
+    }
+
+    private List<String> compile(UnitCheck check, ValidationReport report) {
+        try {
+            ChangeUnitPlan plan = changeUnitPlanner.getPlan(check.fileName(), check.collectionName());
+            report.getPlans().put(check.databaseName() + "/" + check.changeUnitId(), plan);
+            return plan.getProblems();
+        } catch (IOException e) {
+            return List.of("unreadable: " + e.getMessage());
+        }
+    }
+
+    private record UnitCheck(String databaseName, String changeUnitId, String fileName, String collectionName, boolean applied) {
+        String prefix() {
+            return databaseName + " / " + changeUnitId + " (" + fileName + "): ";
+        }
+    }
+}
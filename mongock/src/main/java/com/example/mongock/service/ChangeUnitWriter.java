@@ -0,0 +1,24 @@
+package com.example.mongock.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes the data sections of a change unit from lazily parsed elements. {@link ChangeUnitService} is the blocking
+ * implementation; {@link ReactiveChangeUnitEngine} pipelines the same batches over the reactive driver.
+ * Both record the same change log entries and metrics.
+ */
+public interface ChangeUnitWriter {
+
+    void writeInsertSection(String changeUnitId, String collectionName, Iterator<JsonNode> documents, List<String> upsertKeys,
+                            MongoTemplate mongoTemplate);
+
+    void applyUpdateQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                            MongoTemplate mongoTemplate);
+
+    void applyDeleteQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                            MongoTemplate mongoTemplate);
+}
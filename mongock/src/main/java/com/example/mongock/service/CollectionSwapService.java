@@ -0,0 +1,400 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.util.IdRanges;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy-and-swap handling of RENAME and DROP for collections of at least {@code mongock.swap.min-documents}
+ * documents, enabled with {@code mongock.swap.enabled}.
+ * <p>
+ * A rename copies the source into a staging collection in parallel {@code _id} range partitions, builds the
+ * source's indexes on the finished copy and replays writes made to the source meanwhile from a change stream.
+ * It then renames the source aside, so no further writes reach it, brings the copy up to date with every change
+ * the stream reports before that rename, and renames the copy to the target. The source stays writable until it
+ * is renamed aside, and an existing target is never replaced. A drop renames the collection aside and drops it in
+ * the background, so the change unit does not wait for a large drop.
+ * <p>
+ * Every renamed-aside collection is recorded in {@code change_log_pending_drops} before the rename and forgotten once
+ * it is dropped or restored. {@link #resumePendingDrops} finishes what a crash, shutdown or failed drop left behind:
+ * an aside collection whose swap completed (or that was being dropped) is dropped, one whose swap never reached the
+ * final rename is renamed back to its source.
+ */
+@Service
+public class CollectionSwapService {
+
+    private static final String STAGING_SUFFIX = ".mongock_swap";
+    private static final String DROPPED_SUFFIX = ".mongock_dropped";
+    static final String PENDING_DROPS_COLLECTION = ChangeLogRepository.CHANGE_LOG_COLLECTION + "_pending_drops";
+
+    private final MigrationMetrics migrationMetrics;
+    private final MigrationThrottle migrationThrottle;
+    private final MigrationLockService migrationLockService;
+    private final ExecutorService backgroundDrops = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("mongock-swap-drop").daemon(true).factory());
+
+    @Value("${mongock.swap.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mongock.swap.min-documents:100000}")
+    private long minDocuments;
+
+    @Value("${mongock.swap.threads:4}")
+    private int threads;
+
+    @Value("${mongock.swap.partitions:16}")
+    private int partitions;
+
+    @Value("${mongock.insert.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    public CollectionSwapService(MigrationMetrics migrationMetrics, MigrationThrottle migrationThrottle,
+                                 MigrationLockService migrationLockService) {
+        this.migrationMetrics = migrationMetrics;
+        this.migrationThrottle = migrationThrottle;
+        this.migrationLockService = migrationLockService;
+    }
+
+    /**
+     * True when copy-and-swap is enabled and the collection is large enough to be worth it
+     * (a missing collection counts as empty).
+     */
+    public boolean appliesTo(MongoTemplate mongoTemplate, String collectionName) {
+        return enabled && mongoTemplate.getDb().getCollection(collectionName).estimatedDocumentCount() >= minDocuments;
+    }
+
+    /**
+     * Copies {@code source} into a staging collection, swaps it in as {@code target} and drops the source.
+     * Fails without touching anything when {@code target} already exists. Returns the number of documents copied.
+     */
+    public long copyAndSwap(String changeUnitId, String source, String target, MongoTemplate mongoTemplate) throws Exception {
+        MongoDatabase database = mongoTemplate.getDb();
+        if (!source.equals(target) && exists(database, target)) {
+            throw new IllegalStateException("Cannot rename " + source + " to " + target + ": the target collection already exists");
+        }
+        MongoCollection<Document> sourceCollection = database.getCollection(source);
+        String stagingName = target + STAGING_SUFFIX;
+        MongoCollection<Document> staging = database.getCollection(stagingName);
+        String asideName = source + DROPPED_SUFFIX + "_" + new ObjectId().toHexString();
+        boolean renamedAside = false;
+
+        // Leftovers of an interrupted run are never swapped in, so they can simply be replaced
+        staging.drop();
+        database.createCollection(stagingName);
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = openChangeStream(sourceCollection)) {
+            long copied = copyPartitions(changeUnitId, sourceCollection, staging, target, mongoTemplate);
+            copyIndexes(database, sourceCollection, stagingName);
+            if (changes != null) {
+                long replayed = replayChanges(changes, staging);
+                System.out.println("Replayed " + replayed + " changes made to " + source + " during the copy");
+            }
+
+            // Every write acknowledged before this rename precedes the rename event in the stream
+            recordPendingDrop(mongoTemplate, asideName, source, target);
+            sourceCollection.renameCollection(new MongoNamespace(database.getName(), asideName));
+            renamedAside = true;
+            if (changes != null) {
+                long synced = syncUntilRename(changes, database.getCollection(asideName), staging);
+                System.out.println("Synced " + synced + " documents changed in " + source + " before it was renamed aside");
+            }
+
+            staging.renameCollection(new MongoNamespace(database.getName(), target));
+            dropLater(mongoTemplate, asideName);
+            return copied;
+        } catch (Exception e) {
+            staging.drop();
+            if (renamedAside) {
+                restore(mongoTemplate, asideName, source);
+            } else {
+                forgetPendingDrop(mongoTemplate, asideName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Renames the collection aside and drops it on a background thread.
+     */
+    public void dropInBackground(String collectionName, MongoTemplate mongoTemplate) {
+        MongoDatabase database = mongoTemplate.getDb();
+        String droppedName = collectionName + DROPPED_SUFFIX + "_" + new ObjectId().toHexString();
+        recordPendingDrop(mongoTemplate, droppedName, collectionName, null);
+        database.getCollection(collectionName)
+                .renameCollection(new MongoNamespace(database.getName(), droppedName));
+        dropLater(mongoTemplate, droppedName);
+    }
+
+    /**
+     * Drops or restores the renamed-aside collections an earlier run left behind; call with the database's
+     * migration lock held, before its first change unit.
+     */
+    public void resumePendingDrops(MongoTemplate mongoTemplate) {
+        MongoDatabase database = mongoTemplate.getDb();
+        for (Document pending : mongoTemplate.findAll(Document.class, PENDING_DROPS_COLLECTION)) {
+            String asideName = pending.getString("_id");
+            String source = pending.getString("source");
+            String target = pending.getString("target");
+            // A swap that never renamed its copy to the target still needs its source back
+            if (target != null && !exists(database, target) && exists(database, asideName) && !exists(database, source)) {
+                System.out.println("Restoring " + source + " from " + asideName + ", left behind by an interrupted swap");
+                restore(mongoTemplate, asideName, source);
+                continue;
+            }
+            try {
+                database.getCollection(asideName).drop();
+                forgetPendingDrop(mongoTemplate, asideName);
+                System.out.println("Dropped renamed-aside collection left behind by an earlier run: " + asideName);
+            } catch (MongoException e) {
+                System.err.println("Error dropping renamed-aside collection " + asideName + ", retrying on the next run: " + e.getMessage());
+            }
+        }
+    }
+
+    private void dropLater(MongoTemplate mongoTemplate, String droppedName) {
+        backgroundDrops.execute(() -> {
+            try {
+                mongoTemplate.getDb().getCollection(droppedName).drop();
+                forgetPendingDrop(mongoTemplate, droppedName);
+                System.out.println("Dropped renamed-aside collection: " + droppedName);
+            } catch (Exception e) {
+                System.err.println("Error dropping renamed-aside collection " + droppedName + ", retrying on the next run: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void recordPendingDrop(MongoTemplate mongoTemplate, String asideName, String source, String target) {
+        mongoTemplate.save(new Document("_id", asideName).append("source", source).append("target", target)
+                .append("recordedAt", new Date()), PENDING_DROPS_COLLECTION);
+    }
+
+    private static void forgetPendingDrop(MongoTemplate mongoTemplate, String asideName) {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(asideName)), PENDING_DROPS_COLLECTION);
+    }
+
+    private static boolean exists(MongoDatabase database, String collectionName) {
+        return database.listCollectionNames().filter(Filters.eq("name", collectionName)).first() != null;
+    }
+
+    /**
+     * Puts a renamed-aside source back after a failed swap; on failure the pending record stays for the next run.
+     */
+    private static void restore(MongoTemplate mongoTemplate, String asideName, String source) {
+        MongoDatabase database = mongoTemplate.getDb();
+        try {
+            database.getCollection(asideName).renameCollection(new MongoNamespace(database.getName(), source));
+            forgetPendingDrop(mongoTemplate, asideName);
+        } catch (MongoException e) {
+            System.err.println("Could not rename " + asideName + " back to " + source + ", retrying on the next run: " + e.getMessage());
+        }
+    }
+
+    private long copyPartitions(String changeUnitId, MongoCollection<Document> source, MongoCollection<Document> staging,
+                                String target, MongoTemplate mongoTemplate) throws Exception {
+        List<Bson> ranges = IdRanges.partition(source, partitions);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                Thread.ofPlatform().name("mongock-swap-copy-", 0).factory());
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (Bson range : ranges) {
+                futures.add(executor.submit(() -> copyRange(changeUnitId, source, staging, range, target, mongoTemplate)));
+            }
+            // Every partition finishes before a failure is rethrown, so none is still writing when the staging collection is dropped
+            long copied = 0;
+            Exception failure = null;
+            for (Future<Long> future : futures) {
+                try {
+                    copied += future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception cause ? cause : e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "COPY", target, copied);
+            System.out.println("Copied " + copied + " documents from " + source.getNamespace().getCollectionName()
+                    + " in " + ranges.size() + " partitions");
+            return copied;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long copyRange(String changeUnitId, MongoCollection<Document> source, MongoCollection<Document> staging, Bson range,
+                           String target, MongoTemplate mongoTemplate) {
+        InsertManyOptions options = new InsertManyOptions().ordered(false);
+        List<Document> batch = new ArrayList<>(batchSize);
+        long copied = 0;
+        for (Document document : source.find(range).batchSize(batchSize)) {
+            batch.add(document);
+            if (batch.size() >= batchSize) {
+                insertThrottled(changeUnitId, staging, batch, options, mongoTemplate);
+                migrationMetrics.recordBatch(mongoTemplate, "COPY", target, batch.size());
+                copied += batch.size();
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertThrottled(changeUnitId, staging, batch, options, mongoTemplate);
+            migrationMetrics.recordBatch(mongoTemplate, "COPY", target, batch.size());
+            copied += batch.size();
+        }
+        return copied;
+    }
+
+    private void insertThrottled(String changeUnitId, MongoCollection<Document> staging, List<Document> batch,
+                                 InsertManyOptions options, MongoTemplate mongoTemplate) {
+        migrationThrottle.acquire(mongoTemplate, changeUnitId, batch.size());
+        migrationLockService.ensureHeld(mongoTemplate);
+        long start = System.nanoTime();
+        staging.insertMany(batch, options);
+        migrationThrottle.recordLatency(mongoTemplate, changeUnitId, System.nanoTime() - start);
+    }
+
+    private void copyIndexes(MongoDatabase database, MongoCollection<Document> source, String stagingName) {
+        List<Document> specs = new ArrayList<>();
+        for (Document index : source.listIndexes()) {
+            if (!"_id_".equals(index.getString("name"))) {
+                Document spec = new Document(index);
+                spec.remove("v");
+                spec.remove("ns");
+                specs.add(spec);
+            }
+        }
+        if (!specs.isEmpty()) {
+            database.runCommand(new Document("createIndexes", stagingName).append("indexes", specs));
+            System.out.println("Built " + specs.size() + " indexes on " + stagingName);
+        }
+    }
+
+    /**
+     * Change streams need a replica set; without one the copy still works but writes made to the source
+     * while it runs are not carried over.
+     */
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream(MongoCollection<Document> source) {
+        try {
+            return source.watch().fullDocument(FullDocument.UPDATE_LOOKUP).cursor();
+        } catch (MongoCommandException e) {
+            System.err.println("Change stream unavailable, writes during the copy will not be replayed: " + e.getErrorMessage());
+            return null;
+        }
+    }
+
+    private long replayChanges(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes, MongoCollection<Document> staging) {
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        long replayed = 0;
+        ChangeStreamDocument<Document> change;
+        while ((change = changes.tryNext()) != null) {
+            BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+            switch (change.getOperationType()) {
+                case INSERT, REPLACE, UPDATE -> writes.add(change.getFullDocument() != null
+                        ? new ReplaceOneModel<>(Filters.eq("_id", id), change.getFullDocument(), new ReplaceOptions().upsert(true))
+                        : new DeleteOneModel<>(Filters.eq("_id", id)));
+                case DELETE -> writes.add(new DeleteOneModel<>(Filters.eq("_id", id)));
+                default -> throw new IllegalStateException("Source collection changed during copy: " + change.getOperationTypeString());
+            }
+            replayed++;
+            if (writes.size() >= batchSize) {
+                staging.bulkWrite(writes, new BulkWriteOptions().ordered(true));
+                writes.clear();
+            }
+        }
+        if (!writes.isEmpty()) {
+            staging.bulkWrite(writes, new BulkWriteOptions().ordered(true));
+        }
+        return replayed;
+    }
+
+    /**
+     * Waits for the source's rename event and re-copies every document changed before it from the renamed-aside
+     * collection, deleting the ones it no longer holds. Update lookups no longer find the source once it is renamed,
+     * so the aside collection, which receives no more writes, is the source of truth here.
+     */
+    private long syncUntilRename(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes, MongoCollection<Document> aside,
+                                 MongoCollection<Document> staging) {
+        Set<BsonValue> ids = new LinkedHashSet<>();
+        long synced = 0;
+        for (ChangeStreamDocument<Document> change = changes.next(); change.getOperationType() != OperationType.RENAME;
+             change = changes.next()) {
+            switch (change.getOperationType()) {
+                case INSERT, REPLACE, UPDATE, DELETE -> ids.add(change.getDocumentKey().get("_id"));
+                default -> throw new IllegalStateException("Source collection changed during copy: " + change.getOperationTypeString());
+            }
+            if (ids.size() >= batchSize) {
+                synced += syncDocuments(ids, aside, staging);
+                ids.clear();
+            }
+        }
+        return synced + syncDocuments(ids, aside, staging);
+    }
+
+    private long syncDocuments(Set<BsonValue> ids, MongoCollection<Document> aside, MongoCollection<Document> staging) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<WriteModel<BsonDocument>> writes = new ArrayList<>();
+        Set<BsonValue> deleted = new LinkedHashSet<>(ids);
+        for (BsonDocument document : aside.find(Filters.in("_id", ids), BsonDocument.class)) {
+            BsonValue id = document.get("_id");
+            deleted.remove(id);
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", id), document, new ReplaceOptions().upsert(true)));
+        }
+        for (BsonValue id : deleted) {
+            writes.add(new DeleteOneModel<>(Filters.eq("_id", id)));
+        }
+        staging.withDocumentClass(BsonDocument.class).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        return ids.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        backgroundDrops.shutdown();
+        try {
+            backgroundDrops.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileFormat;
+import com.example.mongock.model.FileMetadata;
+import com.example.mongock.model.OperationType;
+import com.example.mongock.util.BsonConverter;
+import com.example.mongock.util.ChangeUnitFileFormats;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ExplainVerbosity;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates what pending change units would cost without writing anything. Inserts are measured
+ * (document count and exact BSON bytes); update/delete queries are run through {@code explain("executionStats")}
+ * to see whether they scan the collection or an index, how many documents they examine and how many they
+ * would affect; transforms, drops, renames and index builds report the size of the collections they touch.
+ */
+@Service
+public class DryRunPlanner {
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private final ChangeUnitPlanner changeUnitPlanner;
+    private final ObjectMapper objectMapper;
+
+    @Value("${mongock.dry-run.max-explains-per-unit:100}")
+    private int maxExplainsPerUnit;
+
+    @Autowired
+    public DryRunPlanner(ChangeUnitPlanner changeUnitPlanner, ObjectMapper objectMapper) {
+        this.changeUnitPlanner = changeUnitPlanner;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Builds the cost report of one database's pending change units.
+     */
+    public Map<String, Object> estimateDatabase(String databaseName, List<FileMetadata> pending, MongoTemplate mongoTemplate)
+            throws IOException {
+        List<Map<String, Object>> units = new ArrayList<>();
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (FileMetadata metadata : pending) {
+            ChangeUnitPlan plan = changeUnitPlanner.getPlan(metadata.getFileName(), metadata.getCollectionName());
+            Map<String, Object> unit = estimateUnit(metadata, plan, mongoTemplate, totals);
+            units.add(unit);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("database", databaseName);
+        report.put("pendingChangeUnits", pending.size());
+        report.put("totals", totals);
+        report.put("changeUnits", units);
+        return report;
+    }
+
+    /**
+     * Prints a one-line summary per database and writes the full report as JSON.
+     */
+    public void writeReport(List<Map<String, Object>> databases, String reportPath) {
+        System.out.println("\nDry run (nothing was written):");
+        for (Map<String, Object> database : databases) {
+            System.out.println("  " + database.get("database") + ": " + database.get("pendingChangeUnits")
+                    + " pending change units, " + database.get("totals"));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("databases", databases);
+        try {
+            File reportFile = new File(reportPath);
+            if (reportFile.getParentFile() != null) {
+                reportFile.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+            System.out.println("Dry-run report written to: " + reportFile.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error writing dry-run report: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> estimateUnit(FileMetadata metadata, ChangeUnitPlan plan, MongoTemplate mongoTemplate,
+                                             Map<String, Long> totals) throws IOException {
+        Map<String, Object> unit = new LinkedHashMap<>();
+        unit.put("changeUnitId", metadata.getChangeUnitId());
+        unit.put("fileName", metadata.getFileName());
+        unit.put("operations", plan.getOperations());
+        unit.put("collections", plan.getCollections());
+
+        if (plan.isCollectionData()) {
+            estimateCollectionData(metadata.getFileName(), plan, mongoTemplate, unit, totals);
+            // Copied and cached plans carry a JSON null here rather than no node, so the operations decide
+            if (plan.getOperations().contains(OperationType.TRANSFORM)) {
+                // The pipeline runs over the whole collection (or its filter); its size is the best cheap estimate
+                long count = mongoTemplate.getCollection(plan.getCollectionName()).estimatedDocumentCount();
+                unit.put("transform", Map.of("mode", plan.getTransform().path("mode").asText("merge"), "collectionDocuments", count));
+                totals.merge("transformDocuments", count, Long::sum);
+            }
+            if (plan.getTempIndexes() != null && plan.getTempIndexes().isArray()) {
+                // The explains below run against today's indexes; the unit builds these first
+                unit.put("tempIndexes", plan.getTempIndexes());
+            }
+        } else {
+            // Drops, renames and index builds cost roughly in proportion to the collections they touch
+            Map<String, Long> documents = new LinkedHashMap<>();
+            for (String collectionName : plan.getCollections()) {
+                long count = mongoTemplate.getCollection(collectionName).estimatedDocumentCount();
+                documents.put(collectionName, count);
+                if (plan.getOperations().contains(OperationType.INDEXES)) {
+                    totals.merge("indexBuildDocuments", count, Long::sum);
+                }
+            }
+            unit.put("collectionDocuments", documents);
+        }
+        return unit;
+    }
+
+    /**
+     * Streams the data file once: insert documents are measured, update/delete queries explained.
+     */
+    private void estimateCollectionData(String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate,
+                                        Map<String, Object> unit, Map<String, Long> totals) throws IOException {
+        if (plan.getFormat() == FileFormat.NDJSON) {
+            measureNdjson(filePath, unit, totals);
+            return;
+        } else if (plan.getFormat() == FileFormat.BSON) {
+            measureBson(filePath, unit, totals);
+            return;
+        }
+        String collectionName = plan.getCollectionName();
+        try (JsonParser parser = objectMapper.createParser(ChangeUnitFileFormats.open(filePath))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Change unit file must contain a JSON object: " + filePath);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("insert".equals(section) && valueToken == JsonToken.START_ARRAY) {
+                    long documents = 0;
+                    long bytes = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        bytes += bsonSize(parser.readValueAsTree());
+                        documents++;
+                    }
+                    recordInserts(documents, bytes, unit, totals);
+                } else if (("update".equals(section) || "delete".equals(section)) && valueToken == JsonToken.START_OBJECT) {
+                    unit.put(section, explainSection(parser, collectionName, mongoTemplate, totals));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void measureNdjson(String filePath, Map<String, Object> unit, Map<String, Long> totals) throws IOException {
+        long documents = 0;
+        long bytes = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ChangeUnitFileFormats.open(filePath), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank()) {
+                    bytes += bsonSize(objectMapper.readTree(line));
+                    documents++;
+                }
+            }
+        }
+        recordInserts(documents, bytes, unit, totals);
+    }
+
+    // BSON documents are already encoded: their size is their length prefix
+    private void measureBson(String filePath, Map<String, Object> unit, Map<String, Long> totals) throws IOException {
+        long documents = 0;
+        long bytes = 0;
+        try (InputStream in = ChangeUnitFileFormats.open(filePath)) {
+            for (byte[] document = ChangeUnitFileFormats.readBsonDocument(in); document != null;
+                 document = ChangeUnitFileFormats.readBsonDocument(in)) {
+                bytes += document.length;
+                documents++;
+            }
+        }
+        recordInserts(documents, bytes, unit, totals);
+    }
+
+    private static long bsonSize(JsonNode document) {
+        return new RawBsonDocument(BsonConverter.toDocument(document), DOCUMENT_CODEC).getByteBuffer().remaining();
+    }
+
+    private static void recordInserts(long documents, long bytes, Map<String, Object> unit, Map<String, Long> totals) {
+        unit.put("insert", Map.of("documents", documents, "bytes", bytes));
+        totals.merge("insertDocuments", documents, Long::sum);
+        totals.merge("insertBytes", bytes, Long::sum);
+    }
+
+    private Map<String, Object> explainSection(JsonParser parser, String collectionName, MongoTemplate mongoTemplate,
+                                               Map<String, Long> totals) throws IOException {
+        Map<String, Object> section = new LinkedHashMap<>();
+        List<Map<String, Object>> explained = new ArrayList<>();
+        long queries = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_ARRAY || !"queries".equals(fieldName)) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode queryNode = parser.readValueAsTree();
+                queries++;
+                if (explained.size() < maxExplainsPerUnit && queryNode.path("query").isObject()) {
+                    explained.add(explain(queryNode.get("query"), collectionName, mongoTemplate, totals));
+                }
+            }
+        }
+        section.put("queries", queries);
+        section.put("explained", explained.size());
+        section.put("collectionScans", explained.stream().filter(query -> "COLLSCAN".equals(query.get("plan"))).count());
+        section.put("docsExamined", explained.stream().mapToLong(query -> (Long) query.get("docsExamined")).sum());
+        section.put("estimatedDocsAffected", explained.stream().mapToLong(query -> (Long) query.get("nReturned")).sum());
+        // Queries that would be no-ops today, usually a typo in a field name or value
+        List<Object> matchingNothing = explained.stream()
+                .filter(query -> (Long) query.get("nReturned") == 0)
+                .map(query -> query.get("query"))
+                .toList();
+        section.put("queriesMatchingNothing", matchingNothing);
+        if (!matchingNothing.isEmpty()) {
+            System.err.println(matchingNothing.size() + " queries on collection " + collectionName + " match no documents: " + matchingNothing);
+        }
+        section.put("details", explained);
+        return section;
+    }
+
+    /**
+     * Explains the query's filter as a find, which uses the same plan selection as the update/delete would.
+     */
+    private Map<String, Object> explain(JsonNode queryNode, String collectionName, MongoTemplate mongoTemplate, Map<String, Long> totals) {
+        Document explain = mongoTemplate.getCollection(collectionName)
+                .find(BsonConverter.toDocument(queryNode))
+                .explain(Document.class, ExplainVerbosity.EXECUTION_STATS);
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        Document stats = explain.get("executionStats", Document.class);
+
+        Set<String> stages = new LinkedHashSet<>();
+        collectStages(queryPlanner != null ? queryPlanner.get("winningPlan") : null, stages);
+        String plan = stages.contains("COLLSCAN") ? "COLLSCAN"
+                : stages.contains("IXSCAN") ? "IXSCAN"
+                : stages.isEmpty() ? "UNKNOWN" : stages.iterator().next();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("query", queryNode.toString());
+        result.put("plan", plan);
+        result.put("docsExamined", number(stats, "totalDocsExamined"));
+        result.put("keysExamined", number(stats, "totalKeysExamined"));
+        result.put("nReturned", number(stats, "nReturned"));
+        result.put("executionTimeMillis", number(stats, "executionTimeMillis"));
+
+        totals.merge("docsExamined", (Long) result.get("docsExamined"), Long::sum);
+        if ("COLLSCAN".equals(plan)) {
+            totals.merge("collectionScans", 1L, Long::sum);
+        }
+        return result;
+    }
+
+    // Classic and slot-based plans nest stages differently, so every "stage" below the winning plan is collected
+    private static void collectStages(Object node, Set<String> stages) {
+        if (node instanceof Document document) {
+            Object stage = document.get("stage");
+            if (stage instanceof String name) {
+                stages.add(name);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document != null ? document.get(key) : null;
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
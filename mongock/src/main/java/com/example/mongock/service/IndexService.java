@@ -0,0 +1,234 @@
+package com.example.mongock.service;
+
+import com.example.mongock.util.BsonConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and drops indexes declared in change-unit files. Index specs use the server's own format
+ * ({@code key}, {@code name}, {@code unique}, {@code partialFilterExpression}, {@code expireAfterSeconds}, ...)
+ * plus a {@code collection} field; all indexes declared for one collection are built with a single
+ * {@code createIndexes} command, so the server scans the collection once for all of them.
+ */
+@Service
+public class IndexService {
+
+    // Options that change what an index enforces or keeps: an index with the same keys but other values is no substitute
+    private static final List<String> COMPARED_OPTIONS = List.of("unique", "sparse", "partialFilterExpression", "expireAfterSeconds");
+
+    private final ChangeLogService changeLogService;
+    private final MigrationMetrics migrationMetrics;
+
+    @Autowired
+    public IndexService(ChangeLogService changeLogService, MigrationMetrics migrationMetrics) {
+        this.changeLogService = changeLogService;
+        this.migrationMetrics = migrationMetrics;
+    }
+
+    /**
+     * Applies an {@code indexes} change unit: {@code {"create": [spec...], "drop": [{"collection", "name"}...]}}.
+     */
+    public void applyIndexes(String changeUnitId, JsonNode indexesNode, MongoTemplate mongoTemplate) {
+        for (Map.Entry<String, List<Document>> entry : groupByCollection(indexesNode.get("create")).entrySet()) {
+            createIndexes(changeUnitId, entry.getKey(), entry.getValue(), mongoTemplate);
+        }
+        for (Map.Entry<String, List<Document>> entry : groupByCollection(indexesNode.get("drop")).entrySet()) {
+            List<String> names = entry.getValue().stream().map(IndexService::indexName).toList();
+            dropIndexes(changeUnitId, entry.getKey(), names, mongoTemplate);
+        }
+    }
+
+    /**
+     * Indexes a data change unit declares with {@code tempIndexes}, built before its update/delete queries or transform run
+     * and dropped once the unit is done. Each is named with the {@link TemporaryIndexes#NAME_PREFIX} prefix so that a
+     * later run recognizes one a crashed run left behind. Indexes that already exist under another name are used but left in place.
+     */
+    public TemporaryIndexes temporaryIndexes(String changeUnitId, String collectionName, JsonNode tempIndexesNode,
+                                             MongoTemplate mongoTemplate) {
+        List<Document> specs = new ArrayList<>();
+        if (tempIndexesNode != null && tempIndexesNode.isArray()) {
+            for (JsonNode specNode : tempIndexesNode) {
+                Document spec = toSpec(specNode);
+                spec.put("name", TemporaryIndexes.NAME_PREFIX + indexName(spec));
+                specs.add(spec);
+            }
+        }
+        return new TemporaryIndexes(this, changeUnitId, collectionName, specs, mongoTemplate);
+    }
+
+    /**
+     * Makes sure a unique index covers exactly the upsert key fields, building one when none does: without it,
+     * concurrent or repeated upserts on the same key can insert the document twice. Must run outside any transaction.
+     */
+    public void ensureUniqueIndex(String changeUnitId, String collectionName, List<String> keyFields, MongoTemplate mongoTemplate) {
+        if (keyFields.equals(List.of("_id"))) {
+            return;
+        }
+        Set<String> fields = Set.copyOf(keyFields);
+        for (Document index : mongoTemplate.getCollection(collectionName).listIndexes()) {
+            if (index.get("key", Document.class).keySet().equals(fields)) {
+                if (Boolean.TRUE.equals(index.getBoolean("unique")) && !index.containsKey("partialFilterExpression")) {
+                    return;
+                }
+                throw new IllegalStateException("Index " + index.getString("name") + " on the upsert keys " + keyFields + " of "
+                        + collectionName + " is not unique over the whole collection; drop it or make it unique");
+            }
+        }
+        Document key = new Document();
+        keyFields.forEach(field -> key.put(field, 1));
+        createIndexes(changeUnitId, collectionName, List.of(new Document("key", key).append("name", defaultName(key)).append("unique", true)),
+                mongoTemplate);
+    }
+
+    /**
+     * Builds the given specs with one {@code createIndexes} command, skipping any whose key pattern is already indexed
+     * with the same options; an existing index on the same keys with a different {@link #COMPARED_OPTIONS option}
+     * fails the build. Returns the names of the indexes actually created.
+     */
+    List<String> createIndexes(String changeUnitId, String collectionName, List<Document> specs, MongoTemplate mongoTemplate) {
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            Map<String, Document> existingByKey = new HashMap<>();
+            for (Document index : mongoTemplate.getCollection(collectionName).listIndexes()) {
+                existingByKey.put(index.get("key", Document.class).toJson(), index);
+            }
+            List<Document> missing = new ArrayList<>();
+            for (Document spec : specs) {
+                Document existing = existingByKey.get(spec.get("key", Document.class).toJson());
+                if (existing == null) {
+                    missing.add(spec);
+                } else {
+                    checkOptions(collectionName, spec, existing);
+                }
+            }
+            if (!missing.isEmpty()) {
+                mongoTemplate.getDb().runCommand(new Document("createIndexes", collectionName).append("indexes", missing));
+            }
+            List<String> created = missing.stream().map(IndexService::indexName).toList();
+            System.out.println("Created indexes on " + collectionName + ": " + created
+                    + (missing.size() < specs.size() ? " (" + (specs.size() - missing.size()) + " already present)" : ""));
+            changeLogService.logChangeLog(changeUnitId, "CREATE_INDEX", List.of(collectionName), true, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "CREATE_INDEX", collectionName, true);
+            return created;
+        } catch (Exception e) {
+            changeLogService.logChangeLog(changeUnitId, "CREATE_INDEX", List.of(collectionName), false, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "CREATE_INDEX", collectionName, false);
+            throw ChangeUnitException.failed(changeUnitId, "CREATE_INDEX", e);
+        }
+    }
+
+    /**
+     * Names of the indexes of a collection, in the order the server lists them.
+     */
+    List<String> indexNames(String collectionName, MongoTemplate mongoTemplate) {
+        List<String> names = new ArrayList<>();
+        for (Document index : mongoTemplate.getCollection(collectionName).listIndexes()) {
+            names.add(index.getString("name"));
+        }
+        return names;
+    }
+
+    /**
+     * Drops the named indexes of a collection with a single {@code dropIndexes} command.
+     */
+    void dropIndexes(String changeUnitId, String collectionName, List<String> names, MongoTemplate mongoTemplate) {
+        if (names.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            mongoTemplate.getDb().runCommand(new Document("dropIndexes", collectionName).append("index", names));
+            System.out.println("Dropped indexes on " + collectionName + ": " + names);
+            changeLogService.logChangeLog(changeUnitId, "DROP_INDEX", List.of(collectionName), true, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "DROP_INDEX", collectionName, true);
+        } catch (Exception e) {
+            changeLogService.logChangeLog(changeUnitId, "DROP_INDEX", List.of(collectionName), false, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "DROP_INDEX", collectionName, false);
+            throw ChangeUnitException.failed(changeUnitId, "DROP_INDEX", e);
+        }
+    }
+
+    private static void checkOptions(String collectionName, Document spec, Document existing) {
+        for (String option : COMPARED_OPTIONS) {
+            if (!Objects.equals(comparable(spec.get(option)), comparable(existing.get(option)))) {
+                throw new IllegalStateException("Index " + existing.getString("name") + " on " + collectionName + " already covers "
+                        + existing.get("key", Document.class).toJson() + " with " + option + " " + existing.get(option)
+                        + ", but " + indexName(spec) + " declares " + spec.get(option) + "; drop the existing index first");
+            }
+        }
+    }
+
+    // An absent option and false are the same; numbers and filters compare by value regardless of their BSON types
+    private static Object comparable(Object value) {
+        if (value == null || Boolean.FALSE.equals(value)) {
+            return null;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof Document document) {
+            return document.toJson(JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build());
+        }
+        return value;
+    }
+
+    /**
+     * Groups spec entries by their {@code collection} field, keeping declaration order.
+     */
+    private Map<String, List<Document>> groupByCollection(JsonNode specsNode) {
+        Map<String, List<Document>> byCollection = new LinkedHashMap<>();
+        if (specsNode == null || !specsNode.isArray()) {
+            return byCollection;
+        }
+        for (JsonNode specNode : specsNode) {
+            JsonNode collectionNode = specNode.get("collection");
+            if (collectionNode == null || !collectionNode.isTextual()) {
+                throw new IllegalArgumentException("Index entry has no 'collection': " + specNode);
+            }
+            byCollection.computeIfAbsent(collectionNode.asText(), name -> new ArrayList<>()).add(toSpec(specNode));
+        }
+        return byCollection;
+    }
+
+    /**
+     * Converts an index entry to a {@code createIndexes} spec, dropping the {@code collection} field and
+     * naming the index the way the server would when no name is given.
+     */
+    private static Document toSpec(JsonNode specNode) {
+        Document spec = BsonConverter.toDocument(specNode);
+        spec.remove("collection");
+        Document key = spec.get("key", Document.class);
+        if (key == null && !spec.containsKey("name")) {
+            throw new IllegalArgumentException("Index entry needs a 'key' or a 'name': " + specNode);
+        }
+        if (!spec.containsKey("name")) {
+            spec.put("name", defaultName(key));
+        }
+        return spec;
+    }
+
+    private static String defaultName(Document key) {
+        return key.entrySet().stream()
+                .map(entry -> entry.getKey() + "_" + entry.getValue())
+                .collect(Collectors.joining("_"));
+    }
+
+    private static String indexName(Document spec) {
+        return spec.getString("name");
+    }
+}
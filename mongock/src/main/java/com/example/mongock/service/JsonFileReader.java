@@ -1,14 +1,20 @@
 package com.example.mongock.service;
 
 import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.ChangeUnitSummary;
 import com.example.mongock.model.CollectionData;
 import com.example.mongock.model.CreateData;
+import com.example.mongock.model.DatabaseResult;
+import com.example.mongock.model.FileFormat;
 import com.example.mongock.model.FileMetadata;
+import com.example.mongock.model.OperationType;
+import com.example.mongock.model.ValidationReport;
+import com.example.mongock.util.ChangeUnitFileFormats;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.ClientSession;
-import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -16,8 +22,16 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JsonFileReader {
@@ -25,100 +39,476 @@ public class JsonFileReader {
     @Autowired
     private ChangeUnitService changeUnitService;
 
+    @Autowired
+    private ChangeUnitStreamReader changeUnitStreamReader;
+
+    @Autowired
+    private ChangeLogWriter changeLogWriter;
+
+    @Autowired
+    private ChangeUnitTransactionService transactionService;
+
+    @Autowired
+    private MigrationMetrics migrationMetrics;
+
+    @Autowired
+    private ChangeUnitPlanner changeUnitPlanner;
+
+    @Autowired
+    private ChangeUnitScheduler changeUnitScheduler;
+
+    @Autowired
+    private IndexService indexService;
+
+    @Autowired
+    private DryRunPlanner dryRunPlanner;
+
+    @Autowired
+    private BulkFileLoader bulkFileLoader;
+
+    @Autowired
+    private MigrationLockService migrationLockService;
+
+    @Autowired
+    private ReactiveChangeUnitEngine reactiveEngine;
+
+    @Autowired
+    private TransformService transformService;
+
+    @Autowired
+    private ChangeUnitValidator changeUnitValidator;
+
+    @Autowired
+    private ChangeUnitSummaryService summaryService;
+
+    @Autowired
+    private CollectionSwapService collectionSwapService;
+
     private final ChangeLogRepository changeLogRepository;
-    private final MongoClient mongoClient;
+    private final MigrationClientProfile migrationClientProfile;
     private final ObjectMapper objectMapper;
-    private final Map<String, MongoTemplate> mongoTemplates = new HashMap<>();
+    private final Map<String, MongoTemplate> mongoTemplates = new ConcurrentHashMap<>();
+    private volatile ValidationReport validationReport;
 
     @Value("${mongock.changeunit.file.list}")
     private String changeUnitMappingsFilePath;
 
+    @Value("${mongock.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${mongock.checkpoint.enabled:false}")
+    private boolean checkpointsEnabled;
+
+    @Value("${mongock.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${mongock.parallel.max-threads:4}")
+    private int parallelMaxThreads;
+
+    @Value("${mongock.parallel.virtual-threads:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${mongock.report.path:}")
+    private String reportPath;
+
+    @Value("${mongock.validation.enabled:true}")
+    private boolean validationEnabled;
+
+    @Value("${mongock.dry-run.enabled:false}")
+    private boolean dryRunEnabled;
+
+    @Value("${mongock.dry-run.report-path:mongock-dry-run-report.json}")
+    private String dryRunReportPath;
+
     @Autowired
-    public JsonFileReader(ChangeLogRepository changeLogRepository, MongoClient mongoClient, ObjectMapper objectMapper) {
+    public JsonFileReader(ChangeLogRepository changeLogRepository, MigrationClientProfile migrationClientProfile, ObjectMapper objectMapper) {
         this.changeLogRepository = changeLogRepository;
-        this.mongoClient = mongoClient;
+        this.migrationClientProfile = migrationClientProfile;
         this.objectMapper = objectMapper;
     }
 
     public void processChangeUnits() {
-        try (ClientSession session = mongoClient.startSession()) {
-            session.startTransaction();
-
+        try {
             JsonNode rootNode = objectMapper.readTree(new File(changeUnitMappingsFilePath));
+            List<String> databaseNames = new ArrayList<>();
+            rootNode.fieldNames().forEachRemaining(databaseNames::add);
 
-            for (Iterator<String> it = rootNode.fieldNames(); it.hasNext(); ) {
-                String databaseName = it.next();
-                System.out.println("\nProcessing database: " + databaseName);
+            if (validationEnabled) {
+                validate(rootNode, databaseNames);
+            }
 
-                JsonNode databaseChangeUnits = rootNode.get(databaseName);
-                processDatabase(databaseName, databaseChangeUnits);
+            if (dryRunEnabled) {
+                dryRun(rootNode, databaseNames);
+                return;
+            }
+
+            List<DatabaseResult> results = parallelEnabled
+                    ? processDatabasesInParallel(rootNode, databaseNames)
+                    : processDatabasesSequentially(rootNode, databaseNames);
+            printSummary(results);
+            changeUnitPlanner.saveCache();
+            if (!reportPath.isBlank()) {
+                migrationMetrics.writeRunReport(results, reportPath, objectMapper);
+            }
+
+            List<String> failedDatabases = results.stream()
+                    .filter(result -> !result.isSuccess())
+                    .map(DatabaseResult::getDatabaseName)
+                    .toList();
+            if (!failedDatabases.isEmpty()) {
+                throw new IllegalStateException("Change units failed for databases: " + failedDatabases);
             }
 
-            session.commitTransaction();
             System.out.println("All databases processed successfully.");
 
         } catch (Exception e) {
-            System.err.println("Error encountered, rolling back transaction.");
+            System.err.println("Error encountered while processing change units.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks the mapping file and every change-unit file before anything is written, and fails the run with all
+     * problems of pending units at once; those of applied units are printed as warnings. The plans compiled on the
+     * way are kept for {@link #processDatabase}.
+     */
+    private void validate(JsonNode rootNode, List<String> databaseNames) throws InterruptedException {
+        long start = System.nanoTime();
+        Map<String, Set<String>> appliedChangeUnitIds = new HashMap<>();
+        for (String databaseName : databaseNames) {
+            appliedChangeUnitIds.put(databaseName, appliedChangeUnitIds(databaseName));
+        }
+        ValidationReport report = changeUnitValidator.validate(rootNode, appliedChangeUnitIds);
+        report.getWarnings().forEach(warning -> System.err.println("WARNING: " + warning));
+        if (!report.isValid()) {
+            System.err.println("Validation found " + report.getProblems().size() + " problems, nothing was applied:");
+            report.getProblems().forEach(problem -> System.err.println("  " + problem));
+            throw new IllegalStateException("Change unit validation failed with " + report.getProblems().size() + " problems");
+        }
+        System.out.println("Validated " + report.getPlans().size() + " change units in " + elapsedMillis(start) + " ms");
+        validationReport = report;
+    }
+
+    /**
+     * Units already applied to a database, read without writing. Unreadable summaries leave every unit of the
+     * database to be validated as pending; the run itself reads them again under the migration lock.
+     */
+    private Set<String> appliedChangeUnitIds(String databaseName) {
+        try {
+            Set<String> applied = new HashSet<>();
+            summaryService.loadSummaries(getMongoTemplateForDatabase(databaseName), false).values().stream()
+                    .filter(ChangeUnitSummary::isApplied)
+                    .forEach(summary -> applied.add(summary.getChangeUnitId()));
+            return applied;
+        } catch (RuntimeException e) {
+            System.err.println("Could not read the applied change units of database " + databaseName
+                    + ", validating all of them as pending: " + e.getMessage());
+            return Set.of();
+        }
+    }
+
+    /**
+     * Walks the same pending change units and plans as a real run, but only reads: the applied check skips
+     * index creation and the cost of each unit is estimated instead of applied.
+     */
+    private void dryRun(JsonNode rootNode, List<String> databaseNames) throws IOException {
+        List<Map<String, Object>> databases = new ArrayList<>();
+        for (String databaseName : databaseNames) {
+            MongoTemplate mongoTemplate = getMongoTemplateForDatabase(databaseName);
+            Map<String, ChangeUnitSummary> summaries = summaryService.loadSummaries(mongoTemplate, false);
+            List<String> mismatches = new ArrayList<>();
+            List<FileMetadata> pending = new ArrayList<>();
+            for (FileMetadata metadata : readMetadata(rootNode.get(databaseName))) {
+                if (isPruned(metadata, summaries.get(metadata.getChangeUnitId()))) {
+                    continue;
+                }
+                if (!summaryService.isApplied(metadata, planFor(databaseName, metadata), summaries.get(metadata.getChangeUnitId()), mismatches)) {
+                    pending.add(metadata);
+                }
+            }
+            // A real run would stop this database on these
+            mismatches.forEach(mismatch -> System.err.println(mismatch + " - the run would fail"));
+            databases.add(dryRunPlanner.estimateDatabase(databaseName, pending, mongoTemplate));
+        }
+        dryRunPlanner.writeReport(databases, dryRunReportPath);
+        changeUnitPlanner.saveCache();
+    }
+
+    /**
+     * Runs databases one after another in mapping-file order, stopping at the first failure.
+     */
+    private List<DatabaseResult> processDatabasesSequentially(JsonNode rootNode, List<String> databaseNames) {
+        List<DatabaseResult> results = new ArrayList<>();
+        for (String databaseName : databaseNames) {
+            DatabaseResult result = runDatabase(databaseName, rootNode.get(databaseName));
+            results.add(result);
+            if (!result.isSuccess()) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs each database's change units on a bounded executor. Within a database, units are ordered by
+     * {@link ChangeUnitScheduler}; a failure in one database does not stop the others.
+     */
+    private List<DatabaseResult> processDatabasesInParallel(JsonNode rootNode, List<String> databaseNames) throws InterruptedException {
+        ThreadFactory threadFactory = virtualThreadsEnabled
+                ? Thread.ofVirtual().name("mongock-db-", 0).factory()
+                : Thread.ofPlatform().name("mongock-db-", 0).factory();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelMaxThreads), threadFactory);
+        try {
+            List<Future<DatabaseResult>> futures = new ArrayList<>();
+            for (String databaseName : databaseNames) {
+                JsonNode databaseChangeUnits = rootNode.get(databaseName);
+                futures.add(executor.submit(() -> runDatabase(databaseName, databaseChangeUnits)));
+            }
+
+            List<DatabaseResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new DatabaseResult(databaseNames.get(i), false, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private DatabaseResult runDatabase(String databaseName, JsonNode databaseChangeUnits) {
+        System.out.println("\nProcessing database: " + databaseName);
+        long start = System.nanoTime();
+        try {
+            processDatabase(databaseName, databaseChangeUnits);
+            return new DatabaseResult(databaseName, true, elapsedMillis(start), null);
+        } catch (Exception e) {
+            System.err.println("Error processing database: " + databaseName);
             e.printStackTrace();
+            return new DatabaseResult(databaseName, false, elapsedMillis(start), e.toString());
+        }
+    }
+
+    private void printSummary(List<DatabaseResult> results) {
+        System.out.println("\nMigration summary:");
+        for (DatabaseResult result : results) {
+            System.out.println("  " + result.getDatabaseName() + ": " + (result.isSuccess() ? "OK" : "FAILED")
+                    + " in " + result.getDurationMillis() + " ms"
+                    + (result.getError() != null ? " - " + result.getError() : ""));
         }
     }
 
-    private void processDatabase(String databaseName, JsonNode changeUnits) throws IOException {
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void processDatabase(String databaseName, JsonNode changeUnits) throws Exception {
         MongoTemplate mongoTemplate = getMongoTemplateForDatabase(databaseName);
 
-        List<FileMetadata> metadataList = objectMapper.readValue(changeUnits.toString(), new TypeReference<List<FileMetadata>>() {});
-        metadataList.sort(Comparator.comparing(FileMetadata::getChangeUnitId));
+        // Taken before the applied check, so an instance that waited for another one sees everything it applied
+        MigrationLease lease = migrationLockService.acquire(mongoTemplate);
+        if (lease == null) {
+            return;
+        }
+        try (lease) {
+            processDatabase(databaseName, changeUnits, mongoTemplate, lease);
+        }
+    }
+
+    private void processDatabase(String databaseName, JsonNode changeUnits, MongoTemplate mongoTemplate, MigrationLease lease)
+            throws Exception {
+        // Renamed-aside collections of an earlier run that died before dropping or restoring them
+        collectionSwapService.resumePendingDrops(mongoTemplate);
+        List<FileMetadata> metadataList = readMetadata(changeUnits);
+        Map<String, ChangeUnitSummary> summaries = loadSummaries(mongoTemplate);
 
+        List<FileMetadata> pending = new ArrayList<>();
+        Map<String, ChangeUnitPlan> plans = new HashMap<>();
+        List<String> mismatches = new ArrayList<>();
         for (FileMetadata metadata : metadataList) {
-            if (isChangeUnitApplied(metadata.getChangeUnitId(), mongoTemplate)) {
+            ChangeUnitSummary summary = summaries.get(metadata.getChangeUnitId());
+            if (isPruned(metadata, summary)) {
+                System.out.println("ChangeUnit (" + metadata.getChangeUnitId() + ") already applied; its file is no longer present.");
+                continue;
+            }
+            Timer.Sample planSample = migrationMetrics.start();
+            ChangeUnitPlan plan = planFor(databaseName, metadata);
+            if (summaryService.isApplied(metadata, plan, summary, mismatches)) {
                 System.out.println("ChangeUnit (" + metadata.getChangeUnitId() + ") already applied.");
+                summaryService.adoptChecksum(mongoTemplate, summary, plan);
                 continue;
             }
+            // Reachable with validation disabled, or for a unit that was applied at validation time and runs again
+            // (checksum-mismatch=rerun); the schema problems still stop the database before its first write
+            if (!plan.getProblems().isEmpty()) {
+                throw new IllegalStateException("ChangeUnit (" + metadata.getChangeUnitId() + ") is invalid: " + plan.getProblems());
+            }
+            plans.put(metadata.getChangeUnitId(), plan);
+            migrationMetrics.recordPlan(planSample, databaseName, metadata.getChangeUnitId());
+            pending.add(metadata);
+        }
+        if (!mismatches.isEmpty()) {
+            mismatches.forEach(System.err::println);
+            throw new IllegalStateException(mismatches.size() + " applied change units have changed files; restore them, give the change a new"
+                    + " changeUnitId, or set mongock.changelog.checksum-mismatch to warn or rerun");
+        }
 
-            String filePath = metadata.getFileName();
-            JsonNode jsonTree = objectMapper.readTree(new File(filePath));
-
-            // Handle different operations (drop, rename, create, etc.)
-            if (jsonTree.has("drop")) {
-                for (JsonNode dropNode : jsonTree.get("drop")) {
-                    changeUnitService.dropCollection(metadata.getChangeUnitId(), dropNode.asText(), mongoTemplate);
+        changeUnitScheduler.run(pending, plans, metadata -> {
+            lease.ensureHeld();
+            ChangeUnitPlan plan = plans.get(metadata.getChangeUnitId());
+            LocalDateTime startedAt = LocalDateTime.now();
+            long startNanos = System.nanoTime();
+            Exception failure = null;
+            try {
+                applyChangeUnit(metadata, plan, mongoTemplate);
+            } catch (Exception e) {
+                failure = e;
+            }
+            // Entries are buffered; they are flushed after every unit so its summary can be built from them.
+            // Entries that could not be stored fail the unit: one of them may be the step that failed
+            try {
+                changeLogWriter.flush(mongoTemplate);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = ChangeUnitException.failed(metadata.getChangeUnitId(), "CHANGE_LOG", e);
+                } else {
+                    failure.addSuppressed(e);
                 }
-            } else if (jsonTree.has("rename")) {
-                for (JsonNode renameNode : jsonTree.get("rename")) {
-                    changeUnitService.renameCollection(metadata.getChangeUnitId(),
-                            renameNode.get("oldCollection").asText(),
-                            renameNode.get("newCollection").asText(),
-                            mongoTemplate);
+            }
+            // Without its summary the unit would count as pending and run again in full: that fails it too
+            try {
+                summaryService.record(metadata, plan, startedAt, startNanos, failure, mongoTemplate);
+            } catch (RuntimeException e) {
+                System.err.println("Error saving summary of ChangeUnit (" + metadata.getChangeUnitId()
+                        + "); it will run again on the next run: " + e.getMessage());
+                if (failure == null) {
+                    failure = ChangeUnitException.failed(metadata.getChangeUnitId(), "SUMMARY", e);
+                } else {
+                    failure.addSuppressed(e);
                 }
-            } else if (jsonTree.has("create")) {
-                CreateData createData = objectMapper.readValue(new File(filePath), CreateData.class);
-                changeUnitService.createCollection(metadata.getChangeUnitId(), createData, mongoTemplate);
-            } else {
-                CollectionData collectionData = objectMapper.readValue(new File(filePath), CollectionData.class);
-                changeUnitService.runOperationsOnCollection(metadata.getChangeUnitId(), collectionData, mongoTemplate);
             }
-        }
+            if (failure != null) {
+                throw failure;
+            }
+        });
     }
 
-    private boolean isChangeUnitApplied(String changeUnitId, MongoTemplate mongoTemplate) {
-        LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
+    /**
+     * An applied unit whose file has been removed from disk: there is nothing to compare or run.
+     */
+    private static boolean isPruned(FileMetadata metadata, ChangeUnitSummary summary) {
+        return summary != null && summary.isApplied()
+                && (metadata.getFileName() == null || !new File(metadata.getFileName()).isFile());
+    }
 
-        boolean collectionExists = mongoTemplate.getDb().listCollectionNames()
-                .into(new ArrayList<>())
-                .contains("changelog");
+    /**
+     * The plan validated for this unit at startup, otherwise the planner's (cached) one.
+     */
+    private ChangeUnitPlan planFor(String databaseName, FileMetadata metadata) throws IOException {
+        ChangeUnitPlan plan = validationReport != null ? validationReport.getPlan(databaseName, metadata.getChangeUnitId()) : null;
+        return plan != null ? plan : changeUnitPlanner.getPlan(metadata.getFileName(), metadata.getCollectionName());
+    }
 
-        if (!collectionExists) {
-            System.out.println("ChangeLog collection does not exist in database: " + mongoTemplate.getDb().getName());
-            return false;
+    /**
+     * A database's change units from the mapping file, in change-unit-id order.
+     */
+    private List<FileMetadata> readMetadata(JsonNode changeUnits) {
+        List<FileMetadata> metadataList = objectMapper.convertValue(changeUnits, new TypeReference<List<FileMetadata>>() {});
+        metadataList.sort(Comparator.comparing(FileMetadata::getChangeUnitId));
+        return metadataList;
+    }
+
+    private void applyChangeUnit(FileMetadata metadata, ChangeUnitPlan plan, MongoTemplate mongoTemplate) throws IOException {
+        String filePath = metadata.getFileName();
+        String changeUnitId = metadata.getChangeUnitId();
+
+        // The plan says what the unit does; schema units run from it without reading the file again
+        List<OperationType> operations = plan.getOperations();
+        if (operations.contains(OperationType.DROP)) {
+            for (String collectionName : plan.getCollections()) {
+                changeUnitService.dropCollection(changeUnitId, collectionName, mongoTemplate);
+            }
+            return;
+        } else if (operations.contains(OperationType.RENAME)) {
+            for (Map.Entry<String, String> rename : plan.getRenames().entrySet()) {
+                changeUnitService.renameCollection(changeUnitId, rename.getKey(), rename.getValue(), mongoTemplate);
+            }
+            return;
+        } else if (operations.contains(OperationType.CREATE)) {
+            CreateData createData = new CreateData();
+            createData.setCreate(plan.getCollections());
+            changeUnitService.createCollection(changeUnitId, createData, mongoTemplate);
+            return;
+        } else if (operations.contains(OperationType.INDEXES)) {
+            indexService.applyIndexes(changeUnitId, plan.getIndexes(), mongoTemplate);
+            return;
+        } else if (plan.getFormat() != FileFormat.JSON) {
+            bulkFileLoader.load(changeUnitId, filePath, plan, mongoTemplate);
+            return;
+        }
+
+        try (TemporaryIndexes temporaryIndexes = indexService.temporaryIndexes(changeUnitId, plan.getCollectionName(),
+                plan.getTempIndexes(), mongoTemplate)) {
+            // Upserts on key fields need a unique index to stay idempotent; built here, outside any transaction
+            List<String> upsertKeys = changeUnitService.resolveUpsertKeys(plan.getUpsert(), plan.getUpsertKeys());
+            if (operations.contains(OperationType.INSERT) && upsertKeys != null && !upsertKeys.isEmpty()) {
+                indexService.ensureUniqueIndex(changeUnitId, plan.getCollectionName(), upsertKeys, mongoTemplate);
+            }
+            // A unit that only transforms has nothing to read from its file
+            if (operations.stream().anyMatch(operation -> operation != OperationType.TRANSFORM)) {
+                applyDataSections(changeUnitId, filePath, plan, mongoTemplate, temporaryIndexes);
+            }
+            // Runs outside any transaction: $merge and $out are not allowed in one
+            if (operations.contains(OperationType.TRANSFORM)) {
+                temporaryIndexes.ensureBuilt();
+                transformService.applyTransform(changeUnitId, plan.getCollectionName(), plan.getTransform(), mongoTemplate);
+            }
+        }
+    }
+
+    private void applyDataSections(String changeUnitId, String filePath, ChangeUnitPlan plan, MongoTemplate mongoTemplate,
+                                   TemporaryIndexes temporaryIndexes) throws IOException {
+        // Data files are streamed in bounded chunks instead of being loaded as one tree; checkpoints and the reactive engine need the streaming reader
+        if (streamingEnabled || checkpointsEnabled || reactiveEngine.isEnabled()) {
+            changeUnitStreamReader.processCollectionData(changeUnitId, filePath, plan, mongoTemplate, temporaryIndexes);
+            return;
+        }
+
+        Timer.Sample parseSample = migrationMetrics.start();
+        CollectionData collectionData;
+        try (InputStream in = ChangeUnitFileFormats.open(filePath)) {
+            collectionData = objectMapper.readValue(in, CollectionData.class);
         }
+        migrationMetrics.recordParse(parseSample, mongoTemplate.getDb().getName(), changeUnitId);
+        if (transactionService.isEnabled()) {
+            transactionService.runCollectionData(changeUnitId, collectionData, mongoTemplate, temporaryIndexes);
+        } else {
+            changeUnitService.runOperationsOnCollection(changeUnitId, collectionData, mongoTemplate, temporaryIndexes);
+        }
+    }
+
+    /**
+     * Loads the change unit summaries of a database once, so each skip check is an in-memory lookup
+     * against the database being migrated rather than a query per unit.
+     */
+    private Map<String, ChangeUnitSummary> loadSummaries(MongoTemplate mongoTemplate) {
+        Timer.Sample sample = migrationMetrics.start();
 
-        return changeLogRepository.existsByChangeUnitIdAndAppliedAtAfter(changeUnitId, startOfDay);
+        changeLogRepository.ensureIndexes(mongoTemplate);
+        Map<String, ChangeUnitSummary> summaries = summaryService.loadSummaries(mongoTemplate, true);
+        migrationMetrics.recordAppliedCheck(sample, mongoTemplate.getDb().getName());
+        long applied = summaries.values().stream().filter(ChangeUnitSummary::isApplied).count();
+        System.out.println("Found " + applied + " applied change units in database: " + mongoTemplate.getDb().getName());
+        return summaries;
     }
 
     private MongoTemplate getMongoTemplateForDatabase(String databaseName) {
         return mongoTemplates.computeIfAbsent(databaseName, dbName -> {
             System.out.println("Creating MongoTemplate for database: " + dbName);
-            return new MongoTemplate(mongoClient, dbName);
+            return migrationClientProfile.template(dbName);
         });
     }
 }
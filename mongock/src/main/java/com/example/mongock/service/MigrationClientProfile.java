@@ -0,0 +1,241 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client settings used for migration runs, separate from the application's defaults.
+ * <p>
+ * With {@code mongock.client.dedicated} the runner gets its own {@link MongoClient}, built from the same
+ * {@code spring.data.mongodb.*} connection settings, with a pool sized to the configured parallelism and wire
+ * compression. Independently of that, each database template writes bulk data with the relaxed
+ * {@code mongock.client.bulk-write-concern}, while the change log, checkpoint and lock collections are written with
+ * {@code mongock.client.barrier-write-concern}. The bulk concern is empty (the client default) unless configured.
+ * On a replica set the change log is flushed after every unit, so its majority write acknowledges the unit's relaxed
+ * writes as well (replication applies the oplog in order): the runner drops back to the strict profile at the end of
+ * each bulk phase without an extra round trip. That only holds within one oplog: on a sharded cluster the change log
+ * lives on the database's primary shard, and its majority write says nothing about relaxed writes to other shards,
+ * which a failover there can still roll back. Leave the bulk concern empty or majority against sharded clusters.
+ * Per-database overrides are read from {@code mongock.client.database.<name>.write-concern} and {@code .read-concern}.
+ * <p>
+ * The reactive engine gets its own client from {@link #reactiveClient()}, created on first use with the same
+ * migration settings (pool and compression), so deployments on the blocking engine never open a reactive pool.
+ */
+@Service
+public class MigrationClientProfile {
+
+    // Bookkeeping collections share this prefix: change_log, change_log_checkpoint, change_log_lock
+    private static final String BOOKKEEPING_PREFIX = ChangeLogRepository.CHANGE_LOG_COLLECTION;
+
+    private final MongoClient sharedClient;
+    private final MongoClientSettings sharedSettings;
+    private final ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers;
+    private final Environment environment;
+    private MongoClient dedicatedClient;
+    private com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+
+    @Value("${mongock.client.dedicated:false}")
+    private boolean dedicated;
+
+    @Value("${mongock.client.max-pool-size:0}")
+    private int maxPoolSize;
+
+    @Value("${mongock.client.min-pool-size:0}")
+    private int minPoolSize;
+
+    @Value("${mongock.client.compressors:}")
+    private List<String> compressors;
+
+    @Value("${mongock.client.bulk-write-concern:}")
+    private String bulkWriteConcern;
+
+    @Value("${mongock.client.bulk-journal:}")
+    private String bulkJournal;
+
+    @Value("${mongock.client.barrier-write-concern:majority}")
+    private String barrierWriteConcern;
+
+    @Value("${mongock.client.read-concern:}")
+    private String readConcern;
+
+    @Value("${mongock.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${mongock.parallel.max-threads:4}")
+    private int parallelMaxThreads;
+
+    @Value("${mongock.parallel.max-units-per-database:1}")
+    private int maxUnitsPerDatabase;
+
+    @Value("${mongock.ndjson.threads:4}")
+    private int ndjsonThreads;
+
+    @Value("${mongock.swap.threads:4}")
+    private int swapThreads;
+
+    @Value("${mongock.transform.threads:4}")
+    private int transformThreads;
+
+    @Autowired
+    public MigrationClientProfile(MongoClient sharedClient, MongoClientSettings sharedSettings,
+                                  ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers, Environment environment) {
+        this.sharedClient = sharedClient;
+        this.sharedSettings = sharedSettings;
+        this.customizers = customizers;
+        this.environment = environment;
+    }
+
+    /**
+     * The client migrations run on; sessions for transactions must come from the same client as the templates.
+     */
+    public synchronized MongoClient client() {
+        if (!dedicated) {
+            return sharedClient;
+        }
+        if (dedicatedClient == null) {
+            dedicatedClient = MongoClients.create(migrationSettings("dedicated migration MongoClient"));
+        }
+        return dedicatedClient;
+    }
+
+    /**
+     * The reactive-streams client of the reactive engine, created on the first call from the migration settings.
+     */
+    public synchronized com.mongodb.reactivestreams.client.MongoClient reactiveClient() {
+        if (reactiveClient == null) {
+            reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create(migrationSettings("reactive migration MongoClient"));
+        }
+        return reactiveClient;
+    }
+
+    /**
+     * A template for one database with the bulk/barrier write concerns and read concern of the profile.
+     */
+    public MongoTemplate template(String databaseName) {
+        WriteConcern bulk = bulkWriteConcern(databaseName);
+        WriteConcern barrier = writeConcern(barrierWriteConcern, "");
+        ReadConcern read = readConcern(databaseName);
+
+        SimpleMongoClientDatabaseFactory databaseFactory = new SimpleMongoClientDatabaseFactory(client(), databaseName) {
+            @Override
+            protected MongoDatabase doGetMongoDatabase(String dbName) {
+                MongoDatabase database = super.doGetMongoDatabase(dbName);
+                database = bulk != null ? database.withWriteConcern(bulk) : database;
+                return read != null ? database.withReadConcern(read) : database;
+            }
+        };
+        MongoTemplate mongoTemplate = new MongoTemplate(databaseFactory);
+        if (barrier != null) {
+            mongoTemplate.setWriteConcernResolver(action -> action.getCollectionName() != null
+                    && action.getCollectionName().startsWith(BOOKKEEPING_PREFIX) ? barrier : action.getDefaultWriteConcern());
+        }
+        System.out.println("Migration profile for database " + databaseName + ": bulk writes " + describe(bulk)
+                + ", change log " + describe(barrier) + ", reads " + (read != null ? read.asDocument().toJson() : "client default"));
+        return mongoTemplate;
+    }
+
+    /**
+     * The relaxed write concern of the database's bulk writes, or null for the client default.
+     */
+    public WriteConcern bulkWriteConcern(String databaseName) {
+        return writeConcern(databaseProperty(databaseName, "write-concern", bulkWriteConcern), bulkJournal);
+    }
+
+    /**
+     * The read concern of the database's migration reads, or null for the client default.
+     */
+    public ReadConcern readConcern(String databaseName) {
+        return parseReadConcern(databaseProperty(databaseName, "read-concern", readConcern));
+    }
+
+    /**
+     * Shared settings plus the Spring Boot connection customizers, then the migration pool and compression on top.
+     */
+    private MongoClientSettings migrationSettings(String description) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder(sharedSettings);
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+
+        int poolSize = maxPoolSize > 0 ? maxPoolSize : derivedPoolSize();
+        builder.applyToConnectionPoolSettings(pool -> pool.maxSize(poolSize).minSize(Math.min(minPoolSize, poolSize)));
+
+        List<MongoCompressor> compressorList = new ArrayList<>();
+        for (String name : compressors) {
+            switch (name.trim().toLowerCase()) {
+                case "zstd" -> compressorList.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> compressorList.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> compressorList.add(MongoCompressor.createZlibCompressor());
+                case "" -> { }
+                default -> System.err.println("Ignoring unknown compressor: " + name);
+            }
+        }
+        if (!compressorList.isEmpty()) {
+            builder.compressorList(compressorList);
+        }
+        System.out.println("Created " + description + ": pool " + poolSize + ", compressors " + compressors);
+        return builder.build();
+    }
+
+    /**
+     * Enough connections for every database thread running every allowed unit with its widest fan-out
+     * (NDJSON chunks, copy or transform partitions), plus a few for the change log writer and lock renewals.
+     */
+    private int derivedPoolSize() {
+        int databases = parallelEnabled ? Math.max(1, parallelMaxThreads) : 1;
+        int workersPerUnit = Math.max(1, Math.max(ndjsonThreads, Math.max(swapThreads, transformThreads)));
+        return databases * Math.max(1, maxUnitsPerDatabase) * workersPerUnit + 4;
+    }
+
+    private String databaseProperty(String databaseName, String key, String defaultValue) {
+        return environment.getProperty("mongock.client.database." + databaseName + "." + key, defaultValue);
+    }
+
+    /**
+     * "majority", a node count such as "1", or empty for the client default; the journal flag is optional.
+     */
+    private static WriteConcern writeConcern(String w, String journal) {
+        if (w == null || w.isBlank()) {
+            return null;
+        }
+        WriteConcern writeConcern = w.chars().allMatch(Character::isDigit)
+                ? new WriteConcern(Integer.parseInt(w))
+                : new WriteConcern(w);
+        return journal == null || journal.isBlank() ? writeConcern : writeConcern.withJournal(Boolean.parseBoolean(journal));
+    }
+
+    private static ReadConcern parseReadConcern(String level) {
+        return level == null || level.isBlank() ? null : new ReadConcern(ReadConcernLevel.fromString(level));
+    }
+
+    private static String describe(WriteConcern writeConcern) {
+        return writeConcern != null ? writeConcern.asDocument().toJson() : "client default";
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (dedicatedClient != null) {
+            dedicatedClient.close();
+        }
+        if (reactiveClient != null) {
+            reactiveClient.close();
+        }
+    }
+}
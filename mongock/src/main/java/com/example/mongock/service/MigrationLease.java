@@ -0,0 +1,95 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.example.mongock.model.MigrationLock;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A held migration lock. The lease is renewed in the background until {@link #close()} releases it;
+ * {@link #ensureHeld()} is the fencing check made before each change unit and each write batch, and fails once
+ * the lock has been lost (a renewal found another fencing token, or the lease ran out while this instance was
+ * stalled). Within the last confirmed lease the check is local; past it, the lock document is read.
+ */
+public class MigrationLease implements AutoCloseable {
+
+    private final MigrationLockRepository lockRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MigrationLock lock;
+    private ScheduledFuture<?> renewal;
+    private Runnable onClose;
+    private volatile long heldUntilNanos;
+    private volatile boolean lost;
+
+    /**
+     * Locking disabled: every check passes and closing is a no-op.
+     */
+    public static MigrationLease none() {
+        return new MigrationLease(null, null, null);
+    }
+
+    MigrationLease(MigrationLockRepository lockRepository, MongoTemplate mongoTemplate, MigrationLock lock) {
+        this.lockRepository = lockRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.lock = lock;
+    }
+
+    void startRenewal(ScheduledFuture<?> renewal) {
+        this.renewal = renewal;
+    }
+
+    void onClose(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
+    /**
+     * Records that the lock document was confirmed (acquired or renewed) with a lease starting no earlier than
+     * {@code confirmedAtNanos}.
+     */
+    void confirmed(long confirmedAtNanos, long leaseNanos) {
+        heldUntilNanos = confirmedAtNanos + leaseNanos;
+    }
+
+    MigrationLock getLock() {
+        return lock;
+    }
+
+    MongoTemplate getMongoTemplate() {
+        return mongoTemplate;
+    }
+
+    void markLost() {
+        lost = true;
+    }
+
+    public void ensureHeld() {
+        if (lock == null) {
+            return;
+        }
+        if (!lost && System.nanoTime() - heldUntilNanos > 0 && !lockRepository.isHeld(mongoTemplate, lock)) {
+            lost = true;
+        }
+        if (lost) {
+            throw new IllegalStateException("Migration lock of database " + mongoTemplate.getDb().getName()
+                    + " lost (fencing token " + lock.getFencingToken() + "); stopping before the next write");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (lock == null) {
+            return;
+        }
+        if (renewal != null) {
+            renewal.cancel(false);
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+        if (!lost) {
+            lockRepository.release(mongoTemplate, lock);
+            System.out.println("Released migration lock of database: " + mongoTemplate.getDb().getName());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.example.mongock.model.MigrationLock;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure only one instance runs a database's change units when several start at once (e.g. a rolling deploy).
+ * The first instance takes the database's lock document and renews its lease in the background; the others
+ * either poll the lock until it is released and then find every unit already applied, or skip the database
+ * outright ({@code mongock.lock.follower-mode=skip}). Held leases are registered by database, so the write paths
+ * can fence every batch with {@link #ensureHeld(MongoTemplate)}.
+ */
+@Service
+public class MigrationLockService {
+
+    private final MigrationLockRepository lockRepository;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    private final ScheduledExecutorService renewals = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("mongock-lock-renewal").daemon().factory());
+    private final Map<String, MigrationLease> leases = new ConcurrentHashMap<>();
+
+    @Value("${mongock.lock.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mongock.lock.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${mongock.lock.renew-interval-ms:20000}")
+    private long renewIntervalMillis;
+
+    @Value("${mongock.lock.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    @Value("${mongock.lock.wait-timeout-ms:900000}")
+    private long waitTimeoutMillis;
+
+    @Value("${mongock.lock.follower-mode:wait}")
+    private String followerMode;
+
+    @Autowired
+    public MigrationLockService(MigrationLockRepository lockRepository) {
+        this.lockRepository = lockRepository;
+    }
+
+    /**
+     * Acquires the database's lock, waiting for the current holder if needed. Returns null when another
+     * instance holds it and followers skip; throws when the wait times out.
+     */
+    public MigrationLease acquire(MongoTemplate mongoTemplate) throws InterruptedException {
+        if (!enabled) {
+            return MigrationLease.none();
+        }
+        String databaseName = mongoTemplate.getDb().getName();
+        Duration lease = Duration.ofMillis(leaseMillis);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+        while (true) {
+            long requestedAt = System.nanoTime();
+            MigrationLock lock = lockRepository.tryAcquire(mongoTemplate, owner, lease);
+            if (lock != null) {
+                System.out.println("Acquired migration lock of database " + databaseName + " as " + owner
+                        + " (fencing token " + lock.getFencingToken() + ")");
+                MigrationLease migrationLease = new MigrationLease(lockRepository, mongoTemplate, lock);
+                migrationLease.confirmed(requestedAt, lease.toNanos());
+                leases.put(databaseName, migrationLease);
+                migrationLease.onClose(() -> leases.remove(databaseName, migrationLease));
+                return startRenewal(migrationLease);
+            }
+            MigrationLock holder = lockRepository.find(mongoTemplate);
+            if ("skip".equalsIgnoreCase(followerMode)) {
+                System.out.println("Database " + databaseName + " is being migrated by " + describe(holder) + "; skipping it.");
+                return null;
+            }
+            System.out.println("Waiting for the migration lock of database " + databaseName + ", held by " + describe(holder));
+            // Followers only read the lock document until it is released or its lease runs out
+            while (holder != null && holder.getExpiresAt().isAfter(Instant.now())) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Timed out after " + waitTimeoutMillis + " ms waiting for the migration lock of database "
+                            + databaseName + ", held by " + describe(holder));
+                }
+                Thread.sleep(pollIntervalMillis);
+                holder = lockRepository.find(mongoTemplate);
+            }
+        }
+    }
+
+    /**
+     * Fencing check for a single write batch: fails when this instance held the database's lock and has lost it.
+     * Passes when locking is disabled or no lease of this instance is registered for the database.
+     */
+    public void ensureHeld(MongoTemplate mongoTemplate) {
+        MigrationLease migrationLease = leases.get(mongoTemplate.getDb().getName());
+        if (migrationLease != null) {
+            migrationLease.ensureHeld();
+        }
+    }
+
+    private MigrationLease startRenewal(MigrationLease migrationLease) {
+        Duration lease = Duration.ofMillis(leaseMillis);
+        migrationLease.startRenewal(renewals.scheduleWithFixedDelay(() -> {
+            MigrationLock lock = migrationLease.getLock();
+            long requestedAt = System.nanoTime();
+            boolean renewed;
+            try {
+                renewed = lockRepository.renew(migrationLease.getMongoTemplate(), lock, lease);
+            } catch (RuntimeException e) {
+                // Retried on the next tick; the lease only runs out if renewals keep failing
+                System.err.println("Error renewing migration lock: " + e.getMessage());
+                return;
+            }
+            if (!renewed) {
+                System.err.println("Migration lock lost: " + lock + " is no longer held by this instance");
+                migrationLease.markLost();
+                throw new IllegalStateException("Migration lock lost");  // Cancels further renewals of this lease
+            }
+            migrationLease.confirmed(requestedAt, lease.toNanos());
+        }, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS));
+        return migrationLease;
+    }
+
+    private static String describe(MigrationLock lock) {
+        return lock != null ? lock.getOwner() + " until " + lock.getExpiresAt() : "another instance";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renewals.shutdownNow();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.DatabaseResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation for every change-unit stage. Meters are named {@code mongock.*} and tagged by
+ * database, collection, change unit and operation, so they show up on the Actuator metrics endpoint and in
+ * any configured registry; {@link #writeRunReport} dumps the same numbers as JSON at the end of a run.
+ */
+@Component
+public class MigrationMetrics {
+
+    private static final String PREFIX = "mongock.";
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public MigrationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Time spent reading and parsing a change-unit data file into a tree before any write.
+     */
+    public void recordParse(Timer.Sample sample, String databaseName, String changeUnitId) {
+        sample.stop(meterRegistry.timer(PREFIX + "file.parse", "database", databaseName, "changeUnit", changeUnitId));
+    }
+
+    /**
+     * Time spent looking up or compiling a change unit's plan.
+     */
+    public void recordPlan(Timer.Sample sample, String databaseName, String changeUnitId) {
+        sample.stop(meterRegistry.timer(PREFIX + "file.plan", "database", databaseName, "changeUnit", changeUnitId));
+    }
+
+    /**
+     * Latency of one insert/update/delete/create/drop/rename step.
+     */
+    public void recordOperation(Timer.Sample sample, MongoTemplate mongoTemplate, String changeUnitId, String operation,
+                                String collectionName, boolean success) {
+        sample.stop(Timer.builder(PREFIX + "operation")
+                .tags(operationTags(mongoTemplate, changeUnitId, operation, collectionName))
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry));
+    }
+
+    /**
+     * Documents written (inserted, matched for update, deleted); divided by the operation time this gives docs/sec.
+     */
+    public void recordDocuments(MongoTemplate mongoTemplate, String changeUnitId, String operation, String collectionName, long count) {
+        Counter.builder(PREFIX + "documents.written")
+                .tags(operationTags(mongoTemplate, changeUnitId, operation, collectionName))
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    public void recordBatch(MongoTemplate mongoTemplate, String operation, String collectionName, int batchSize) {
+        DistributionSummary.builder(PREFIX + "batch.size")
+                .tags("database", mongoTemplate.getDb().getName(), "collection", collectionName, "operation", operation)
+                .register(meterRegistry)
+                .record(batchSize);
+    }
+
+    /**
+     * Time a change unit's batch was held back by the throttle before it was written.
+     */
+    public void recordThrottle(MongoTemplate mongoTemplate, String changeUnitId, long waitedNanos) {
+        meterRegistry.timer(PREFIX + "throttle.wait", "database", mongoTemplate.getDb().getName(), "changeUnit", changeUnitId)
+                .record(waitedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAppliedCheck(Timer.Sample sample, String databaseName) {
+        sample.stop(meterRegistry.timer(PREFIX + "applied.check", "database", databaseName));
+    }
+
+    public void recordChangeLogWrite(Timer.Sample sample, MongoTemplate mongoTemplate, int entries) {
+        String databaseName = mongoTemplate.getDb().getName();
+        sample.stop(meterRegistry.timer(PREFIX + "changelog.write", "database", databaseName));
+        meterRegistry.summary(PREFIX + "changelog.batch.size", "database", databaseName).record(entries);
+    }
+
+    /**
+     * Writes a JSON report with the database outcomes and a snapshot of every {@code mongock.*} meter,
+     * including documents/sec per operation.
+     */
+    public void writeRunReport(List<DatabaseResult> results, String reportPath, ObjectMapper objectMapper) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("databases", results);
+
+        List<Map<String, Object>> meters = new ArrayList<>();
+        for (Meter meter : meterRegistry.getMeters()) {
+            if (meter.getId().getName().startsWith(PREFIX)) {
+                meters.add(describe(meter));
+            }
+        }
+        report.put("meters", meters);
+        report.put("throughput", throughput());
+
+        try {
+            File reportFile = new File(reportPath);
+            if (reportFile.getParentFile() != null) {
+                reportFile.getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+            System.out.println("Run report written to: " + reportFile.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error writing run report: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> describe(Meter meter) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("name", meter.getId().getName());
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (Tag tag : meter.getId().getTags()) {
+            tags.put(tag.getKey(), tag.getValue());
+        }
+        description.put("tags", tags);
+        if (meter instanceof Timer timer) {
+            description.put("count", timer.count());
+            description.put("totalMillis", timer.totalTime(TimeUnit.MILLISECONDS));
+            description.put("meanMillis", timer.mean(TimeUnit.MILLISECONDS));
+            description.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+        } else if (meter instanceof DistributionSummary summary) {
+            description.put("count", summary.count());
+            description.put("total", summary.totalAmount());
+            description.put("mean", summary.mean());
+            description.put("max", summary.max());
+        } else if (meter instanceof Counter counter) {
+            description.put("count", counter.count());
+        }
+        return description;
+    }
+
+    /**
+     * Documents per second for each database/collection/change unit/operation, from the written-documents
+     * counters and the matching operation timers.
+     */
+    private List<Map<String, Object>> throughput() {
+        List<Map<String, Object>> rates = new ArrayList<>();
+        for (Counter counter : meterRegistry.find(PREFIX + "documents.written").counters()) {
+            List<Tag> tags = counter.getId().getTags();
+            double seconds = meterRegistry.find(PREFIX + "operation").tags(tags).timers().stream()
+                    .mapToDouble(timer -> timer.totalTime(TimeUnit.SECONDS))
+                    .sum();
+            Map<String, Object> rate = new LinkedHashMap<>();
+            tags.forEach(tag -> rate.put(tag.getKey(), tag.getValue()));
+            rate.put("documents", (long) counter.count());
+            rate.put("documentsPerSecond", seconds > 0 ? counter.count() / seconds : 0);
+            rates.add(rate);
+        }
+        return rates;
+    }
+
+    private static List<Tag> operationTags(MongoTemplate mongoTemplate, String changeUnitId, String operation, String collectionName) {
+        return List.of(
+                Tag.of("database", mongoTemplate.getDb().getName()),
+                Tag.of("collection", collectionName),
+                Tag.of("changeUnit", changeUnitId),
+                Tag.of("operation", operation.toLowerCase()));
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.mongock.service;
+
+import com.mongodb.MongoException;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rate limiting of migration writes, enabled with {@code mongock.throttle.enabled}, so large data units can run
+ * against a live cluster without hurting the application's latency.
+ * <p>
+ * Every write batch of a change unit asks for a permit first. Each unit gets its own schedule, paced to
+ * {@code mongock.throttle.docs-per-second} and {@code mongock.throttle.ops-per-second} (0 for no limit), and scaled
+ * by an adaptive factor: a batch slower than {@code mongock.throttle.max-write-latency-ms} halves it, and every fast
+ * batch raises it again by a small step (AIMD). Below full speed the unit also idles between batches in proportion
+ * to the last batch's latency, so the factor slows writes down even without a configured rate.
+ * Replication lag is read from {@code replSetGetStatus} at most every {@code mongock.throttle.lag-check-interval-ms};
+ * while it exceeds {@code mongock.throttle.max-replication-lag-seconds} no permits are handed out, and neither are
+ * they while the throttle is paused (see {@link MigrationThrottleEndpoint}).
+ */
+@Service
+public class MigrationThrottle {
+
+    private static final double MIN_FACTOR = 1.0 / 64;
+    private static final double RECOVERY_STEP = 0.05;
+    private static final long HOLD_POLL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Servers that can never report lag to this user: NoReplicationEnabled (standalone) and Unauthorized
+    private static final Set<Integer> LAG_UNSUPPORTED_CODES = Set.of(76, 13);
+
+    private final MigrationClientProfile migrationClientProfile;
+    private final MigrationMetrics migrationMetrics;
+    private final Map<String, UnitSchedule> schedules = new ConcurrentHashMap<>();
+    private volatile boolean paused;
+
+    private long lastLagCheckNanos;
+    private volatile double replicationLagSeconds;
+    private volatile boolean lagSupported = true;
+    private boolean lagging;
+
+    @Value("${mongock.throttle.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mongock.throttle.docs-per-second:0}")
+    private double docsPerSecond;
+
+    @Value("${mongock.throttle.ops-per-second:0}")
+    private double opsPerSecond;
+
+    @Value("${mongock.throttle.max-write-latency-ms:200}")
+    private long maxWriteLatencyMillis;
+
+    @Value("${mongock.throttle.max-replication-lag-seconds:10}")
+    private double maxReplicationLagSeconds;
+
+    @Value("${mongock.throttle.lag-check-interval-ms:5000}")
+    private long lagCheckIntervalMillis;
+
+    @Autowired
+    public MigrationThrottle(MigrationClientProfile migrationClientProfile, MigrationMetrics migrationMetrics) {
+        this.migrationClientProfile = migrationClientProfile;
+        this.migrationMetrics = migrationMetrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Blocks until the unit may write a batch of {@code documents} documents (0 for a single server-side operation).
+     */
+    public void acquire(MongoTemplate mongoTemplate, String changeUnitId, int documents) {
+        if (enabled) {
+            long waited = 0;
+            for (long hold = holdNanos(); hold > 0; hold = holdNanos()) {
+                LockSupport.parkNanos(hold);
+                waited += hold;
+            }
+            long wait = schedule(mongoTemplate, changeUnitId).reserve(documents);
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                waited += wait;
+            }
+            migrationMetrics.recordThrottle(mongoTemplate, changeUnitId, waited);
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #acquire} for the reactive engine: completes once the batch may be written.
+     */
+    public Mono<Void> permit(MongoTemplate mongoTemplate, String changeUnitId, int documents) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            long hold = holdNanos();
+            if (hold > 0) {
+                return Mono.delay(Duration.ofNanos(hold)).then(permit(mongoTemplate, changeUnitId, documents));
+            }
+            long wait = schedule(mongoTemplate, changeUnitId).reserve(documents);
+            migrationMetrics.recordThrottle(mongoTemplate, changeUnitId, wait);
+            return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).then() : Mono.empty();
+        });
+    }
+
+    /**
+     * Feeds the acknowledged latency of one batch into the unit's adaptive factor.
+     */
+    public void recordLatency(MongoTemplate mongoTemplate, String changeUnitId, long latencyNanos) {
+        if (enabled) {
+            schedule(mongoTemplate, changeUnitId).adapt(latencyNanos);
+        }
+    }
+
+    public void pause() {
+        paused = true;
+        System.out.println("Migration writes paused");
+    }
+
+    public void resume() {
+        paused = false;
+        System.out.println("Migration writes resumed");
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Current pause state, replication lag and the adaptive factor of every unit that has written so far.
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("paused", paused);
+        status.put("replicationLagSeconds", lagSupported ? replicationLagSeconds : null);
+        Map<String, Double> factors = new LinkedHashMap<>();
+        schedules.forEach((key, schedule) -> factors.put(key, schedule.factor()));
+        status.put("changeUnitFactors", factors);
+        return status;
+    }
+
+    private UnitSchedule schedule(MongoTemplate mongoTemplate, String changeUnitId) {
+        return schedules.computeIfAbsent(mongoTemplate.getDb().getName() + "/" + changeUnitId, key -> new UnitSchedule());
+    }
+
+    /**
+     * How long to hold every unit before asking again: while paused or while the secondaries lag too far behind.
+     */
+    private long holdNanos() {
+        if (paused) {
+            return HOLD_POLL_NANOS;
+        }
+        return replicationLagging() ? TimeUnit.MILLISECONDS.toNanos(Math.max(100, lagCheckIntervalMillis)) : 0;
+    }
+
+    private synchronized boolean replicationLagging() {
+        long now = System.nanoTime();
+        if (!lagSupported || now - lastLagCheckNanos < TimeUnit.MILLISECONDS.toNanos(lagCheckIntervalMillis)) {
+            return lagging;
+        }
+        lastLagCheckNanos = now;
+        try {
+            replicationLagSeconds = readReplicationLag();
+        } catch (MongoException e) {
+            if (LAG_UNSUPPORTED_CODES.contains(e.getCode())) {
+                lagSupported = false;
+                lagging = false;
+                System.err.println("Replication lag unavailable, throttling on write latency only: " + e.getMessage());
+                return false;
+            }
+            // Elections, network errors and timeouts pass: keep the last known state and check again next interval
+            System.err.println("Error reading replication lag, retrying in " + lagCheckIntervalMillis + " ms: " + e.getMessage());
+            return lagging;
+        }
+        boolean wasLagging = lagging;
+        lagging = replicationLagSeconds > maxReplicationLagSeconds;
+        if (lagging != wasLagging) {
+            System.out.println(lagging
+                    ? "Replication lag " + replicationLagSeconds + "s above " + maxReplicationLagSeconds + "s, holding migration writes"
+                    : "Replication lag back to " + replicationLagSeconds + "s, resuming migration writes");
+        }
+        return lagging;
+    }
+
+    /**
+     * Seconds between the primary's last applied operation and that of the slowest healthy secondary.
+     */
+    private double readReplicationLag() {
+        Document status = migrationClientProfile.client().getDatabase("admin").runCommand(new Document("replSetGetStatus", 1));
+        Date primary = null;
+        Date slowestSecondary = null;
+        for (Document member : status.getList("members", Document.class, List.of())) {
+            Date optime = member.getDate("optimeDate");
+            if (optime == null) {
+                continue;
+            }
+            String state = member.getString("stateStr");
+            if ("PRIMARY".equals(state)) {
+                primary = optime;
+            } else if ("SECONDARY".equals(state) && (slowestSecondary == null || optime.before(slowestSecondary))) {
+                slowestSecondary = optime;
+            }
+        }
+        if (primary == null || slowestSecondary == null) {
+            return 0;
+        }
+        return Math.max(0, primary.getTime() - slowestSecondary.getTime()) / 1000.0;
+    }
+
+    /**
+     * Pacing of one change unit: the time its next batch may start, and the adaptive factor applied to the rates.
+     */
+    private class UnitSchedule {
+        private long nextStartNanos = System.nanoTime();
+        private double factor = 1.0;
+        private long lastLatencyNanos;
+
+        /**
+         * Books the next slot for a batch and returns how long the caller has to wait for it.
+         */
+        synchronized long reserve(int documents) {
+            long interval = 0;
+            if (docsPerSecond > 0 && documents > 0) {
+                interval = Math.max(interval, (long) (documents * 1e9 / (docsPerSecond * factor)));
+            }
+            if (opsPerSecond > 0) {
+                interval = Math.max(interval, (long) (1e9 / (opsPerSecond * factor)));
+            }
+            // Duty cycle: at factor f the unit writes for f of the time and idles for the rest
+            interval = Math.max(interval, (long) (lastLatencyNanos * (1 / factor - 1)));
+
+            long now = System.nanoTime();
+            long start = Math.max(now, nextStartNanos);
+            nextStartNanos = start + interval;
+            return start - now;
+        }
+
+        synchronized void adapt(long latencyNanos) {
+            lastLatencyNanos = latencyNanos;
+            if (latencyNanos > TimeUnit.MILLISECONDS.toNanos(maxWriteLatencyMillis)) {
+                factor = Math.max(MIN_FACTOR, factor / 2);
+            } else {
+                factor = Math.min(1.0, factor + RECOVERY_STEP);
+            }
+        }
+
+        synchronized double factor() {
+            return factor;
+        }
+    }
+}
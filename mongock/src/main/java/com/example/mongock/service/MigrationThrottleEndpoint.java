@@ -0,0 +1,41 @@
+package com.example.mongock.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint {@code mongock} (JMX by default): reads the throttle status, and pauses or resumes
+ * migration writes with the {@code pause} / {@code resume} actions. Writes in flight finish; the next batch waits.
+ */
+@Component
+@Endpoint(id = "mongock")
+public class MigrationThrottleEndpoint {
+
+    private final MigrationThrottle migrationThrottle;
+
+    @Autowired
+    public MigrationThrottleEndpoint(MigrationThrottle migrationThrottle) {
+        this.migrationThrottle = migrationThrottle;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return migrationThrottle.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> control(@Selector String action) {
+        switch (action) {
+            case "pause" -> migrationThrottle.pause();
+            case "resume" -> migrationThrottle.resume();
+            default -> throw new IllegalArgumentException("Unknown action '" + action + "', expected pause or resume");
+        }
+        return migrationThrottle.status();
+    }
+}
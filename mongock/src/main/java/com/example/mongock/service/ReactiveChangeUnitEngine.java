@@ -0,0 +1,265 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeLog;
+import com.example.mongock.util.BsonConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking engine for data sections ({@code mongock.engine=reactive}). Parsed elements flow through a
+ * {@link Flux} into {@code insertMany}/{@code bulkWrite} batches on the reactive client of
+ * {@link MigrationClientProfile#reactiveClient()}, with up to {@code mongock.reactive.max-in-flight-batches} batches awaiting acknowledgement at once; the parser is
+ * only asked for more elements as batches complete, so memory stays bounded by the in-flight window.
+ * <p>
+ * Batch sizes, models and change log entries are the ones {@link ChangeUnitService} produces, and results are
+ * recorded in batch order. Ordered sections (ordered inserts, and update/delete units with {@code "ordered": true})
+ * keep a single batch in flight, since a later batch must not run before an earlier one has failed or succeeded.
+ * A failure stops further batches from being sent, but the ones already in flight are awaited and recorded before
+ * it is rethrown, so the failed change log entry covers everything the server acknowledged.
+ * With {@link MigrationThrottle} enabled, each batch waits for its permit without blocking a thread.
+ */
+@Service
+public class ReactiveChangeUnitEngine implements ChangeUnitWriter {
+
+    private final ChangeUnitService changeUnitService;
+    private final ChangeLogService changeLogService;
+    private final MigrationMetrics migrationMetrics;
+    private final MigrationClientProfile migrationClientProfile;
+    private final MigrationThrottle migrationThrottle;
+    private final MigrationLockService migrationLockService;
+
+    @Value("${mongock.engine:blocking}")
+    private String engine;
+
+    @Value("${mongock.reactive.max-in-flight-batches:4}")
+    private int maxInFlightBatches;
+
+    @Value("${mongock.insert.batch-size:1000}")
+    private int insertBatchSize;
+
+    @Value("${mongock.insert.ordered:false}")
+    private boolean insertOrdered;
+
+    @Value("${mongock.bulk.batch-size:1000}")
+    private int bulkBatchSize;
+
+    @Autowired
+    public ReactiveChangeUnitEngine(ChangeUnitService changeUnitService, ChangeLogService changeLogService,
+                                    MigrationMetrics migrationMetrics, MigrationClientProfile migrationClientProfile,
+                                    MigrationThrottle migrationThrottle, MigrationLockService migrationLockService) {
+        this.changeUnitService = changeUnitService;
+        this.changeLogService = changeLogService;
+        this.migrationMetrics = migrationMetrics;
+        this.migrationClientProfile = migrationClientProfile;
+        this.migrationThrottle = migrationThrottle;
+        this.migrationLockService = migrationLockService;
+    }
+
+    public boolean isEnabled() {
+        return "reactive".equalsIgnoreCase(engine);
+    }
+
+    @Override
+    public void writeInsertSection(String changeUnitId, String collectionName, Iterator<JsonNode> documents, List<String> upsertKeys,
+                                   MongoTemplate mongoTemplate) {
+        if (upsertKeys == null) {
+            insertDocuments(changeUnitId, collectionName, documents, mongoTemplate);
+            return;
+        }
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "INSERT", List.of(collectionName), true);
+        changeLog.setInsertedCount(0L);
+        changeLog.setMatchedCount(0L);
+        changeLog.setModifiedCount(0L);
+        applyBulk(collectionName, documents, changeUnitService.upsertModels(upsertKeys), insertOrdered,
+                changeLog, mongoTemplate);
+
+        System.out.println("Upserted documents into collection: " + collectionName + " (inserted " + changeLog.getInsertedCount()
+                + ", matched " + changeLog.getMatchedCount() + ", modified " + changeLog.getModifiedCount() + ")");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    @Override
+    public void applyUpdateQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                                   MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "UPDATE", List.of(collectionName), true);
+        changeLog.setMatchedCount(0L);
+        changeLog.setModifiedCount(0L);
+        applyBulk(collectionName, queries, changeUnitService::toUpdateModel, ordered, changeLog, mongoTemplate);
+
+        if (changeLog.getMatchedCount() == 0) {
+            System.err.println("Update queries matched no documents in collection: " + collectionName);
+        }
+        System.out.println("Updated documents in collection: " + collectionName
+                + " (matched " + changeLog.getMatchedCount() + ", modified " + changeLog.getModifiedCount() + ")");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    @Override
+    public void applyDeleteQueries(String changeUnitId, String collectionName, Iterator<JsonNode> queries, boolean ordered,
+                                   MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "DELETE", List.of(collectionName), true);
+        changeLog.setDeletedCount(0L);
+        applyBulk(collectionName, queries, changeUnitService::toDeleteModel, ordered, changeLog, mongoTemplate);
+
+        if (changeLog.getDeletedCount() == 0) {
+            System.err.println("Delete queries matched no documents in collection: " + collectionName);
+        }
+        System.out.println("Deleted " + changeLog.getDeletedCount() + " documents in collection: " + collectionName);
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    private void insertDocuments(String changeUnitId, String collectionName, Iterator<JsonNode> documents, MongoTemplate mongoTemplate) {
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "INSERT", List.of(collectionName), true);
+        changeLog.setInsertedCount(0L);
+        changeLog.setBatchCounts(new ArrayList<>());
+        MongoCollection<Document> collection = collection(mongoTemplate, collectionName);
+        InsertManyOptions options = new InsertManyOptions().ordered(insertOrdered);
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            writeBatches(Flux.fromIterable(() -> documents)
+                            .map(BsonConverter::toDocument)
+                            .buffer(insertBatchSize)
+                            .doOnNext(batch -> migrationMetrics.recordBatch(mongoTemplate, "insert", collectionName, batch.size())),
+                    batch -> throttled(changeUnitId, mongoTemplate, batch.size(), () -> collection.insertMany(batch, options))
+                            .map(result -> result.getInsertedIds().size())
+                            .doOnError(MongoBulkWriteException.class,
+                                    e -> recordInsertBatch(changeLog, e.getWriteResult().getInsertedCount())),
+                    inFlight(insertOrdered),
+                    inserted -> recordInsertBatch(changeLog, inserted));
+        } catch (RuntimeException e) {
+            changeLog.setSuccess(false);
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "INSERT", collectionName, false);
+            migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "INSERT", collectionName, changeLog.getInsertedCount());
+            throw e;
+        }
+        migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "INSERT", collectionName, true);
+        migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "INSERT", collectionName, changeLog.getInsertedCount());
+        System.out.println("Inserted " + changeLog.getInsertedCount() + " documents into collection: " + collectionName
+                + " in " + changeLog.getBatchCounts().size() + " batches");
+        changeLogService.saveChangeLog(changeLog, mongoTemplate);
+    }
+
+    /**
+     * Pipelines {@code bulkWrite} batches and accumulates their results on the change log entry, which is saved as
+     * failed, with what the server acknowledged so far, before the error is rethrown.
+     */
+    private void applyBulk(String collectionName, Iterator<JsonNode> items, Function<JsonNode, WriteModel<Document>> toModel,
+                           boolean ordered, ChangeLog changeLog, MongoTemplate mongoTemplate) {
+        changeLog.setBatchCounts(new ArrayList<>());
+        MongoCollection<Document> collection = collection(mongoTemplate, collectionName);
+        BulkWriteOptions options = new BulkWriteOptions().ordered(ordered);
+        String operation = changeLog.getOperation().toLowerCase();
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            writeBatches(Flux.fromIterable(() -> items)
+                            .map(toModel)
+                            .buffer(bulkBatchSize)
+                            .doOnNext(batch -> migrationMetrics.recordBatch(mongoTemplate, operation, collectionName, batch.size())),
+                    batch -> throttled(changeLog.getChangeUnitId(), mongoTemplate, batch.size(), () -> collection.bulkWrite(batch, options))
+                            .map(result -> new BatchResult(batch.size(), result))
+                            .doOnError(MongoBulkWriteException.class,
+                                    e -> recordBulkBatch(changeLog, new BatchResult(batch.size(), e.getWriteResult()), false)),
+                    inFlight(ordered),
+                    result -> recordBulkBatch(changeLog, result, true));
+        } catch (RuntimeException e) {
+            changeLog.setSuccess(false);
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            changeUnitService.recordBulkMetrics(sample, collectionName, changeLog, mongoTemplate);
+            throw e;
+        }
+        changeUnitService.recordBulkMetrics(sample, collectionName, changeLog, mongoTemplate);
+    }
+
+    /**
+     * Sends batches with up to {@code inFlight} awaiting acknowledgement and records their results in batch order.
+     * Once a batch fails (or the elements can no longer be read), no further batch is sent; the ones in flight are
+     * awaited and recorded, then the first failure is rethrown.
+     */
+    private <B, R> void writeBatches(Flux<B> batches, Function<B, Mono<R>> write, int inFlight, Consumer<R> record) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        batches.takeWhile(batch -> failure.get() == null)
+                .flatMapSequentialDelayError(batch -> write.apply(batch)
+                        .onErrorResume(e -> {
+                            failure.compareAndSet(null, e);
+                            return Mono.empty();
+                        }), inFlight, 1)
+                .doOnNext(record)
+                .blockLast();
+        if (failure.get() != null) {
+            throw Exceptions.propagate(failure.get());
+        }
+    }
+
+    // A failed batch reports from the driver's thread while earlier batches may still be recorded in order
+    private void recordInsertBatch(ChangeLog changeLog, int inserted) {
+        synchronized (changeLog) {
+            changeUnitService.recordInsertBatch(changeLog, inserted);
+        }
+    }
+
+    private void recordBulkBatch(ChangeLog changeLog, BatchResult batchResult, boolean complete) {
+        synchronized (changeLog) {
+            changeUnitService.recordBulkBatch(changeLog, batchResult.size(), batchResult.result(), complete);
+        }
+    }
+
+    /**
+     * Sends the write once the throttle grants a permit and the migration lock is confirmed still held, and feeds
+     * its acknowledged latency back to the throttle.
+     */
+    private <T> Mono<T> throttled(String changeUnitId, MongoTemplate mongoTemplate, int documents, Supplier<Publisher<T>> write) {
+        return migrationThrottle.permit(mongoTemplate, changeUnitId, documents)
+                .then(Mono.fromRunnable(() -> migrationLockService.ensureHeld(mongoTemplate)))
+                .then(Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return Mono.from(write.get())
+                            .doOnSuccess(result -> migrationThrottle.recordLatency(mongoTemplate, changeUnitId, System.nanoTime() - start));
+                }));
+    }
+
+    private int inFlight(boolean ordered) {
+        return ordered ? 1 : Math.max(1, maxInFlightBatches);
+    }
+
+    /**
+     * The collection on the reactive client, with the bulk write concern and read concern of the database's
+     * migration profile.
+     */
+    private MongoCollection<Document> collection(MongoTemplate mongoTemplate, String collectionName) {
+        String databaseName = mongoTemplate.getDb().getName();
+        MongoCollection<Document> collection = migrationClientProfile.reactiveClient().getDatabase(databaseName).getCollection(collectionName);
+        WriteConcern writeConcern = migrationClientProfile.bulkWriteConcern(databaseName);
+        ReadConcern readConcern = migrationClientProfile.readConcern(databaseName);
+        collection = writeConcern != null ? collection.withWriteConcern(writeConcern) : collection;
+        return readConcern != null ? collection.withReadConcern(readConcern) : collection;
+    }
+
+    private record BatchResult(int size, BulkWriteResult result) {
+    }
+}
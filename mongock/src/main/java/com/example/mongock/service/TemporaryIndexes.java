@@ -0,0 +1,64 @@
+package com.example.mongock.service;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Supporting indexes of one data change unit. {@link #ensureBuilt()} builds them the first time it is called,
+ * right before the first update/delete query or transform, and {@link #close()} drops them. Their names carry
+ * {@link #NAME_PREFIX}, so close also drops one that a run which died before closing left on the collection,
+ * even though this run found it already present and did not build it.
+ * Index builds cannot run inside a multi-document transaction, so the template must not be session-bound.
+ */
+public class TemporaryIndexes implements AutoCloseable {
+
+    static final String NAME_PREFIX = "mongock_tmp_";
+
+    private final IndexService indexService;
+    private final String changeUnitId;
+    private final String collectionName;
+    private final List<Document> specs;
+    private final MongoTemplate mongoTemplate;
+    private boolean built;
+
+    /**
+     * No supporting indexes: building and closing are no-ops.
+     */
+    public static TemporaryIndexes none() {
+        return new TemporaryIndexes(null, null, null, List.of(), null);
+    }
+
+    TemporaryIndexes(IndexService indexService, String changeUnitId, String collectionName, List<Document> specs,
+                     MongoTemplate mongoTemplate) {
+        this.indexService = indexService;
+        this.changeUnitId = changeUnitId;
+        this.collectionName = collectionName;
+        this.specs = specs;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public void ensureBuilt() {
+        if (!built && !specs.isEmpty()) {
+            indexService.createIndexes(changeUnitId, collectionName, specs, mongoTemplate);
+            built = true;
+        }
+    }
+
+    /**
+     * Drops every declared index present on the collection, whether this run built it or an earlier one left it.
+     */
+    @Override
+    public void close() {
+        if (specs.isEmpty()) {
+            return;
+        }
+        Set<String> names = specs.stream().map(spec -> spec.getString("name")).collect(Collectors.toSet());
+        List<String> present = indexService.indexNames(collectionName, mongoTemplate).stream().filter(names::contains).toList();
+        indexService.dropIndexes(changeUnitId, collectionName, present, mongoTemplate);
+        built = false;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeLog;
+import com.example.mongock.util.BsonConverter;
+import com.example.mongock.util.ChangeUnitSchema;
+import com.example.mongock.util.IdRanges;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@code transform} section of a data change unit on the server, so backfills that derive new fields from
+ * existing data need no per-document round trips:
+ * <pre>
+ * "transform": {
+ *   "pipeline": [ ...stages ],
+ *   "mode": "merge" | "out" | "update",
+ *   "filter": { ...query },
+ *   "into": "targetCollection",
+ *   "on": ["field"], "whenMatched": "merge", "whenNotMatched": "insert",
+ *   "partitions": 8
+ * }
+ * </pre>
+ * {@code merge} (the default) appends a {@code $merge} into {@code into}, {@code out} appends an {@code $out}, and
+ * {@code update} runs the stages as a pipeline-style {@code updateMany}. Merge and out need an explicit {@code into};
+ * in-place backfills of the unit's own collection use {@code update}.
+ * Merge and update transforms can be split into {@code _id} range partitions that run in parallel on
+ * {@code mongock.transform.threads} threads; {@code $out} replaces its target as a whole and always runs as one.
+ * A pipeline that already ends in its own {@code $merge} or {@code $out} is run as written.
+ */
+@Service
+public class TransformService {
+
+    private final ChangeLogService changeLogService;
+    private final MigrationMetrics migrationMetrics;
+    private final MigrationThrottle migrationThrottle;
+    private final MigrationLockService migrationLockService;
+
+    @Value("${mongock.transform.partitions:1}")
+    private int defaultPartitions;
+
+    @Value("${mongock.transform.threads:4}")
+    private int threads;
+
+    @Autowired
+    public TransformService(ChangeLogService changeLogService, MigrationMetrics migrationMetrics, MigrationThrottle migrationThrottle,
+                            MigrationLockService migrationLockService) {
+        this.changeLogService = changeLogService;
+        this.migrationMetrics = migrationMetrics;
+        this.migrationThrottle = migrationThrottle;
+        this.migrationLockService = migrationLockService;
+    }
+
+    /**
+     * Applies a transform to {@code collectionName} and records one TRANSFORM change log entry with the
+     * duration of every partition, in partition order.
+     */
+    public void applyTransform(String changeUnitId, String collectionName, JsonNode transformNode, MongoTemplate mongoTemplate) {
+        String mode = transformNode.path("mode").asText("merge").toLowerCase();
+        String into = transformNode.path("into").asText(collectionName);
+        if (!transformNode.has("into") && !"update".equals(mode) && !ChangeUnitSchema.endsInOutput(transformNode.get("pipeline"))) {
+            throw ChangeUnitException.failed(changeUnitId, "TRANSFORM", new IllegalArgumentException("Transform mode '" + mode
+                    + "' needs an explicit 'into'; use \"mode\": \"update\" to backfill collection " + collectionName + " in place"));
+        }
+        List<String> collectionNames = collectionName.equals(into) ? List.of(collectionName) : List.of(collectionName, into);
+        ChangeLog changeLog = changeLogService.createChangeLog(changeUnitId, "TRANSFORM", collectionNames, true);
+        changeLog.setPartitionMillis(new ArrayList<>());
+        Timer.Sample sample = migrationMetrics.start();
+        try {
+            List<Bson> stages = stages(transformNode.get("pipeline"));
+            Document filter = transformNode.path("filter").isObject() ? BsonConverter.toDocument(transformNode.get("filter")) : new Document();
+            MongoCollection<Document> collection = mongoTemplate.getCollection(collectionName);
+            int partitions = "out".equals(mode) || lastStageIs(stages, "$out") ? 1 : transformNode.path("partitions").asInt(defaultPartitions);
+            List<Bson> ranges = IdRanges.partition(collection, partitions);
+
+            // A partition is one server-side operation: the throttle can only pace, pause or hold it, not size it
+            List<PartitionResult> results = switch (mode) {
+                case "merge", "out" -> runPartitions(ranges, range -> {
+                    migrationThrottle.acquire(mongoTemplate, changeUnitId, 0);
+                    migrationLockService.ensureHeld(mongoTemplate);
+                    return aggregate(collection, range, filter, stages, mode, into, transformNode);
+                });
+                case "update" -> runPartitions(ranges, range -> {
+                    migrationThrottle.acquire(mongoTemplate, changeUnitId, 0);
+                    migrationLockService.ensureHeld(mongoTemplate);
+                    return collection.updateMany(scope(range, filter), stages);
+                });
+                default -> throw new IllegalArgumentException("Unknown transform mode '" + mode + "', expected merge, out or update");
+            };
+            for (PartitionResult result : results) {
+                changeLog.getPartitionMillis().add(result.millis());
+                if (result.updateResult() != null) {
+                    changeLog.setMatchedCount(orZero(changeLog.getMatchedCount()) + result.updateResult().getMatchedCount());
+                    changeLog.setModifiedCount(orZero(changeLog.getModifiedCount()) + result.updateResult().getModifiedCount());
+                }
+            }
+            System.out.println("Transformed collection " + collectionName + " (" + mode + (collectionName.equals(into) ? "" : " into " + into)
+                    + ") in " + ranges.size() + " partitions: " + changeLog.getPartitionMillis() + " ms"
+                    + (changeLog.getModifiedCount() != null ? ", modified " + changeLog.getModifiedCount() : ""));
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "TRANSFORM", collectionName, true);
+            if (changeLog.getModifiedCount() != null) {
+                migrationMetrics.recordDocuments(mongoTemplate, changeUnitId, "TRANSFORM", collectionName, changeLog.getModifiedCount());
+            }
+        } catch (Exception e) {
+            changeLog.setSuccess(false);
+            changeLogService.saveChangeLog(changeLog, mongoTemplate);
+            migrationMetrics.recordOperation(sample, mongoTemplate, changeUnitId, "TRANSFORM", collectionName, false);
+            throw ChangeUnitException.failed(changeUnitId, "TRANSFORM", e);
+        }
+    }
+
+    /**
+     * Restricts the pipeline to one partition and the filter, and writes its output with {@code $merge} or {@code $out}
+     * unless the pipeline already ends in one of them.
+     */
+    private UpdateResult aggregate(MongoCollection<Document> collection, Bson range, Document filter, List<Bson> stages,
+                                   String mode, String into, JsonNode transformNode) {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(scope(range, filter)));
+        pipeline.addAll(stages);
+        if (!lastStageIs(stages, "$merge") && !lastStageIs(stages, "$out")) {
+            pipeline.add("out".equals(mode) ? Aggregates.out(into) : Aggregates.merge(into, mergeOptions(transformNode)));
+        }
+        collection.aggregate(pipeline).allowDiskUse(true).toCollection();
+        return null;
+    }
+
+    private static MergeOptions mergeOptions(JsonNode transformNode) {
+        MergeOptions options = new MergeOptions();
+        JsonNode on = transformNode.get("on");
+        if (on != null && on.isArray()) {
+            List<String> fields = new ArrayList<>();
+            on.forEach(field -> fields.add(field.asText()));
+            options.uniqueIdentifier(fields);
+        } else if (on != null && on.isTextual()) {
+            options.uniqueIdentifier(on.asText());
+        }
+        if (transformNode.hasNonNull("whenMatched")) {
+            options.whenMatched(switch (transformNode.get("whenMatched").asText()) {
+                case "replace" -> MergeOptions.WhenMatched.REPLACE;
+                case "keepExisting" -> MergeOptions.WhenMatched.KEEP_EXISTING;
+                case "fail" -> MergeOptions.WhenMatched.FAIL;
+                case "merge" -> MergeOptions.WhenMatched.MERGE;
+                default -> throw new IllegalArgumentException("Unknown whenMatched: " + transformNode.get("whenMatched"));
+            });
+        }
+        if (transformNode.hasNonNull("whenNotMatched")) {
+            options.whenNotMatched(switch (transformNode.get("whenNotMatched").asText()) {
+                case "insert" -> MergeOptions.WhenNotMatched.INSERT;
+                case "discard" -> MergeOptions.WhenNotMatched.DISCARD;
+                case "fail" -> MergeOptions.WhenNotMatched.FAIL;
+                default -> throw new IllegalArgumentException("Unknown whenNotMatched: " + transformNode.get("whenNotMatched"));
+            });
+        }
+        return options;
+    }
+
+    /**
+     * Runs one task per partition, a single partition on the calling thread. The first failure is rethrown once
+     * every partition has finished, so no partition is still writing when the unit is marked as failed.
+     */
+    private List<PartitionResult> runPartitions(List<Bson> ranges, PartitionTask task) throws Exception {
+        if (ranges.size() == 1) {
+            return List.of(timed(task, ranges.get(0)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, ranges.size())),
+                Thread.ofPlatform().name("mongock-transform-", 0).factory());
+        try {
+            List<Future<PartitionResult>> futures = new ArrayList<>();
+            for (Bson range : ranges) {
+                futures.add(executor.submit(() -> timed(task, range)));
+            }
+            List<PartitionResult> results = new ArrayList<>();
+            Exception failure = null;
+            for (Future<PartitionResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception cause ? cause : e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static PartitionResult timed(PartitionTask task, Bson range) {
+        long start = System.nanoTime();
+        UpdateResult updateResult = task.run(range);
+        return new PartitionResult(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), updateResult);
+    }
+
+    private static List<Bson> stages(JsonNode pipelineNode) {
+        if (pipelineNode == null || !pipelineNode.isArray() || pipelineNode.isEmpty()) {
+            throw new IllegalArgumentException("Transform needs a non-empty 'pipeline' array");
+        }
+        List<Bson> stages = new ArrayList<>();
+        for (JsonNode stage : pipelineNode) {
+            stages.add(BsonConverter.toDocument(stage));
+        }
+        return stages;
+    }
+
+    private static Bson scope(Bson range, Document filter) {
+        if (filter.isEmpty()) {
+            return range;
+        }
+        return range instanceof Document document && document.isEmpty() ? filter : Filters.and(range, filter);
+    }
+
+    private static boolean lastStageIs(List<Bson> stages, String stageName) {
+        return ((Document) stages.get(stages.size() - 1)).containsKey(stageName);
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0;
+    }
+
+    private interface PartitionTask {
+        UpdateResult run(Bson range);
+    }
+
+    private record PartitionResult(long millis, UpdateResult updateResult) {
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.mongock.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts Jackson trees straight into BSON values, without the
+ * {@code Document.parse(node.toString())} round trip through a JSON string.
+ * Extended JSON type wrappers ({@code $oid}, {@code $date}, ...) are honoured so the
+ * result matches what {@link Document#parse(String)} would have produced.
+ */
+public final class BsonConverter {
+
+    private static final Set<String> FAST_PATH_KEYS = Set.of("$oid", "$numberLong", "$numberInt", "$numberDecimal", "$date");
+
+    // Extended JSON wrappers without a fast path below; these are delegated to the driver's parser
+    private static final Set<String> EXTENDED_JSON_KEYS = Set.of(
+            "$binary", "$code", "$dbPointer", "$maxKey", "$minKey", "$numberDouble",
+            "$regularExpression", "$symbol", "$timestamp", "$undefined", "$uuid", "$regex");
+
+    private BsonConverter() {
+    }
+
+    /**
+     * Converts a JSON object into a BSON document.
+     */
+    public static Document toDocument(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return new Document();
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object but found: " + node.getNodeType());
+        }
+        Document document = new Document();
+        for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            document.put(field.getKey(), toValue(field.getValue()));
+        }
+        return document;
+    }
+
+    /**
+     * Roughly estimates the encoded BSON size of a JSON value, without encoding it.
+     * Used to keep transactions and batches well inside server size limits.
+     */
+    public static long estimateSize(JsonNode node) {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                long objectSize = 5;
+                for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    objectSize += 2 + field.getKey().length() + estimateSize(field.getValue());
+                }
+                return objectSize;
+            case ARRAY:
+                long arraySize = 5;
+                for (JsonNode element : node) {
+                    arraySize += 4 + estimateSize(element);
+                }
+                return arraySize;
+            case STRING:
+                return 5 + node.textValue().length();
+            case BOOLEAN:
+                return 1;
+            case NUMBER:
+                return node.isInt() ? 4 : node.isBigInteger() || node.isBigDecimal() ? 16 : 8;
+            case BINARY:
+                return 5 + binaryValue(node).length;
+            default:
+                return 0;
+        }
+    }
+
+    private static Object toValue(JsonNode node) {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                return isExtendedJson(node) ? toExtendedValue(node) : toDocument(node);
+            case ARRAY:
+                List<Object> values = new ArrayList<>(node.size());
+                for (JsonNode element : node) {
+                    values.add(toValue(element));
+                }
+                return values;
+            case STRING:
+                return node.textValue();
+            case BOOLEAN:
+                return node.booleanValue();
+            case NUMBER:
+                return toNumber(node);
+            case BINARY:
+                return new Binary(binaryValue(node));
+            case NULL:
+            case MISSING:
+            default:
+                return null;
+        }
+    }
+
+    private static Object toNumber(JsonNode node) {
+        if (node.isInt()) {
+            return node.intValue();
+        }
+        if (node.isLong()) {
+            return node.longValue();
+        }
+        if (node.isBigInteger() || node.isBigDecimal()) {
+            return new Decimal128(node.decimalValue());
+        }
+        return node.doubleValue();
+    }
+
+    private static boolean isExtendedJson(JsonNode node) {
+        if (node.isEmpty() || node.size() > 2) {
+            return false;
+        }
+        String key = node.fieldNames().next();
+        return node.size() == 1 ? FAST_PATH_KEYS.contains(key) || EXTENDED_JSON_KEYS.contains(key)
+                : EXTENDED_JSON_KEYS.contains(key);
+    }
+
+    private static Object toExtendedValue(JsonNode node) {
+        String key = node.fieldNames().next();
+        JsonNode value = node.get(key);
+        switch (key) {
+            case "$oid":
+                return new ObjectId(value.asText());
+            case "$numberLong":
+                return Long.parseLong(value.asText());
+            case "$numberInt":
+                return Integer.parseInt(value.asText());
+            case "$numberDecimal":
+                return Decimal128.parse(value.asText());
+            case "$date":
+                if (value.isNumber()) {
+                    return new Date(value.longValue());
+                }
+                if (value.isTextual()) {
+                    try {
+                        return Date.from(OffsetDateTime.parse(value.textValue()).toInstant());
+                    } catch (DateTimeParseException e) {
+                        return parseWithDriver(node);
+                    }
+                }
+                return parseWithDriver(node);
+            default:
+                return parseWithDriver(node);
+        }
+    }
+
+    private static byte[] binaryValue(JsonNode node) {
+        try {
+            return node.binaryValue();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable binary value", e);
+        }
+    }
+
+    private static Object parseWithDriver(JsonNode node) {
+        return Document.parse("{\"v\": " + node + "}").get("v");
+    }
+}
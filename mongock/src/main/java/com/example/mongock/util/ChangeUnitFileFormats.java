@@ -0,0 +1,147 @@
+package com.example.mongock.util;
+
+import com.example.mongock.model.FileFormat;
+import io.airlift.compress.zstd.ZstdInputStream;
+import org.bson.RawBsonDocument;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decoding of change-unit files by extension: {@code .gz} and {@code .zst} are decompressed on the fly, and the
+ * remaining extension selects JSON, NDJSON ({@code .ndjson}/{@code .jsonl}) or BSON ({@code .bson}).
+ */
+public final class ChangeUnitFileFormats {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The server's 16 MiB document limit plus a little slack; anything larger is a corrupt length, not a document
+    private static final int MAX_BSON_DOCUMENT_SIZE = 16 * 1024 * 1024 + 16 * 1024;
+
+    private ChangeUnitFileFormats() {
+    }
+
+    public static FileFormat format(String filePath) {
+        String name = stripCompression(Path.of(filePath).getFileName().toString().toLowerCase());
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return FileFormat.NDJSON;
+        } else if (name.endsWith(".bson")) {
+            return FileFormat.BSON;
+        }
+        return FileFormat.JSON;
+    }
+
+    public static boolean isCompressed(String filePath) {
+        String name = filePath.toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".zst");
+    }
+
+    /**
+     * Opens the file, decompressing it when its name ends in {@code .gz} or {@code .zst}.
+     */
+    public static InputStream open(String filePath) throws IOException {
+        return decompress(filePath, new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE));
+    }
+
+    /**
+     * Wraps an already opened stream of the file's raw bytes (e.g. one that is being hashed) in the right decompressor.
+     */
+    public static InputStream decompress(String filePath, InputStream raw) throws IOException {
+        String name = filePath.toLowerCase();
+        if (name.endsWith(".gz")) {
+            return new GZIPInputStream(raw, BUFFER_SIZE);
+        } else if (name.endsWith(".zst")) {
+            return new BufferedInputStream(new ZstdInputStream(raw), BUFFER_SIZE);
+        }
+        return raw;
+    }
+
+    /**
+     * File name without directories or format/compression extensions, e.g. {@code customer} for
+     * {@code dump/customer.bson.gz}; mongodump names its files after the collection.
+     */
+    public static String baseName(String filePath) {
+        String name = stripCompression(Path.of(filePath).getFileName().toString());
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Reads length-prefixed BSON documents one at a time; each is handed over undecoded, so it can be inserted as is.
+     */
+    public static Iterator<RawBsonDocument> bsonDocuments(InputStream in) {
+        return new Iterator<>() {
+            private RawBsonDocument nextDocument;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (nextDocument == null && !finished) {
+                    try {
+                        byte[] document = readBsonDocument(in);
+                        if (document == null) {
+                            finished = true;
+                        } else {
+                            nextDocument = new RawBsonDocument(document);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return nextDocument != null;
+            }
+
+            @Override
+            public RawBsonDocument next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                RawBsonDocument document = nextDocument;
+                nextDocument = null;
+                return document;
+            }
+        };
+    }
+
+    /**
+     * Reads one BSON document (its little-endian int32 length includes the prefix itself), or null at end of stream.
+     * The length is checked before anything is allocated, so a corrupt prefix cannot request a huge buffer.
+     */
+    public static byte[] readBsonDocument(InputStream in) throws IOException {
+        byte[] prefix = in.readNBytes(4);
+        if (prefix.length == 0) {
+            return null;
+        }
+        if (prefix.length < 4) {
+            throw new EOFException("Truncated BSON document length");
+        }
+        int length = (prefix[0] & 0xff) | (prefix[1] & 0xff) << 8 | (prefix[2] & 0xff) << 16 | (prefix[3] & 0xff) << 24;
+        if (length < 5 || length > MAX_BSON_DOCUMENT_SIZE) {
+            throw new IOException("Invalid BSON document length: " + length);
+        }
+        byte[] document = new byte[length];
+        System.arraycopy(prefix, 0, document, 0, 4);
+        if (in.readNBytes(document, 4, length - 4) != length - 4) {
+            throw new EOFException("Truncated BSON document of " + length + " bytes");
+        }
+        return document;
+    }
+
+    private static String stripCompression(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".gz")) {
+            return name.substring(0, name.length() - 3);
+        } else if (lower.endsWith(".zst")) {
+            return name.substring(0, name.length() - 4);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.mongock.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Structural rules of change-unit files, checked while a file is compiled into its plan. Each check appends
+ * human-readable problems, prefixed with the path of the offending element, instead of failing on the first one.
+ */
+public final class ChangeUnitSchema {
+
+    /**
+     * Top-level keys a JSON change-unit file may contain.
+     */
+    public static final Set<String> TOP_LEVEL_KEYS = Set.of(
+            "collectionName", "insert", "update", "delete", "transform", "ordered", "upsert", "upsertKeys",
+            "tempIndexes", "indexes", "drop", "create", "rename");
+
+    /**
+     * Field update operators accepted in an update query's {@code update} document.
+     */
+    public static final Set<String> UPDATE_OPERATORS = Set.of(
+            "$set", "$unset", "$inc", "$mul", "$rename", "$min", "$max", "$currentDate", "$setOnInsert",
+            "$push", "$pull", "$pullAll", "$addToSet", "$pop", "$bit");
+
+    private static final Set<String> TRANSFORM_MODES = Set.of("merge", "out", "update");
+
+    private ChangeUnitSchema() {
+    }
+
+    /**
+     * True when the update document is written with operators ({@code $set}, {@code $unset}, ...) rather than
+     * as plain fields to set.
+     */
+    public static boolean isOperatorUpdate(Iterable<String> keys) {
+        for (String key : keys) {
+            if (key.startsWith("$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One entry of an update/delete {@code queries} array: a {@code query} object, plus an {@code update} object for updates.
+     */
+    public static void checkQuery(String path, JsonNode entry, boolean update, List<String> problems) {
+        if (!entry.isObject()) {
+            problems.add(path + ": must be an object");
+            return;
+        }
+        if (!entry.path("query").isObject()) {
+            problems.add(path + ": needs a 'query' object");
+        }
+        if (update) {
+            checkUpdate(path + ".update", entry.get("update"), problems);
+        }
+    }
+
+    /**
+     * Either plain fields (applied with {@code $set}) or only known update operators, each with an object of fields.
+     */
+    static void checkUpdate(String path, JsonNode update, List<String> problems) {
+        if (update == null || !update.isObject() || update.isEmpty()) {
+            problems.add(path + ": needs a non-empty 'update' object");
+            return;
+        }
+        List<String> keys = fieldNames(update);
+        if (!isOperatorUpdate(keys)) {
+            return;
+        }
+        for (String key : keys) {
+            if (!key.startsWith("$")) {
+                problems.add(path + ": mixes update operators with the plain field '" + key + "'");
+            } else if (!UPDATE_OPERATORS.contains(key)) {
+                problems.add(path + ": unknown update operator '" + key + "'");
+            } else if (!update.get(key).isObject()) {
+                problems.add(path + "." + key + ": must be an object of fields");
+            }
+        }
+    }
+
+    public static void checkTransform(JsonNode transform, List<String> problems) {
+        if (!transform.isObject()) {
+            problems.add("transform: must be an object");
+            return;
+        }
+        JsonNode pipeline = transform.get("pipeline");
+        if (pipeline == null || !pipeline.isArray() || pipeline.isEmpty()) {
+            problems.add("transform.pipeline: must be a non-empty array of stages");
+        } else {
+            for (int i = 0; i < pipeline.size(); i++) {
+                JsonNode stage = pipeline.get(i);
+                if (!stage.isObject() || stage.size() != 1 || !stage.fieldNames().next().startsWith("$")) {
+                    problems.add("transform.pipeline[" + i + "]: must be an object with a single $stage");
+                }
+            }
+        }
+        String mode = transform.path("mode").asText("merge");
+        if (!TRANSFORM_MODES.contains(mode.toLowerCase())) {
+            problems.add("transform.mode: unknown mode '" + mode + "', expected merge, out or update");
+        }
+        if (transform.has("into") && !transform.get("into").isTextual()) {
+            problems.add("transform.into: must be a collection name");
+        } else if (!transform.has("into") && !"update".equalsIgnoreCase(mode) && !endsInOutput(pipeline)) {
+            problems.add("transform.into: required for mode '" + mode + "'; use \"mode\": \"update\" to backfill the unit's own collection in place");
+        }
+        if (transform.has("filter") && !transform.get("filter").isObject()) {
+            problems.add("transform.filter: must be an object");
+        }
+        if (transform.has("partitions") && (!transform.get("partitions").canConvertToInt() || transform.get("partitions").asInt() < 1)) {
+            problems.add("transform.partitions: must be a positive number");
+        }
+    }
+
+    /**
+     * True when a transform pipeline ends in its own {@code $merge} or {@code $out}, which names its target itself.
+     */
+    public static boolean endsInOutput(JsonNode pipeline) {
+        if (pipeline == null || !pipeline.isArray() || pipeline.isEmpty()) {
+            return false;
+        }
+        JsonNode last = pipeline.get(pipeline.size() - 1);
+        return last.has("$merge") || last.has("$out");
+    }
+
+    /**
+     * An {@code indexes} section: {@code create} and {@code drop} arrays of entries naming their {@code collection}.
+     */
+    public static void checkIndexes(JsonNode indexes, List<String> problems) {
+        if (!indexes.isObject()) {
+            problems.add("indexes: must be an object with 'create' and/or 'drop' arrays");
+            return;
+        }
+        for (String action : List.of("create", "drop")) {
+            JsonNode entries = indexes.get(action);
+            if (entries == null) {
+                continue;
+            }
+            if (!entries.isArray()) {
+                problems.add("indexes." + action + ": must be an array");
+                continue;
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                JsonNode entry = entries.get(i);
+                String path = "indexes." + action + "[" + i + "]";
+                if (!entry.path("collection").isTextual()) {
+                    problems.add(path + ": needs a 'collection'");
+                }
+                checkIndexSpec(path, entry, problems);
+            }
+        }
+    }
+
+    public static void checkTempIndexes(JsonNode tempIndexes, List<String> problems) {
+        if (!tempIndexes.isArray()) {
+            problems.add("tempIndexes: must be an array of index specs");
+            return;
+        }
+        for (int i = 0; i < tempIndexes.size(); i++) {
+            checkIndexSpec("tempIndexes[" + i + "]", tempIndexes.get(i), problems);
+        }
+    }
+
+    private static void checkIndexSpec(String path, JsonNode spec, List<String> problems) {
+        if (!spec.isObject()) {
+            problems.add(path + ": must be an object");
+        } else if (!spec.path("key").isObject() && !spec.path("name").isTextual()) {
+            problems.add(path + ": needs a 'key' object or a 'name'");
+        }
+    }
+
+    public static void checkRenames(JsonNode renames, List<String> problems) {
+        if (!renames.isArray()) {
+            problems.add("rename: must be an array");
+            return;
+        }
+        for (int i = 0; i < renames.size(); i++) {
+            JsonNode rename = renames.get(i);
+            if (!rename.path("oldCollection").isTextual() || !rename.path("newCollection").isTextual()) {
+                problems.add("rename[" + i + "]: needs 'oldCollection' and 'newCollection'");
+            }
+        }
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.mongock.util;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Splits a collection into {@code _id} range filters that together match every document exactly once,
+ * so its documents can be processed by several workers in parallel.
+ */
+public final class IdRanges {
+
+    private static final int SAMPLES_PER_PARTITION = 32;
+
+    private IdRanges() {
+    }
+
+    /**
+     * Picks range boundaries from a random sample of {@code _id}s. Range filters only match their own BSON type,
+     * so documents whose {@code _id} has a different type than the sample get a partition of their own;
+     * if the sample itself mixes types, or the collection is empty, the whole collection is one partition.
+     */
+    public static List<Bson> partition(MongoCollection<Document> collection, int partitions) {
+        if (partitions <= 1) {
+            return List.of(new Document());
+        }
+        List<Object> sample = collection.aggregate(List.of(
+                        Aggregates.sample(partitions * SAMPLES_PER_PARTITION),
+                        Aggregates.project(Projections.include("_id")),
+                        Aggregates.sort(Sorts.ascending("_id"))))
+                .map(document -> document.get("_id"))
+                .into(new ArrayList<>());
+
+        String idType = sample.isEmpty() ? null : typeAlias(sample.get(0));
+        if (idType == null || sample.stream().anyMatch(id -> !idType.equals(typeAlias(id)))) {
+            return List.of(new Document());
+        }
+
+        List<Object> boundaries = new ArrayList<>();
+        int step = Math.max(1, sample.size() / partitions);
+        for (int i = step; i < sample.size(); i += step) {
+            Object boundary = sample.get(i);
+            if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                boundaries.add(boundary);
+            }
+        }
+
+        List<Bson> ranges = new ArrayList<>();
+        Object lower = null;
+        for (Object upper : boundaries) {
+            ranges.add(lower == null ? Filters.lt("_id", upper) : Filters.and(Filters.gte("_id", lower), Filters.lt("_id", upper)));
+            lower = upper;
+        }
+        ranges.add(lower == null ? Filters.type("_id", idType) : Filters.gte("_id", lower));
+        ranges.add(Filters.not(Filters.type("_id", idType)));
+        return ranges;
+    }
+
+    private static String typeAlias(Object id) {
+        if (id instanceof ObjectId) {
+            return "objectId";
+        } else if (id instanceof Number) {
+            return "number";
+        } else if (id instanceof String) {
+            return "string";
+        } else if (id instanceof Date) {
+            return "date";
+        }
+        return null;
+    }
+}
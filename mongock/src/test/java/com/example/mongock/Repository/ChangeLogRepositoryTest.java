@@ -0,0 +1,98 @@
+package com.example.mongock.Repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Indexes of the change log collection, including the step retention TTL, against a single-node replica set;
+ * skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = ChangeLogRepositoryTest.ChangeLogTestConfiguration.class)
+class ChangeLogRepositoryTest {
+
+    private static final String DATABASE = "change_log_test";
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl(DATABASE));
+    }
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void createsTheCollectionAndItsAppliedIndexOnce() {
+        changeLogRepository.ensureIndexes(mongoTemplate);
+        changeLogRepository.ensureIndexes(mongoTemplate);
+
+        assertTrue(mongoTemplate.collectionExists(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+        assertEquals(List.of("_id_", "appliedAt_changeUnitId_success"), indexNames());
+        assertEquals(new Document("appliedAt", 1).append("changeUnitId", 1).append("success", 1), index("appliedAt_changeUnitId_success").get("key"));
+    }
+
+    @Test
+    void createsChangesAndDropsTheStepRetentionIndex() {
+        changeLogRepository.ensureStepRetention(mongoTemplate, 30);
+        assertEquals(30L * 86_400, ((Number) index("appliedAt_ttl").get("expireAfterSeconds")).longValue());
+
+        changeLogRepository.ensureStepRetention(mongoTemplate, 7);
+        assertEquals(7L * 86_400, ((Number) index("appliedAt_ttl").get("expireAfterSeconds")).longValue());
+
+        changeLogRepository.ensureStepRetention(mongoTemplate, 0);
+        assertNull(index("appliedAt_ttl"));
+    }
+
+    private List<String> indexNames() {
+        List<String> names = new ArrayList<>();
+        mongoTemplate.getCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION).listIndexes().forEach(index -> names.add(index.getString("name")));
+        return names;
+    }
+
+    private Document index(String name) {
+        for (Document index : mongoTemplate.getCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION).listIndexes()) {
+            if (name.equals(index.getString("name"))) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import(ChangeLogRepository.class)
+    static class ChangeLogTestConfiguration {
+    }
+}
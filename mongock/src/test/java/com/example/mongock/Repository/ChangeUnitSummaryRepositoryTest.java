@@ -0,0 +1,131 @@
+package com.example.mongock.Repository;
+
+import com.example.mongock.model.ChangeLog;
+import com.example.mongock.model.ChangeUnitSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Summaries built on the server from change log entries, for one run of a unit or for a whole older change log,
+ * against a single-node replica set; skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = ChangeUnitSummaryRepositoryTest.SummaryTestConfiguration.class)
+class ChangeUnitSummaryRepositoryTest {
+
+    private static final String DATABASE = "summary_test";
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl(DATABASE));
+    }
+
+    @Autowired
+    private ChangeUnitSummaryRepository summaryRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void summarizesOnlyTheStepsOfTheCurrentRun() {
+        step("unit-1", start.minusDays(1), false, 100L);
+        step("unit-1", start, true, 3L);
+        step("unit-1", start.plusSeconds(1), false, 2L);
+        step("unit-2", start, true, 50L);
+
+        ChangeUnitSummary summary = summaryRepository.summarizeSteps(mongoTemplate, "unit-1", start);
+
+        assertEquals(2, summary.getSteps());
+        assertEquals(1, summary.getFailedSteps());
+        assertEquals(5, summary.getInsertedCount());
+    }
+
+    @Test
+    void countsAttemptsAcrossUpserts() {
+        ChangeUnitSummary summary = summaryRepository.summarizeSteps(mongoTemplate, "unit-1", start);
+        summary.setStatus(ChangeUnitSummary.FAILED);
+        summaryRepository.upsert(mongoTemplate, summary);
+        summary.setStatus(ChangeUnitSummary.APPLIED);
+        summary.setSha256("aaa");
+        summaryRepository.upsert(mongoTemplate, summary);
+
+        ChangeUnitSummary stored = summaryRepository.findAll(mongoTemplate).get("unit-1");
+
+        assertEquals(ChangeUnitSummary.APPLIED, stored.getStatus());
+        assertEquals(2, stored.getAttempts());
+        summaryRepository.adoptChecksum(mongoTemplate, "unit-1", "bbb");
+        assertEquals("aaa", summaryRepository.findAll(mongoTemplate).get("unit-1").getSha256());
+    }
+
+    @Test
+    void backfillsByTheLastEntryOfEachUnitWithoutReplacingExistingSummaries() {
+        step("unit-1", start, false, 0L);
+        step("unit-1", start.plusSeconds(1), true, 4L);
+        step("unit-2", start, true, 1L);
+        step("unit-2", start.plusSeconds(1), false, 0L);
+        ChangeUnitSummary existing = summaryRepository.summarizeSteps(mongoTemplate, "unit-2", start);
+        existing.setStatus(ChangeUnitSummary.APPLIED);
+        summaryRepository.upsert(mongoTemplate, existing);
+
+        List<ChangeUnitSummary> computed = summaryRepository.backfill(mongoTemplate, false);
+        assertEquals(2, computed.size());
+        assertEquals(1, summaryRepository.findAll(mongoTemplate).size());
+
+        summaryRepository.backfill(mongoTemplate, true);
+        Map<String, ChangeUnitSummary> summaries = summaryRepository.findAll(mongoTemplate);
+
+        assertEquals(ChangeUnitSummary.APPLIED, summaries.get("unit-1").getStatus());
+        assertEquals(4, summaries.get("unit-1").getInsertedCount());
+        assertEquals(1000L, summaries.get("unit-1").getDurationMillis());
+        assertTrue(summaries.get("unit-1").isApplied());
+        // The last unit-2 entry failed, but its existing summary wins
+        assertEquals(ChangeUnitSummary.APPLIED, summaries.get("unit-2").getStatus());
+    }
+
+    private void step(String changeUnitId, LocalDateTime appliedAt, boolean success, Long insertedCount) {
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.setChangeUnitId(changeUnitId);
+        changeLog.setOperation("INSERT");
+        changeLog.setAppliedAt(appliedAt);
+        changeLog.setSuccess(success);
+        changeLog.setInsertedCount(insertedCount);
+        mongoTemplate.insert(changeLog, ChangeLogRepository.CHANGE_LOG_COLLECTION);
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import(ChangeUnitSummaryRepository.class)
+    static class SummaryTestConfiguration {
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Which loader an NDJSON or BSON file gets, and that parallel chunks split on line boundaries hand every
+ * document to exactly one writer call. The writer is a mock that records the documents of each call.
+ */
+class BulkFileLoaderTest {
+
+    private static final int DOCUMENTS = 2_000;
+
+    @TempDir
+    Path directory;
+
+    private final ChangeUnitService changeUnitService = mock(ChangeUnitService.class);
+    private final ChangeLogService changeLogService = mock(ChangeLogService.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final List<List<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+    private BulkFileLoader bulkFileLoader;
+
+    @BeforeEach
+    void setUp() {
+        bulkFileLoader = new BulkFileLoader(changeUnitService, changeLogService, new ObjectMapper());
+        ReflectionTestUtils.setField(bulkFileLoader, "threads", 4);
+        ReflectionTestUtils.setField(bulkFileLoader, "minParallelBytes", 1L);
+        when(changeUnitService.resolveUpsertKeys(null, null)).thenReturn(null);
+        doAnswer(invocation -> {
+            Iterator<JsonNode> documents = invocation.getArgument(2);
+            List<Integer> numbers = new ArrayList<>();
+            documents.forEachRemaining(document -> numbers.add(document.get("n").asInt()));
+            calls.add(numbers);
+            return null;
+        }).when(changeUnitService).writeInsertSection(eq("unit-1"), eq("users"), any(), isNull(), eq(mongoTemplate));
+    }
+
+    @Test
+    void splitsALargeFileIntoChunksThatEachStartOnALine() throws Exception {
+        Path file = directory.resolve("users.ndjson");
+        Files.writeString(file, ndjson());
+
+        bulkFileLoader.load("unit-1", file.toString(), plan(file, FileFormat.NDJSON), mongoTemplate);
+
+        assertEquals(4, calls.size());
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> call : calls) {
+            for (int i = 1; i < call.size(); i++) {
+                assertEquals(call.get(i - 1) + 1, call.get(i), "chunks hold consecutive lines");
+            }
+            all.addAll(call);
+        }
+        Collections.sort(all);
+        assertEquals(DOCUMENTS, all.size());
+        for (int i = 0; i < DOCUMENTS; i++) {
+            assertEquals(i, all.get(i));
+        }
+    }
+
+    @Test
+    void readsASmallFileSequentially() throws Exception {
+        ReflectionTestUtils.setField(bulkFileLoader, "minParallelBytes", Long.MAX_VALUE);
+        Path file = directory.resolve("users.ndjson");
+        Files.writeString(file, ndjson());
+
+        bulkFileLoader.load("unit-1", file.toString(), plan(file, FileFormat.NDJSON), mongoTemplate);
+
+        assertEquals(1, calls.size());
+        assertEquals(DOCUMENTS, calls.get(0).size());
+    }
+
+    @Test
+    void readsACompressedFileSequentially() throws Exception {
+        Path file = directory.resolve("users.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(ndjson().getBytes(StandardCharsets.UTF_8));
+        }
+
+        bulkFileLoader.load("unit-1", file.toString(), plan(file, FileFormat.NDJSON), mongoTemplate);
+
+        assertEquals(1, calls.size());
+        assertEquals(DOCUMENTS, calls.get(0).size());
+    }
+
+    @Test
+    void insertsBsonDocumentsAsRead() throws Exception {
+        Path file = directory.resolve("users.bson");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int n = 0; n < 3; n++) {
+            RawBsonDocument document = new RawBsonDocument(new Document("n", n), new DocumentCodec());
+            bytes.write(document.getByteBuffer().array(), 0, document.getByteBuffer().remaining());
+        }
+        Files.write(file, bytes.toByteArray());
+        List<Integer> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            Iterator<RawBsonDocument> documents = invocation.getArgument(2);
+            documents.forEachRemaining(document -> inserted.add(document.getInt32("n").getValue()));
+            return null;
+        }).when(changeUnitService).insertRawDocuments(eq("unit-1"), eq("users"), any(), eq(mongoTemplate));
+
+        bulkFileLoader.load("unit-1", file.toString(), plan(file, FileFormat.BSON), mongoTemplate);
+
+        assertEquals(List.of(0, 1, 2), inserted);
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void finishesEveryChunkBeforeReportingTheFirstFailure() throws Exception {
+        Path file = directory.resolve("users.ndjson");
+        Files.writeString(file, ndjson());
+        doAnswer(invocation -> {
+            Iterator<JsonNode> documents = invocation.getArgument(2);
+            List<Integer> numbers = new ArrayList<>();
+            documents.forEachRemaining(document -> numbers.add(document.get("n").asInt()));
+            calls.add(numbers);
+            if (numbers.contains(0)) {
+                throw new IllegalStateException("first chunk failed");
+            }
+            return null;
+        }).when(changeUnitService).writeInsertSection(eq("unit-1"), eq("users"), any(), isNull(), eq(mongoTemplate));
+
+        ChangeUnitException exception = assertThrows(ChangeUnitException.class,
+                () -> bulkFileLoader.load("unit-1", file.toString(), plan(file, FileFormat.NDJSON), mongoTemplate));
+
+        assertEquals("first chunk failed", exception.getCause().getMessage());
+        assertEquals(4, calls.size());
+        verify(changeLogService).logChangeLog("unit-1", "TRANSACTION", List.of(), false, mongoTemplate);
+    }
+
+    // Lines of uneven length, some blank, and no newline after the last one
+    private static String ndjson() {
+        StringBuilder content = new StringBuilder();
+        for (int n = 0; n < DOCUMENTS; n++) {
+            content.append("{\"n\": ").append(n).append(", \"pad\": \"").append("x".repeat(n % 37)).append("\"}");
+            if (n < DOCUMENTS - 1) {
+                content.append(n % 10 == 0 ? "\n\n" : "\n");
+            }
+        }
+        return content.toString();
+    }
+
+    private static ChangeUnitPlan plan(Path file, FileFormat format) throws Exception {
+        ChangeUnitPlan plan = new ChangeUnitPlan();
+        plan.setCollectionName("users");
+        plan.setFormat(format);
+        plan.setFileSize(Files.size(file));
+        return plan;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.model.ChangeLog;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Buffering of change log entries: one insert per flush and database, background flushes of full buffers,
+ * entries kept after a failed write, and the private buffers of transactions.
+ */
+class ChangeLogWriterTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final List<List<String>> inserts = Collections.synchronizedList(new ArrayList<>());
+    private ChangeLogWriter changeLogWriter;
+
+    @BeforeEach
+    void setUp() {
+        changeLogWriter = new ChangeLogWriter(mock(MigrationMetrics.class));
+        ReflectionTestUtils.setField(changeLogWriter, "flushSize", 3);
+        ReflectionTestUtils.setField(changeLogWriter, "flushIntervalMillis", 60_000L);
+        changeLogWriter.start();
+        recordInserts(mongoTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeLogWriter.shutdown();
+    }
+
+    @Test
+    void writesBufferedEntriesWithOneInsertPerFlush() {
+        changeLogWriter.enqueue(entry("a"), mongoTemplate);
+        changeLogWriter.enqueue(entry("b"), mongoTemplate);
+
+        changeLogWriter.flush(mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+
+        assertEquals(List.of(List.of("a", "b")), inserts);
+    }
+
+    @Test
+    void flushesAFullBufferInTheBackground() {
+        changeLogWriter.enqueue(entry("a"), mongoTemplate);
+        changeLogWriter.enqueue(entry("b"), mongoTemplate);
+        changeLogWriter.enqueue(entry("c"), mongoTemplate);
+
+        verify(mongoTemplate, timeout(5_000)).insert(anyCollection(), eq(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+        assertEquals(List.of(List.of("a", "b", "c")), inserts);
+    }
+
+    @Test
+    void keepsTheEntriesTheServerDidNotStoreForTheNextFlush() {
+        changeLogWriter.enqueue(entry("a"), mongoTemplate);
+        changeLogWriter.enqueue(entry("b"), mongoTemplate);
+        MongoBulkWriteException bulkWriteException = new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)), null, new ServerAddress(), Set.of());
+        doAnswer(invocation -> {
+            throw new DuplicateKeyException("duplicate key", bulkWriteException);
+        }).when(mongoTemplate).insert(anyCollection(), eq(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+
+        assertThrows(DuplicateKeyException.class, () -> changeLogWriter.flush(mongoTemplate));
+        recordInserts(mongoTemplate);
+        changeLogWriter.enqueue(entry("c"), mongoTemplate);
+        changeLogWriter.flush(mongoTemplate);
+
+        assertEquals(List.of(List.of("b", "c")), inserts);
+    }
+
+    @Test
+    void writesTransactionEntriesOnlyThroughTheirSession() {
+        MongoTemplate sessionTemplate = mock(MongoTemplate.class);
+        recordInserts(sessionTemplate);
+        changeLogWriter.bindTransaction(sessionTemplate);
+        changeLogWriter.enqueue(entry("in-transaction"), sessionTemplate);
+
+        changeLogWriter.flushAll();
+        assertEquals(List.of(), inserts);
+
+        changeLogWriter.writeTransactionEntries(sessionTemplate);
+        changeLogWriter.unbindTransaction(sessionTemplate);
+        assertEquals(List.of(List.of("in-transaction")), inserts);
+    }
+
+    @Test
+    void writesWhatIsStillBufferedOnShutdown() {
+        changeLogWriter.enqueue(entry("a"), mongoTemplate);
+
+        changeLogWriter.shutdown();
+
+        assertEquals(List.of(List.of("a")), inserts);
+    }
+
+    private void recordInserts(MongoTemplate template) {
+        doAnswer(invocation -> {
+            Collection<ChangeLog> entries = invocation.getArgument(0);
+            inserts.add(entries.stream().map(ChangeLog::getChangeUnitId).toList());
+            return entries;
+        }).when(template).insert(anyCollection(), eq(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+    }
+
+    private static ChangeLog entry(String changeUnitId) {
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.setChangeUnitId(changeUnitId);
+        return changeLog;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.OperationType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * When a cached plan is reused and when the file is compiled again: only unchanged bytes keep a plan, whatever
+ * the modification time says, and the cache survives a restart through its file. Also the collections a plan
+ * names for scheduling, including those a transform pipeline reaches.
+ */
+class ChangeUnitPlannerTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChangeUnitPlanner planner;
+    private Path cacheFile;
+
+    @BeforeEach
+    void setUp() {
+        cacheFile = directory.resolve("cache/plan-cache.json");
+        planner = planner();
+    }
+
+    @Test
+    void reusesThePlanOfAnUnchangedFile() throws Exception {
+        String filePath = write("unit.json", "{\"collectionName\": \"users\", \"insert\": [{\"n\": 1}, {\"n\": 2}]}");
+
+        ChangeUnitPlan first = planner.getPlan(filePath);
+
+        assertSame(first, planner.getPlan(filePath));
+        assertEquals(List.of(OperationType.INSERT), first.getOperations());
+        assertEquals(2, first.getInsertCount());
+    }
+
+    @Test
+    void recompilesASameSizeEditThatKeptItsModificationTime() throws Exception {
+        String filePath = write("unit.json", "{\"collectionName\": \"users\", \"insert\": [{\"n\": 1}]}");
+        long lastModified = new File(filePath).lastModified();
+        ChangeUnitPlan first = planner.getPlan(filePath);
+
+        write("unit.json", "{\"collectionName\": \"items\", \"insert\": [{\"n\": 2}]}");
+        new File(filePath).setLastModified(lastModified);
+        ChangeUnitPlan second = planner.getPlan(filePath);
+
+        assertEquals(first.getFileSize(), second.getFileSize());
+        assertNotSame(first, second);
+        assertNotEquals(first.getSha256(), second.getSha256());
+        assertEquals("items", second.getCollectionName());
+    }
+
+    @Test
+    void keepsThePlanWhenOnlyTheModificationTimeChanged() throws Exception {
+        String filePath = write("unit.json", "{\"collectionName\": \"users\", \"delete\": {\"queries\": [{\"query\": {\"n\": 1}}]}}");
+        ChangeUnitPlan first = planner.getPlan(filePath);
+
+        new File(filePath).setLastModified(first.getLastModified() + 60_000);
+
+        assertSame(first, planner.getPlan(filePath));
+        assertEquals(new File(filePath).lastModified(), first.getLastModified());
+    }
+
+    @Test
+    void loadsSavedPlansAfterARestartAndDropsThoseOfAnOlderVersion() throws Exception {
+        String current = write("current.json", "{\"collectionName\": \"users\", \"insert\": [{\"n\": 1}]}");
+        String outdated = write("outdated.json", "{\"collectionName\": \"orders\", \"insert\": [{\"n\": 1}]}");
+        planner.getPlan(current);
+        planner.getPlan(outdated).setVersion(ChangeUnitPlanner.PLAN_VERSION - 1);
+        planner.saveCache();
+        assertTrue(Files.isRegularFile(cacheFile));
+
+        ChangeUnitPlanner restarted = planner();
+        ChangeUnitPlan reloaded = restarted.getPlan(current);
+        ChangeUnitPlan recompiled = restarted.getPlan(outdated);
+
+        assertSame(reloaded, restarted.getPlan(current));
+        assertEquals(ChangeUnitPlanner.PLAN_VERSION, recompiled.getVersion());
+        assertEquals("orders", recompiled.getCollectionName());
+    }
+
+    @Test
+    void schedulesATransformByEveryCollectionItsPipelineReadsOrWrites() throws Exception {
+        String filePath = write("transform.json", """
+                {"collectionName": "orders", "transform": {"mode": "merge", "into": "order_totals", "pipeline": [
+                  {"$lookup": {"from": "customers", "localField": "c", "foreignField": "_id", "as": "customer",
+                               "pipeline": [{"$unionWith": "archived_customers"}]}},
+                  {"$unionWith": {"coll": "orders_2023", "pipeline": [{"$lookup": {"from": "rates", "pipeline": [], "as": "r"}}]}},
+                  {"$facet": {"all": [{"$graphLookup": {"from": "regions", "startWith": "$r", "connectFromField": "p",
+                                                        "connectToField": "_id", "as": "tree"}}]}},
+                  {"$merge": {"into": "order_totals"}}
+                ]}}
+                """);
+
+        ChangeUnitPlan plan = planner.compile(filePath);
+
+        assertEquals(List.of("orders", "order_totals", "customers", "archived_customers", "orders_2023", "rates", "regions"),
+                plan.getCollections());
+        assertFalse(plan.isBarrier());
+    }
+
+    @Test
+    void schedulesATransformAsABarrierWhenAStageNamesAnotherDatabase() throws Exception {
+        String filePath = write("transform.json", """
+                {"collectionName": "orders", "transform": {"mode": "update", "pipeline": [{"$set": {"x": 1}}]}}
+                """);
+        String outFile = write("out.json", """
+                {"collectionName": "orders", "transform": {"pipeline": [{"$out": {"db": "reports", "coll": "orders"}}]}}
+                """);
+
+        assertFalse(planner.compile(filePath).isBarrier());
+        ChangeUnitPlan out = planner.compile(outFile);
+        assertTrue(out.isBarrier());
+        assertEquals(List.of("orders"), out.getCollections());
+    }
+
+    @Test
+    void schedulesARenameByBothOfItsNames() throws Exception {
+        String filePath = write("rename.json", "{\"rename\": [{\"oldCollection\": \"users\", \"newCollection\": \"people\"}]}");
+
+        ChangeUnitPlan plan = planner.compile(filePath);
+
+        assertEquals(List.of(OperationType.RENAME), plan.getOperations());
+        assertEquals(List.of("users", "people"), plan.getCollections());
+    }
+
+    private ChangeUnitPlanner planner() {
+        ChangeUnitPlanner changeUnitPlanner = new ChangeUnitPlanner(objectMapper);
+        ReflectionTestUtils.setField(changeUnitPlanner, "cacheEnabled", true);
+        ReflectionTestUtils.setField(changeUnitPlanner, "cachePath", cacheFile.toString());
+        return changeUnitPlanner;
+    }
+
+    private String write(String fileName, String content) throws Exception {
+        return Files.writeString(directory.resolve(fileName), content).toString();
+    }
+}
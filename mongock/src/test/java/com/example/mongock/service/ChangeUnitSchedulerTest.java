@@ -0,0 +1,132 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.FileMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The collection-conflict graph: units sharing a collection keep their order, the others overlap, barriers
+ * conflict with everything, and a failure skips only the units that depend on it.
+ */
+class ChangeUnitSchedulerTest {
+
+    private final List<FileMetadata> units = new ArrayList<>();
+    private final Map<String, ChangeUnitPlan> plans = new LinkedHashMap<>();
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private ChangeUnitScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ChangeUnitScheduler();
+        ReflectionTestUtils.setField(scheduler, "maxUnitsPerDatabase", 4);
+    }
+
+    @Test
+    void overlapsUnitsOnOtherCollectionsAndOrdersTheRest() throws Exception {
+        unit("a", "users");
+        unit("b", "orders");
+        unit("c", "users", "audit");
+        CountDownLatch bStarted = new CountDownLatch(1);
+
+        scheduler.run(units, plans, metadata -> {
+            events.add("start " + metadata.getChangeUnitId());
+            if (metadata.getChangeUnitId().equals("b")) {
+                bStarted.countDown();
+            }
+            if (metadata.getChangeUnitId().equals("a")) {
+                // Only returns in time if b runs alongside a
+                assertTrue(bStarted.await(5, TimeUnit.SECONDS));
+            }
+            events.add("end " + metadata.getChangeUnitId());
+        });
+
+        assertTrue(events.indexOf("end a") < events.indexOf("start c"), events.toString());
+        assertTrue(events.indexOf("start b") < events.indexOf("end a"), events.toString());
+    }
+
+    @Test
+    void barriersWaitForEveryEarlierUnitAndHoldBackEveryLaterOne() throws Exception {
+        unit("a", "users");
+        unit("b", "orders");
+        barrier("c");
+        unit("d", "audit");
+
+        scheduler.run(units, plans, metadata -> {
+            events.add("start " + metadata.getChangeUnitId());
+            Thread.sleep(20);
+            events.add("end " + metadata.getChangeUnitId());
+        });
+
+        assertTrue(events.indexOf("end a") < events.indexOf("start c"), events.toString());
+        assertTrue(events.indexOf("end b") < events.indexOf("start c"), events.toString());
+        assertTrue(events.indexOf("end c") < events.indexOf("start d"), events.toString());
+    }
+
+    @Test
+    void skipsOnlyTheDependantsOfAFailedUnit() {
+        unit("a", "users");
+        unit("b", "orders");
+        unit("c", "users");
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        Exception thrown = assertThrows(Exception.class, () -> scheduler.run(units, plans, metadata -> {
+            events.add(metadata.getChangeUnitId());
+            if (metadata.getChangeUnitId().equals("a")) {
+                throw failure;
+            }
+        }));
+
+        assertSame(failure, thrown);
+        assertTrue(events.contains("b"), events.toString());
+        assertFalse(events.contains("c"), events.toString());
+    }
+
+    @Test
+    void runsSeriallyInOrderWithASingleUnitAtATime() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "maxUnitsPerDatabase", 1);
+        unit("a", "users");
+        unit("b", "orders");
+        unit("c", "audit");
+
+        scheduler.run(units, plans, metadata -> events.add(Thread.currentThread().getName() + " " + metadata.getChangeUnitId()));
+
+        String thread = Thread.currentThread().getName();
+        assertEquals(List.of(thread + " a", thread + " b", thread + " c"), events);
+    }
+
+    private void unit(String changeUnitId, String... collections) {
+        ChangeUnitPlan plan = new ChangeUnitPlan();
+        plan.setCollections(List.of(collections));
+        add(changeUnitId, plan);
+    }
+
+    private void barrier(String changeUnitId) {
+        ChangeUnitPlan plan = new ChangeUnitPlan();
+        plan.setBarrier(true);
+        add(changeUnitId, plan);
+    }
+
+    private void add(String changeUnitId, ChangeUnitPlan plan) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setChangeUnitId(changeUnitId);
+        metadata.setFileName(changeUnitId + ".json");
+        units.add(metadata);
+        plans.put(changeUnitId, plan);
+    }
+}
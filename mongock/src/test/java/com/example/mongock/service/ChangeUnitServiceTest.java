@@ -0,0 +1,160 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeLog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * How bulk batch results add up on a change log entry, when a batch is reported as having queries that
+ * matched nothing, and how insert sections become upserts.
+ */
+class ChangeUnitServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    private PrintStream stderr;
+    private ChangeUnitService changeUnitService;
+
+    @BeforeEach
+    void setUp() {
+        stderr = System.err;
+        System.setErr(new PrintStream(errors, true));
+        changeUnitService = new ChangeUnitService(mock(ChangeLogService.class), mock(MigrationMetrics.class),
+                mock(CollectionSwapService.class), mock(MigrationThrottle.class), mock(MigrationLockService.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setErr(stderr);
+    }
+
+    @Test
+    void addsUpUpdateBatchesAndCountsUpsertsAsInserted() {
+        ChangeLog changeLog = changeLog("UPDATE");
+        changeLog.setMatchedCount(0L);
+        changeLog.setModifiedCount(0L);
+        changeLog.setInsertedCount(0L);
+
+        changeUnitService.recordBulkBatch(changeLog, 2, BulkWriteResult.acknowledged(0, 3, 0, 2, List.of(), List.of()), true);
+        changeUnitService.recordBulkBatch(changeLog, 2, BulkWriteResult.acknowledged(0, 1, 0, 1,
+                List.of(new BulkWriteUpsert(1, new BsonInt32(7))), List.of()), true);
+
+        assertEquals(List.of(2, 2), changeLog.getBatchCounts());
+        assertEquals(4L, changeLog.getMatchedCount());
+        assertEquals(3L, changeLog.getModifiedCount());
+        assertEquals(1L, changeLog.getInsertedCount());
+        assertEquals("", errors.toString());
+    }
+
+    @Test
+    void reportsAShortCompleteBatchWithItsPositionAsApproximate() {
+        ChangeLog changeLog = changeLog("DELETE");
+        changeLog.setDeletedCount(0L);
+
+        changeUnitService.recordBulkBatch(changeLog, 3, BulkWriteResult.acknowledged(0, 0, 5, 0, List.of(), List.of()), true);
+        changeUnitService.recordBulkBatch(changeLog, 3, BulkWriteResult.acknowledged(0, 0, 1, 0, List.of(), List.of()), true);
+
+        assertEquals(6L, changeLog.getDeletedCount());
+        assertTrue(errors.toString().contains("At least 2 of DELETE queries 3-5 matched no documents"), errors.toString());
+        assertTrue(errors.toString().contains("approximate"), errors.toString());
+    }
+
+    @Test
+    void doesNotReportAFailedBatchAsMatchingNothing() {
+        ChangeLog changeLog = changeLog("DELETE");
+        changeLog.setDeletedCount(0L);
+
+        changeUnitService.recordBulkBatch(changeLog, 3, BulkWriteResult.acknowledged(0, 0, 1, 0, List.of(), List.of()), false);
+
+        assertEquals(1L, changeLog.getDeletedCount());
+        assertEquals("", errors.toString());
+    }
+
+    @Test
+    void resolvesUpsertKeysFromTheChangeUnitBeforeTheInsertMode() {
+        ReflectionTestUtils.setField(changeUnitService, "insertMode", "insert");
+        assertNull(changeUnitService.resolveUpsertKeys(null, null));
+        assertEquals(List.of(), changeUnitService.resolveUpsertKeys(true, null));
+        assertEquals(List.of("sku"), changeUnitService.resolveUpsertKeys(null, List.of("sku")));
+        assertNull(changeUnitService.resolveUpsertKeys(false, List.of("sku")));
+
+        ReflectionTestUtils.setField(changeUnitService, "insertMode", "UPSERT");
+        assertEquals(List.of(), changeUnitService.resolveUpsertKeys(null, null));
+        assertNull(changeUnitService.resolveUpsertKeys(false, null));
+    }
+
+    @Test
+    void upsertsOnKeyFieldsIncludingEmbeddedOnes() throws Exception {
+        ReplaceOneModel<Document> model = upsertModel(changeUnitService.upsertModels(List.of("sku", "vendor.code")),
+                "{\"sku\": \"A-1\", \"vendor\": {\"code\": 7}, \"price\": 10}");
+
+        assertEquals(new Document("sku", "A-1").append("vendor.code", 7), model.getFilter());
+        assertTrue(model.getReplaceOptions().isUpsert());
+        assertEquals(10, model.getReplacement().get("price"));
+    }
+
+    @Test
+    void rejectsADocumentWithoutAnUpsertKey() {
+        Function<JsonNode, WriteModel<Document>> models = changeUnitService.upsertModels(List.of("sku"));
+
+        assertThrows(IllegalArgumentException.class, () -> models.apply(objectMapper.readTree("{\"price\": 10}")));
+    }
+
+    @Test
+    void derivesTheSameIdForTheSameContentInAnyFieldOrder() throws Exception {
+        ReplaceOneModel<Document> first = upsertModel(changeUnitService.upsertModels(List.of()), "{\"a\": 1, \"b\": {\"c\": 2, \"d\": 3}}");
+        ReplaceOneModel<Document> reordered = upsertModel(changeUnitService.upsertModels(List.of()), "{\"b\": {\"d\": 3, \"c\": 2}, \"a\": 1}");
+        ReplaceOneModel<Document> other = upsertModel(changeUnitService.upsertModels(List.of()), "{\"a\": 2}");
+
+        assertEquals(first.getFilter(), reordered.getFilter());
+        assertEquals(new Document("_id", first.getReplacement().get("_id")), first.getFilter());
+        assertNotEquals(first.getFilter(), other.getFilter());
+    }
+
+    @Test
+    void keepsAGivenIdAndRejectsIdenticalDocumentsWithoutOne() throws Exception {
+        Function<JsonNode, WriteModel<Document>> models = changeUnitService.upsertModels(List.of());
+
+        assertEquals(new Document("_id", "x"), upsertModel(models, "{\"_id\": \"x\", \"a\": 1}").getFilter());
+        assertEquals(new Document("_id", "x"), upsertModel(models, "{\"_id\": \"x\", \"a\": 1}").getFilter());
+        upsertModel(models, "{\"a\": 1}");
+        assertThrows(IllegalArgumentException.class, () -> models.apply(objectMapper.readTree("{\"a\": 1}")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReplaceOneModel<Document> upsertModel(Function<JsonNode, WriteModel<Document>> models, String json) throws Exception {
+        return (ReplaceOneModel<Document>) models.apply(objectMapper.readTree(json));
+    }
+
+    private static ChangeLog changeLog(String operation) {
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.setChangeUnitId("unit-1");
+        changeLog.setOperation(operation);
+        changeLog.setCollectionNames(List.of("users"));
+        changeLog.setBatchCounts(new ArrayList<>());
+        return changeLog;
+    }
+}
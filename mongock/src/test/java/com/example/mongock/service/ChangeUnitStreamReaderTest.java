@@ -0,0 +1,263 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeUnitCheckpointRepository;
+import com.example.mongock.model.ChangeUnitCheckpoint;
+import com.example.mongock.model.ChangeUnitPlan;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * The streaming reader: sections handed to the writers in order, however the file lists them, and checkpoint
+ * handling (where a resumed unit starts, which checkpoints are trusted, and that a finished unit leaves none behind).
+ * Writers are mocks that record the elements they are handed.
+ */
+class ChangeUnitStreamReaderTest {
+
+    private static final String UNIT = "unit-1";
+    private static final String FILE = """
+            {
+              "collectionName": "users",
+              "insert": [{"_id": 1, "n": 1}, {"n": 2}, {"_id": 3, "n": 3}, {"n": 4}, {"_id": 5, "n": 5}],
+              "update": {"queries": [
+                {"query": {"n": 1}, "update": {"$set": {"x": 1}}},
+                {"query": {"n": 2}, "update": {"$set": {"x": 2}}},
+                {"query": {"n": 3}, "update": {"$set": {"x": 3}}}
+              ]},
+              "delete": {"queries": [{"query": {"n": 4}}, {"query": {"n": 5}}]}
+            }
+            """;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChangeUnitService changeUnitService = mock(ChangeUnitService.class);
+    private final ChangeUnitCheckpointRepository checkpointRepository = mock(ChangeUnitCheckpointRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final Map<String, List<JsonNode>> written = new LinkedHashMap<>();
+    private final List<List<String>> insertUpsertKeys = new ArrayList<>();
+
+    private ChangeUnitStreamReader streamReader;
+    private String filePath;
+    private ChangeUnitPlan plan;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        filePath = Files.writeString(directory.resolve("unit.json"), FILE).toString();
+        plan = new ChangeUnitPlanner(objectMapper).compile(filePath);
+
+        streamReader = new ChangeUnitStreamReader(changeUnitService, mock(ChangeLogService.class), mock(ChangeUnitTransactionService.class),
+                checkpointRepository, mock(ReactiveChangeUnitEngine.class), objectMapper);
+        ReflectionTestUtils.setField(streamReader, "checkpointsEnabled", true);
+        ReflectionTestUtils.setField(streamReader, "checkpointInterval", 2);
+
+        // Plain inserts, as with mongock.insert.mode=insert
+        when(changeUnitService.resolveUpsertKeys(any(), any())).thenReturn(null);
+        doAnswer(invocation -> {
+            insertUpsertKeys.add(invocation.getArgument(3));
+            return record("insert", invocation.getArgument(2));
+        }).when(changeUnitService).writeInsertSection(eq(UNIT), eq("users"), any(), any(), any());
+        doAnswer(invocation -> record("update", invocation.getArgument(2)))
+                .when(changeUnitService).applyUpdateQueries(eq(UNIT), eq("users"), any(), anyBoolean(), any());
+        doAnswer(invocation -> record("delete", invocation.getArgument(2)))
+                .when(changeUnitService).applyDeleteQueries(eq(UNIT), eq("users"), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void resumesInsideTheCheckpointedSection() {
+        when(checkpointRepository.find(mongoTemplate, UNIT)).thenReturn(checkpoint(plan.getSha256(), "insert", 3));
+
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        assertEquals(List.of(4, 5), numbers("insert"));
+        assertEquals(3, written.get("update").size());
+        assertEquals(2, written.get("delete").size());
+    }
+
+    @Test
+    void skipsSectionsBeforeTheCheckpoint() {
+        when(checkpointRepository.find(mongoTemplate, UNIT)).thenReturn(checkpoint(plan.getSha256(), "update", 1));
+
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        assertEquals(List.of("update", "delete"), List.copyOf(written.keySet()));
+        assertEquals(List.of(2, 3), written.get("update").stream().map(query -> query.at("/query/n").asInt()).toList());
+        assertEquals(2, written.get("delete").size());
+    }
+
+    @Test
+    void discardsACheckpointOfAnotherFileVersion() {
+        when(checkpointRepository.find(mongoTemplate, UNIT)).thenReturn(checkpoint("0".repeat(64), "delete", 1));
+
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), numbers("insert"));
+        assertEquals(3, written.get("update").size());
+        assertEquals(2, written.get("delete").size());
+        // Once when the stale checkpoint is discarded, once when the unit completes
+        verify(checkpointRepository, times(2)).delete(mongoTemplate, UNIT);
+    }
+
+    @Test
+    void savesProgressAndDeletesTheCheckpointOnCompletion() {
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        ArgumentCaptor<ChangeUnitCheckpoint> saved = ArgumentCaptor.forClass(ChangeUnitCheckpoint.class);
+        verify(checkpointRepository, times(6)).save(eq(mongoTemplate), saved.capture());
+        assertEquals(List.of("insert:2", "insert:4", "insert:5", "update:2", "update:3", "delete:2"), positions(saved.getAllValues()));
+        saved.getAllValues().forEach(checkpoint -> assertEquals(plan.getSha256(), checkpoint.getSha256()));
+        verify(checkpointRepository).delete(mongoTemplate, UNIT);
+    }
+
+    @Test
+    void replaysThePartlyWrittenChunkAsUpsertsWithTheSameIds() {
+        // The second chunk fails after its writer has taken (and possibly written) its documents
+        AtomicBoolean failing = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            insertUpsertKeys.add(invocation.getArgument(3));
+            record("insert", invocation.getArgument(2));
+            if (failing.get() && insertUpsertKeys.size() == 2) {
+                throw new IllegalStateException("insertMany failed after a partial write");
+            }
+            return null;
+        }).when(changeUnitService).writeInsertSection(eq(UNIT), eq("users"), any(), any(), any());
+        assertThrows(ChangeUnitException.class, () -> streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate));
+        List<JsonNode> failedChunk = List.copyOf(written.get("insert").subList(2, 4));
+
+        ArgumentCaptor<ChangeUnitCheckpoint> saved = ArgumentCaptor.forClass(ChangeUnitCheckpoint.class);
+        verify(checkpointRepository).save(eq(mongoTemplate), saved.capture());
+        assertEquals(List.of("insert:2"), positions(saved.getAllValues()));
+
+        written.clear();
+        insertUpsertKeys.clear();
+        failing.set(false);
+        when(checkpointRepository.find(mongoTemplate, UNIT)).thenReturn(saved.getValue());
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        // The resumed chunk is upserted on _id, with the ids the failed run gave its documents; later chunks insert
+        assertEquals(failedChunk, written.get("insert").subList(0, 2));
+        assertEquals(Arrays.asList(List.of(), null), insertUpsertKeys);
+        assertEquals(List.of(3, 4, 5), numbers("insert"));
+    }
+
+    @Test
+    void derivesTheSameIdsForDocumentsWithoutOneOnEveryRun() {
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+        List<JsonNode> firstRun = List.copyOf(written.get("insert"));
+        written.clear();
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        assertEquals(firstRun, written.get("insert"));
+        assertEquals(1, firstRun.get(0).get("_id").asInt());
+        assertTrue(firstRun.get(1).path("_id").has("$oid"));
+        assertNotEquals(firstRun.get(1).get("_id"), firstRun.get(3).get("_id"));
+        // Only the first chunk of a run is written as upserts
+        assertEquals(Arrays.asList(List.of(), null, null, List.of(), null, null), insertUpsertKeys);
+    }
+
+    @Test
+    void keepsTheCheckpointWhenAWriteFails() {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("write failed");
+        }).when(changeUnitService).applyDeleteQueries(eq(UNIT), eq("users"), any(), anyBoolean(), any());
+
+        assertThrows(ChangeUnitException.class, () -> streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate));
+
+        // The insert and update progress stays for the rerun
+        verify(checkpointRepository, never()).delete(mongoTemplate, UNIT);
+    }
+
+    @Test
+    void streamsEverySectionWithoutCheckpoints() {
+        ReflectionTestUtils.setField(streamReader, "checkpointsEnabled", false);
+
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate);
+
+        assertEquals(List.of("insert", "update", "delete"), List.copyOf(written.keySet()));
+        assertEquals(List.of(1, 2, 3, 4, 5), numbers("insert"));
+        assertFalse(written.get("insert").get(1).has("_id"));
+        assertEquals(Arrays.asList((Object) null), insertUpsertKeys);
+        verifyNoInteractions(checkpointRepository);
+    }
+
+    @Test
+    void appliesSectionsListedOutOfOrderInExtraPassesAndBuildsIndexesBeforeTheFirstQuery() throws Exception {
+        ReflectionTestUtils.setField(streamReader, "checkpointsEnabled", false);
+        filePath = Files.writeString(directory.resolve("reordered.json"), """
+                {
+                  "delete": {"queries": [{"query": {"n": 2}}]},
+                  "insert": [{"n": 1}, {"n": 2}],
+                  "collectionName": "users",
+                  "update": {"queries": [{"query": {"n": 1}, "update": {"$set": {"x": 1}}}]}
+                }
+                """).toString();
+        plan = new ChangeUnitPlanner(objectMapper).compile(filePath);
+        TemporaryIndexes temporaryIndexes = mock(TemporaryIndexes.class);
+        List<String> order = new ArrayList<>();
+        doAnswer(invocation -> order.add("indexes")).when(temporaryIndexes).ensureBuilt();
+        doAnswer(invocation -> {
+            order.add("insert");
+            return record("insert", invocation.getArgument(2));
+        }).when(changeUnitService).writeInsertSection(eq(UNIT), eq("users"), any(), any(), any());
+
+        streamReader.processCollectionData(UNIT, filePath, plan, mongoTemplate, temporaryIndexes);
+
+        assertEquals(List.of("insert", "update", "delete"), List.copyOf(written.keySet()));
+        assertEquals(List.of("insert", "indexes", "indexes"), order);
+    }
+
+    private Object record(String section, Iterator<JsonNode> elements) {
+        List<JsonNode> sectionElements = written.computeIfAbsent(section, key -> new ArrayList<>());
+        elements.forEachRemaining(sectionElements::add);
+        return null;
+    }
+
+    private List<Integer> numbers(String section) {
+        return written.get(section).stream().map(document -> document.get("n").asInt()).toList();
+    }
+
+    private static List<String> positions(List<ChangeUnitCheckpoint> checkpoints) {
+        return checkpoints.stream().map(checkpoint -> checkpoint.getSection() + ":" + checkpoint.getPosition()).toList();
+    }
+
+    private static ChangeUnitCheckpoint checkpoint(String sha256, String section, long position) {
+        ChangeUnitCheckpoint checkpoint = new ChangeUnitCheckpoint();
+        checkpoint.setChangeUnitId(UNIT);
+        checkpoint.setSha256(sha256);
+        checkpoint.setSection(section);
+        checkpoint.setPosition(position);
+        return checkpoint;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.Repository.ChangeUnitSummaryRepository;
+import com.example.mongock.model.ChangeUnitPlan;
+import com.example.mongock.model.ChangeUnitSummary;
+import com.example.mongock.model.FileMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Whether a unit still has to run according to its summary, under each {@code mongock.changelog.checksum-mismatch}
+ * setting, and what a finished run records.
+ */
+class ChangeUnitSummaryServiceTest {
+
+    private final ChangeUnitSummaryRepository summaryRepository = mock(ChangeUnitSummaryRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final List<String> mismatches = new ArrayList<>();
+    private ChangeUnitSummaryService summaryService;
+    private FileMetadata metadata;
+
+    @BeforeEach
+    void setUp() {
+        summaryService = new ChangeUnitSummaryService(summaryRepository, mock(ChangeLogRepository.class));
+        ReflectionTestUtils.setField(summaryService, "checksumMismatch", "fail");
+        metadata = new FileMetadata();
+        metadata.setChangeUnitId("unit-1");
+        metadata.setFileName("unit-1.json");
+    }
+
+    @Test
+    void runsUnitsWithoutASuccessfulSummary() {
+        assertFalse(summaryService.isApplied(metadata, plan("aaa"), null, mismatches));
+        assertFalse(summaryService.isApplied(metadata, plan("aaa"), summary(ChangeUnitSummary.FAILED, "aaa"), mismatches));
+        assertTrue(mismatches.isEmpty());
+    }
+
+    @Test
+    void skipsAnAppliedUnitWithTheSameChecksumOrNoneRecorded() {
+        assertTrue(summaryService.isApplied(metadata, plan("aaa"), summary(ChangeUnitSummary.APPLIED, "aaa"), mismatches));
+        assertTrue(summaryService.isApplied(metadata, plan("aaa"), summary(ChangeUnitSummary.APPLIED, null), mismatches));
+        assertTrue(mismatches.isEmpty());
+    }
+
+    @Test
+    void collectsAChangedFileForTheCallerToFailOn() {
+        assertTrue(summaryService.isApplied(metadata, plan("bbb"), summary(ChangeUnitSummary.APPLIED, "aaa"), mismatches));
+
+        assertEquals(1, mismatches.size());
+        assertTrue(mismatches.get(0).contains("unit-1.json (sha256 aaa, now bbb)"), mismatches.get(0));
+    }
+
+    @Test
+    void skipsAChangedFileWithAWarning() {
+        ReflectionTestUtils.setField(summaryService, "checksumMismatch", "warn");
+
+        assertTrue(summaryService.isApplied(metadata, plan("bbb"), summary(ChangeUnitSummary.APPLIED, "aaa"), mismatches));
+        assertTrue(mismatches.isEmpty());
+    }
+
+    @Test
+    void runsAChangedFileAgain() {
+        ReflectionTestUtils.setField(summaryService, "checksumMismatch", "RERUN");
+
+        assertFalse(summaryService.isApplied(metadata, plan("bbb"), summary(ChangeUnitSummary.APPLIED, "aaa"), mismatches));
+        assertTrue(mismatches.isEmpty());
+    }
+
+    @Test
+    void adoptsAChecksumOnlyWhereNoneIsRecorded() {
+        summaryService.adoptChecksum(mongoTemplate, summary(ChangeUnitSummary.APPLIED, null), plan("ccc"));
+        summaryService.adoptChecksum(mongoTemplate, summary(ChangeUnitSummary.APPLIED, "aaa"), plan("ccc"));
+        summaryService.adoptChecksum(mongoTemplate, null, plan("ccc"));
+
+        verify(summaryRepository).adoptChecksum(mongoTemplate, "unit-1", "ccc");
+        verify(summaryRepository, never()).adoptChecksum(any(), any(), eq("aaa"));
+    }
+
+    @Test
+    void recordsAFailedStepAsAFailedUnit() {
+        ChangeUnitSummary steps = summary(null, null);
+        steps.setFailedSteps(1);
+        when(summaryRepository.summarizeSteps(eq(mongoTemplate), eq("unit-1"), any())).thenReturn(steps);
+        ArgumentCaptor<ChangeUnitSummary> saved = ArgumentCaptor.forClass(ChangeUnitSummary.class);
+
+        summaryService.record(metadata, plan("aaa"), LocalDateTime.now(), System.nanoTime(), null, mongoTemplate);
+
+        verify(summaryRepository).upsert(eq(mongoTemplate), saved.capture());
+        assertEquals(ChangeUnitSummary.FAILED, saved.getValue().getStatus());
+        assertEquals("aaa", saved.getValue().getSha256());
+        assertNull(saved.getValue().getError());
+    }
+
+    @Test
+    void throwsWhenTheSummaryCannotBeSaved() {
+        when(summaryRepository.summarizeSteps(eq(mongoTemplate), eq("unit-1"), any())).thenReturn(summary(null, null));
+        doThrow(new DataAccessResourceFailureException("down")).when(summaryRepository).upsert(any(), any());
+
+        assertThrows(DataAccessResourceFailureException.class,
+                () -> summaryService.record(metadata, plan("aaa"), LocalDateTime.now(), System.nanoTime(), null, mongoTemplate));
+    }
+
+    private static ChangeUnitPlan plan(String sha256) {
+        ChangeUnitPlan plan = new ChangeUnitPlan();
+        plan.setSha256(sha256);
+        return plan;
+    }
+
+    private static ChangeUnitSummary summary(String status, String sha256) {
+        ChangeUnitSummary summary = new ChangeUnitSummary();
+        summary.setChangeUnitId("unit-1");
+        summary.setStatus(status);
+        summary.setSha256(sha256);
+        return summary;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs transactions against a single-node replica set; skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = ChangeUnitTransactionServiceTest.TransactionTestConfiguration.class,
+        properties = "mongock.transaction.enabled=true")
+class ChangeUnitTransactionServiceTest {
+
+    private static final String DATABASE = "transaction_test";
+    private static final String COLLECTION = "users";
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl(DATABASE));
+    }
+
+    @Autowired
+    private ChangeUnitTransactionService transactionService;
+
+    @Autowired
+    private ChangeUnitService changeUnitService;
+
+    @Autowired
+    private MigrationClientProfile migrationClientProfile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = migrationClientProfile.template(DATABASE);
+        mongoTemplate.getDb().drop();
+        // Created up front so the transactions only write documents
+        mongoTemplate.createCollection(COLLECTION);
+        mongoTemplate.createCollection(ChangeLogRepository.CHANGE_LOG_COLLECTION);
+    }
+
+    @Test
+    void commitsWritesWithTheirChangeLogEntries() throws Exception {
+        JsonNode documents = objectMapper.readTree("[{\"_id\": 1, \"name\": \"a\"}, {\"_id\": 2, \"name\": \"b\"}]");
+
+        transactionService.runInTransaction(mongoTemplate, sessionTemplate -> insert("commit", documents.elements(), sessionTemplate));
+
+        assertEquals(2, count(COLLECTION));
+        assertEquals(1, count(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+    }
+
+    @Test
+    void abortsWritesAndChangeLogEntriesOnFailure() throws Exception {
+        JsonNode documents = objectMapper.readTree("[{\"_id\": 1, \"name\": \"a\"}]");
+
+        assertThrows(IllegalStateException.class, () -> transactionService.runInTransaction(mongoTemplate, sessionTemplate -> {
+            insert("abort", documents.elements(), sessionTemplate);
+            throw new IllegalStateException("step failed");
+        }));
+
+        assertEquals(0, count(COLLECTION));
+        assertEquals(0, count(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+    }
+
+    @Test
+    void retriesTransientTransactionErrors() throws Exception {
+        JsonNode documents = objectMapper.readTree("[{\"_id\": 1, \"name\": \"a\"}]");
+        AtomicInteger attempts = new AtomicInteger();
+
+        transactionService.runInTransaction(mongoTemplate, sessionTemplate -> {
+            insert("retry", documents.elements(), sessionTemplate);
+            if (attempts.incrementAndGet() == 1) {
+                MongoException transientError = new MongoException(112, "WriteConflict");
+                transientError.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+                throw transientError;
+            }
+        });
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, count(COLLECTION));
+        assertEquals(1, count(ChangeLogRepository.CHANGE_LOG_COLLECTION));
+    }
+
+    private void insert(String changeUnitId, Iterator<JsonNode> documents, MongoTemplate sessionTemplate) {
+        changeUnitService.writeInsertSection(changeUnitId, COLLECTION, documents, null, sessionTemplate);
+    }
+
+    private long count(String collectionName) {
+        return mongoTemplate.getCollection(collectionName).countDocuments(new Document());
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import({ChangeUnitTransactionService.class, ChangeUnitService.class, ChangeLogService.class, ChangeLogWriter.class,
+            ChangeLogRepository.class, MigrationClientProfile.class, MigrationMetrics.class, MigrationThrottle.class,
+            MigrationLockService.class, MigrationLockRepository.class, CollectionSwapService.class})
+    static class TransactionTestConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ValidationReport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pre-flight validation of a mapping: mapping and schema problems of pending units fail it, the same problems of
+ * applied units are only warnings, and the plans compiled on the way are kept for the run.
+ */
+class ChangeUnitValidatorTest {
+
+    private static final String VALID = "{\"collectionName\": \"users\", \"insert\": [{\"n\": 1}]}";
+    private static final String BAD_UPDATE = "{\"collectionName\": \"users\", \"update\": {\"queries\": [{\"query\": {}, \"update\": {\"$sett\": {\"a\": 1}}}]}}";
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChangeUnitValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        validator = new ChangeUnitValidator(new ChangeUnitPlanner(objectMapper));
+        ReflectionTestUtils.setField(validator, "threads", 2);
+    }
+
+    @Test
+    void keepsThePlansOfAValidMapping() throws Exception {
+        String file = write("001.json", VALID);
+
+        ValidationReport report = validator.validate(mapping("{\"shop\": [{\"changeUnitId\": \"001\", \"fileName\": \"" + file + "\"}]}"), Map.of());
+
+        assertTrue(report.isValid(), report.getProblems().toString());
+        assertNotNull(report.getPlan("shop", "001"));
+        assertEquals("users", report.getPlan("shop", "001").getCollectionName());
+    }
+
+    @Test
+    void reportsMappingProblemsOfPendingUnits() throws Exception {
+        String file = write("001.json", VALID);
+
+        ValidationReport report = validator.validate(mapping("{\"shop\": ["
+                + "{\"fileName\": \"" + file + "\"},"
+                + "{\"changeUnitId\": \"001\", \"fileName\": \"" + file + "\"},"
+                + "{\"changeUnitId\": \"001\", \"fileName\": \"" + file + "\"},"
+                + "{\"changeUnitId\": \"002\"},"
+                + "{\"changeUnitId\": \"003\", \"fileName\": \"" + directory.resolve("missing.json") + "\"}],"
+                + "\"billing\": {}}"), Map.of());
+
+        assertFalse(report.isValid());
+        assertEquals(5, report.getProblems().size(), report.getProblems().toString());
+        assertTrue(report.getProblems().contains("shop[0]: missing 'changeUnitId'"));
+        assertTrue(report.getProblems().contains("billing: must be an array of change units"));
+        assertTrue(report.getProblems().stream().anyMatch(problem -> problem.contains("duplicate changeUnitId in shop")));
+        assertTrue(report.getProblems().stream().anyMatch(problem -> problem.startsWith("shop / 002") && problem.endsWith("missing 'fileName'")));
+        assertTrue(report.getProblems().stream().anyMatch(problem -> problem.startsWith("shop / 003") && problem.endsWith("file not found")));
+    }
+
+    @Test
+    void failsOnSchemaProblemsOfAPendingUnit() throws Exception {
+        String file = write("001.json", BAD_UPDATE);
+
+        ValidationReport report = validator.validate(mapping("{\"shop\": [{\"changeUnitId\": \"001\", \"fileName\": \"" + file + "\"}]}"), Map.of());
+
+        assertFalse(report.isValid());
+        assertTrue(report.getProblems().get(0).contains("unknown update operator '$sett'"), report.getProblems().toString());
+    }
+
+    @Test
+    void onlyWarnsAboutUnitsAlreadyAppliedInThatDatabase() throws Exception {
+        String bad = write("001.json", BAD_UPDATE);
+        String pruned = directory.resolve("pruned.json").toString();
+
+        ValidationReport report = validator.validate(mapping("{"
+                + "\"shop\": [{\"changeUnitId\": \"001\", \"fileName\": \"" + bad + "\"}, {\"changeUnitId\": \"002\", \"fileName\": \"" + pruned + "\"}],"
+                + "\"billing\": [{\"changeUnitId\": \"001\", \"fileName\": \"" + bad + "\"}]}"),
+                Map.of("shop", Set.of("001", "002")));
+
+        assertEquals(2, report.getWarnings().size(), report.getWarnings().toString());
+        assertTrue(report.getWarnings().stream().allMatch(warning -> warning.startsWith("shop / ") && warning.endsWith("(already applied, not run again)")));
+        assertEquals(1, report.getProblems().size(), report.getProblems().toString());
+        assertTrue(report.getProblems().get(0).startsWith("billing / 001"));
+    }
+
+    @Test
+    void rejectsAMappingThatIsNotAnObject() throws Exception {
+        ValidationReport report = validator.validate(mapping("[]"), Map.of());
+
+        assertEquals(List.of("mapping file: must be an object of database names to change unit lists"), report.getProblems());
+    }
+
+    private JsonNode mapping(String json) throws Exception {
+        return objectMapper.readTree(json);
+    }
+
+    private String write(String name, String content) throws Exception {
+        Path file = directory.resolve(name);
+        Files.writeString(file, content);
+        return file.toString();
+    }
+}
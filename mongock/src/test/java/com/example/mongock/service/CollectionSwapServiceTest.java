@@ -0,0 +1,176 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.MigrationLockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copy-and-swap renames and background drops against a single-node replica set, and how the next run finishes
+ * or undoes what an interrupted one left renamed aside; skipped when Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = CollectionSwapServiceTest.SwapTestConfiguration.class,
+        properties = {"mongock.swap.enabled=true", "mongock.swap.min-documents=1", "mongock.swap.partitions=4",
+                "mongock.insert.batch-size=100"})
+class CollectionSwapServiceTest {
+
+    private static final String DATABASE = "swap_test";
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl(DATABASE));
+    }
+
+    @Autowired
+    private CollectionSwapService collectionSwapService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void swapsACopyWithItsIndexesInUnderTheNewName() throws Exception {
+        insertUsers(1_000);
+        mongoTemplate.getCollection("users").createIndex(new Document("name", 1));
+
+        long copied = collectionSwapService.copyAndSwap("rename-users", "users", "people", mongoTemplate);
+
+        assertEquals(1_000, copied);
+        assertEquals(1_000, mongoTemplate.getCollection("people").countDocuments());
+        assertFalse(collectionNames().contains("users"));
+        assertTrue(indexNames("people").contains("name_1"));
+        awaitTrue(() -> collectionNames().stream().noneMatch(name -> name.contains(".mongock_")) && pendingDrops() == 0);
+    }
+
+    @Test
+    void refusesToSwapOntoAnExistingCollection() {
+        insertUsers(10);
+        mongoTemplate.createCollection("people");
+
+        assertThrows(IllegalStateException.class, () -> collectionSwapService.copyAndSwap("rename-users", "users", "people", mongoTemplate));
+
+        assertEquals(10, mongoTemplate.getCollection("users").countDocuments());
+        assertEquals(0, pendingDrops());
+    }
+
+    @Test
+    void dropsInTheBackgroundAndForgetsTheDrop() {
+        insertUsers(10);
+
+        collectionSwapService.dropInBackground("users", mongoTemplate);
+
+        assertFalse(collectionNames().contains("users"));
+        awaitTrue(() -> collectionNames().stream().noneMatch(name -> name.startsWith("users.")) && pendingDrops() == 0);
+    }
+
+    @Test
+    void restoresTheSourceOfASwapInterruptedBeforeItsCopyWasRenamedIn() {
+        String asideName = "users.mongock_dropped_1";
+        mongoTemplate.getCollection(asideName).insertOne(new Document("_id", 1));
+        mongoTemplate.getCollection(asideName).insertOne(new Document("_id", 2));
+        pendingDrop(asideName, "users", "people");
+
+        collectionSwapService.resumePendingDrops(mongoTemplate);
+
+        assertEquals(2, mongoTemplate.getCollection("users").countDocuments());
+        assertFalse(collectionNames().contains(asideName));
+        assertEquals(0, pendingDrops());
+    }
+
+    @Test
+    void dropsWhatAFinishedSwapOrDropLeftAside() {
+        mongoTemplate.getCollection("people").insertOne(new Document("_id", 1));
+        mongoTemplate.getCollection("users.mongock_dropped_1").insertOne(new Document("_id", 1));
+        mongoTemplate.getCollection("orders.mongock_dropped_2").insertOne(new Document("_id", 1));
+        pendingDrop("users.mongock_dropped_1", "users", "people");
+        pendingDrop("orders.mongock_dropped_2", "orders", null);
+
+        collectionSwapService.resumePendingDrops(mongoTemplate);
+
+        assertEquals(List.of("people"), collectionNames().stream().filter(name -> !name.startsWith("change_log")).toList());
+        assertEquals(0, pendingDrops());
+    }
+
+    private void insertUsers(int count) {
+        List<Document> users = IntStream.range(0, count).mapToObj(i -> new Document("_id", i).append("name", "user-" + i)).toList();
+        mongoTemplate.getCollection("users").insertMany(users);
+    }
+
+    private void pendingDrop(String asideName, String source, String target) {
+        mongoTemplate.getCollection(CollectionSwapService.PENDING_DROPS_COLLECTION)
+                .insertOne(new Document("_id", asideName).append("source", source).append("target", target));
+    }
+
+    private long pendingDrops() {
+        return mongoTemplate.getCollection(CollectionSwapService.PENDING_DROPS_COLLECTION).countDocuments();
+    }
+
+    private List<String> collectionNames() {
+        return mongoTemplate.getDb().listCollectionNames().into(new ArrayList<>());
+    }
+
+    private List<String> indexNames(String collectionName) {
+        List<String> names = new ArrayList<>();
+        mongoTemplate.getCollection(collectionName).listIndexes().forEach(index -> names.add(index.getString("name")));
+        return names;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 10 s");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import({CollectionSwapService.class, MigrationMetrics.class, MigrationThrottle.class, MigrationClientProfile.class,
+            MigrationLockService.class, MigrationLockRepository.class})
+    static class SwapTestConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.FileMetadata;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dry-run estimates: inserts measured in BSON bytes for every file format, update/delete queries classified from
+ * their explain output, the per-unit explain cap, and that estimating reads the collection without writing to it.
+ * Explains come from a mocked collection.
+ */
+class DryRunPlannerTest {
+
+    private static final Document INDEX_SCAN = explain(new Document("stage", "FETCH").append("inputStage", new Document("stage", "IXSCAN")), 1, 1);
+    private static final Document COLLECTION_SCAN = explain(new Document("stage", "COLLSCAN"), 500, 1);
+    private static final Document NOTHING_MATCHED = explain(new Document("stage", "COLLSCAN"), 500, 0);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private DryRunPlanner dryRunPlanner;
+
+    @BeforeEach
+    void setUp() {
+        dryRunPlanner = new DryRunPlanner(new ChangeUnitPlanner(objectMapper), objectMapper);
+        ReflectionTestUtils.setField(dryRunPlanner, "maxExplainsPerUnit", 100);
+        when(mongoTemplate.getCollection("users")).thenReturn(collection);
+        explains(new Document("email", "a@example.com"), INDEX_SCAN);
+        explains(new Document("name", "Ann"), COLLECTION_SCAN);
+        explains(new Document("name", "Nobody"), NOTHING_MATCHED);
+    }
+
+    @Test
+    void measuresInsertsAndExplainsQueriesWithoutWriting() throws Exception {
+        String file = write("unit.json", """
+                {
+                  "collectionName": "users",
+                  "insert": [{"name": "Ann"}, {"name": "Bob", "age": 40}],
+                  "update": {"queries": [
+                    {"query": {"email": "a@example.com"}, "update": {"$set": {"active": true}}},
+                    {"query": {"name": "Ann"}, "update": {"$set": {"active": true}}}
+                  ]},
+                  "delete": {"queries": [{"query": {"name": "Nobody"}}]}
+                }
+                """);
+
+        Map<String, Object> report = dryRunPlanner.estimateDatabase("shop", List.of(metadata(file, null)), mongoTemplate);
+
+        Map<String, Long> totals = totals(report);
+        assertEquals(2L, totals.get("insertDocuments"));
+        assertEquals(bsonSize("{\"name\": \"Ann\"}") + bsonSize("{\"name\": \"Bob\", \"age\": 40}"), totals.get("insertBytes"));
+        assertEquals(1001L, totals.get("docsExamined"));
+        assertEquals(2L, totals.get("collectionScans"));
+
+        Map<String, Object> update = section(report, "update");
+        assertEquals(2L, update.get("queries"));
+        assertEquals(1L, update.get("collectionScans"));
+        assertEquals(2L, update.get("estimatedDocsAffected"));
+        assertEquals(List.of(), update.get("queriesMatchingNothing"));
+        Map<String, Object> delete = section(report, "delete");
+        assertEquals(List.of("{\"name\":\"Nobody\"}"), delete.get("queriesMatchingNothing"));
+
+        verify(collection, times(3)).find(any(Bson.class));
+        verifyNoMoreInteractions(collection);
+    }
+
+    @Test
+    void countsEveryQueryButExplainsOnlyUpToTheCap() throws Exception {
+        ReflectionTestUtils.setField(dryRunPlanner, "maxExplainsPerUnit", 1);
+        String file = write("unit.json", """
+                {"collectionName": "users", "delete": {"queries": [
+                  {"query": {"email": "a@example.com"}}, {"query": {"name": "Ann"}}, {"query": {"name": "Nobody"}}
+                ]}}
+                """);
+
+        Map<String, Object> delete = section(dryRunPlanner.estimateDatabase("shop", List.of(metadata(file, null)), mongoTemplate), "delete");
+
+        assertEquals(3L, delete.get("queries"));
+        assertEquals(1, delete.get("explained"));
+        verify(collection, times(1)).find(any(Bson.class));
+    }
+
+    @Test
+    void measuresNdjsonAndBsonFilesForTheMappedCollectionWithoutATransform() throws Exception {
+        String ndjson = write("users.ndjson", "{\"name\": \"Ann\"}\n\n{\"name\": \"Bob\", \"age\": 40}\n");
+        ByteArrayOutputStream bson = new ByteArrayOutputStream();
+        for (String json : List.of("{\"name\": \"Ann\"}", "{\"name\": \"Cy\", \"tags\": [1, 2]}")) {
+            RawBsonDocument document = new RawBsonDocument(Document.parse(json), new DocumentCodec());
+            bson.write(document.getByteBuffer().array(), 0, document.getByteBuffer().remaining());
+        }
+        Path bsonFile = directory.resolve("users.bson");
+        Files.write(bsonFile, bson.toByteArray());
+
+        Map<String, Object> report = dryRunPlanner.estimateDatabase("shop",
+                List.of(metadata(ndjson, "users"), metadata(bsonFile.toString(), "users")), mongoTemplate);
+
+        assertEquals(4L, totals(report).get("insertDocuments"));
+        assertFalse(totals(report).containsKey("transformDocuments"));
+        assertEquals(bsonSize("{\"name\": \"Ann\"}") * 2 + bsonSize("{\"name\": \"Bob\", \"age\": 40}")
+                + bsonSize("{\"name\": \"Cy\", \"tags\": [1, 2]}"), totals(report).get("insertBytes"));
+        verifyNoMoreInteractions(collection);
+    }
+
+    @Test
+    void estimatesATransformFromTheCollectionSize() throws Exception {
+        when(collection.estimatedDocumentCount()).thenReturn(750L);
+        String file = write("unit.json", """
+                {"collectionName": "users", "transform": {"mode": "merge", "pipeline": [{"$set": {"active": true}}]}}
+                """);
+
+        Map<String, Object> report = dryRunPlanner.estimateDatabase("shop", List.of(metadata(file, null)), mongoTemplate);
+
+        assertEquals(750L, totals(report).get("transformDocuments"));
+        assertEquals(Map.of("mode", "merge", "collectionDocuments", 750L), section(report, "transform"));
+    }
+
+    @Test
+    void writesTheReportIntoMissingDirectories() throws Exception {
+        Path reportFile = directory.resolve("reports/dry-run.json");
+
+        dryRunPlanner.writeReport(List.of(Map.of("database", "shop", "pendingChangeUnits", 0, "totals", Map.of())), reportFile.toString());
+
+        JsonNode report = objectMapper.readTree(reportFile.toFile());
+        assertEquals("shop", report.get("databases").get(0).get("database").asText());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void explains(Document filter, Document explain) {
+        FindIterable<Document> find = mock(FindIterable.class);
+        when(find.explain(Document.class, ExplainVerbosity.EXECUTION_STATS)).thenReturn(explain);
+        when(collection.find(filter)).thenReturn(find);
+    }
+
+    private String write(String name, String content) throws Exception {
+        Path file = directory.resolve(name);
+        Files.writeString(file, content);
+        return file.toString();
+    }
+
+    private static FileMetadata metadata(String fileName, String collectionName) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setChangeUnitId("unit-1");
+        metadata.setFileName(fileName);
+        metadata.setCollectionName(collectionName);
+        return metadata;
+    }
+
+    private static Document explain(Document winningPlan, long docsExamined, long returned) {
+        return new Document("queryPlanner", new Document("winningPlan", winningPlan))
+                .append("executionStats", new Document("totalDocsExamined", docsExamined).append("totalKeysExamined", returned)
+                        .append("nReturned", returned).append("executionTimeMillis", 0));
+    }
+
+    private static long bsonSize(String json) {
+        return new RawBsonDocument(Document.parse(json), new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> totals(Map<String, Object> report) {
+        return (Map<String, Long>) report.get("totals");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> report, String name) {
+        Map<String, Object> unit = ((List<Map<String, Object>>) report.get("changeUnits")).get(0);
+        return (Map<String, Object>) unit.get(name);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.ChangeLogRepository;
+import com.example.mongock.model.DatabaseResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * How databases are run one after another or in parallel, and what ends up in the run report. Each database's
+ * work is stood in for by acquiring its migration lock, which skips the database or fails it.
+ */
+class JsonFileReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private final MigrationClientProfile migrationClientProfile = mock(MigrationClientProfile.class);
+    private final MigrationLockService migrationLockService = mock(MigrationLockService.class);
+    private final MigrationMetrics migrationMetrics = mock(MigrationMetrics.class);
+    private final List<String> acquired = Collections.synchronizedList(new ArrayList<>());
+    private JsonFileReader jsonFileReader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path mappings = Files.writeString(directory.resolve("mappings.json"), "{\"a\": [], \"b\": [], \"c\": []}");
+        when(migrationClientProfile.template(anyString())).thenAnswer(invocation -> template(invocation.getArgument(0)));
+
+        jsonFileReader = new JsonFileReader(mock(ChangeLogRepository.class), migrationClientProfile, new ObjectMapper());
+        ReflectionTestUtils.setField(jsonFileReader, "migrationLockService", migrationLockService);
+        ReflectionTestUtils.setField(jsonFileReader, "migrationMetrics", migrationMetrics);
+        ReflectionTestUtils.setField(jsonFileReader, "changeUnitPlanner", mock(ChangeUnitPlanner.class));
+        ReflectionTestUtils.setField(jsonFileReader, "changeUnitMappingsFilePath", mappings.toString());
+        ReflectionTestUtils.setField(jsonFileReader, "validationEnabled", false);
+        ReflectionTestUtils.setField(jsonFileReader, "dryRunEnabled", false);
+        ReflectionTestUtils.setField(jsonFileReader, "parallelMaxThreads", 3);
+        ReflectionTestUtils.setField(jsonFileReader, "reportPath", directory.resolve("report.json").toString());
+    }
+
+    @Test
+    void stopsAtTheFirstFailedDatabaseWhenRunningSequentially() throws Exception {
+        failDatabase("b");
+
+        jsonFileReader.processChangeUnits();
+
+        assertEquals(List.of("a", "b"), acquired);
+        assertEquals(List.of("a:true", "b:false"), reportedResults());
+    }
+
+    @Test
+    void runsDatabasesConcurrentlyAndReportsEveryOneInMappingOrder() throws Exception {
+        ReflectionTestUtils.setField(jsonFileReader, "parallelEnabled", true);
+        CountDownLatch allStarted = new CountDownLatch(3);
+        when(migrationLockService.acquire(any())).thenAnswer(invocation -> {
+            String databaseName = ((MongoTemplate) invocation.getArgument(0)).getDb().getName();
+            acquired.add(databaseName);
+            allStarted.countDown();
+            // Only completes in time if all three databases run at once
+            assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            if (databaseName.equals("b")) {
+                throw new IllegalStateException("lock wait timed out");
+            }
+            return null;
+        });
+
+        jsonFileReader.processChangeUnits();
+
+        assertEquals(3, acquired.size());
+        assertEquals(List.of("a:true", "b:false", "c:true"), reportedResults());
+    }
+
+    private void failDatabase(String failing) throws Exception {
+        when(migrationLockService.acquire(any())).thenAnswer(invocation -> {
+            String databaseName = ((MongoTemplate) invocation.getArgument(0)).getDb().getName();
+            acquired.add(databaseName);
+            if (databaseName.equals(failing)) {
+                throw new IllegalStateException("lock wait timed out");
+            }
+            // Another instance holds the lock and followers skip the database
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> reportedResults() {
+        ArgumentCaptor<List<DatabaseResult>> results = ArgumentCaptor.forClass(List.class);
+        verify(migrationMetrics).writeRunReport(results.capture(), anyString(), any());
+        return results.getValue().stream().map(result -> result.getDatabaseName() + ":" + result.isSuccess()).toList();
+    }
+
+    private static MongoTemplate template(String databaseName) {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getName()).thenReturn(databaseName);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getDb()).thenReturn(database);
+        return mongoTemplate;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.mongock.service;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.data.mongodb.core.MongoAction;
+import org.springframework.data.mongodb.core.MongoActionOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.WriteConcernResolver;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Parsing of the bulk and barrier write concerns and the read concern, per-database overrides, which collections a
+ * template writes with the barrier concern, and the pool size and compressors of the migration client settings.
+ */
+class MigrationClientProfileTest {
+
+    private final MongoClient sharedClient = mock(MongoClient.class);
+    private final MockEnvironment environment = new MockEnvironment();
+    private MigrationClientProfile profile;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers = mock(ObjectProvider.class);
+        when(customizers.orderedStream()).thenAnswer(invocation -> Stream.of(
+                (MongoClientSettingsBuilderCustomizer) builder -> builder.applicationName("migrations")));
+        profile = new MigrationClientProfile(sharedClient, MongoClientSettings.builder().build(), customizers, environment);
+        ReflectionTestUtils.setField(profile, "bulkWriteConcern", "");
+        ReflectionTestUtils.setField(profile, "bulkJournal", "");
+        ReflectionTestUtils.setField(profile, "barrierWriteConcern", "majority");
+        ReflectionTestUtils.setField(profile, "readConcern", "");
+        ReflectionTestUtils.setField(profile, "compressors", List.of());
+        ReflectionTestUtils.setField(profile, "parallelMaxThreads", 4);
+        ReflectionTestUtils.setField(profile, "maxUnitsPerDatabase", 1);
+        ReflectionTestUtils.setField(profile, "ndjsonThreads", 4);
+        ReflectionTestUtils.setField(profile, "swapThreads", 4);
+        ReflectionTestUtils.setField(profile, "transformThreads", 4);
+    }
+
+    @Test
+    void leavesConcernsToTheClientUnlessConfigured() {
+        assertNull(profile.bulkWriteConcern("shop"));
+        assertNull(profile.readConcern("shop"));
+        assertSame(sharedClient, profile.client());
+    }
+
+    @Test
+    void parsesNodeCountsTagsAndTheJournalFlag() {
+        ReflectionTestUtils.setField(profile, "bulkWriteConcern", "1");
+        ReflectionTestUtils.setField(profile, "bulkJournal", "false");
+        assertEquals(WriteConcern.W1.withJournal(false), profile.bulkWriteConcern("shop"));
+
+        ReflectionTestUtils.setField(profile, "bulkWriteConcern", "majority");
+        ReflectionTestUtils.setField(profile, "bulkJournal", "");
+        assertEquals(WriteConcern.MAJORITY, profile.bulkWriteConcern("shop"));
+    }
+
+    @Test
+    void letsADatabaseOverrideTheDefaults() {
+        ReflectionTestUtils.setField(profile, "bulkWriteConcern", "1");
+        ReflectionTestUtils.setField(profile, "readConcern", "local");
+        environment.setProperty("mongock.client.database.billing.write-concern", "majority");
+        environment.setProperty("mongock.client.database.billing.read-concern", "majority");
+
+        assertEquals(WriteConcern.W1, profile.bulkWriteConcern("shop"));
+        assertEquals(ReadConcern.LOCAL, profile.readConcern("shop"));
+        assertEquals(WriteConcern.MAJORITY, profile.bulkWriteConcern("billing"));
+        assertEquals(ReadConcern.MAJORITY, profile.readConcern("billing"));
+    }
+
+    @Test
+    void writesBookkeepingCollectionsWithTheBarrierConcern() {
+        ReflectionTestUtils.setField(profile, "bulkWriteConcern", "1");
+        MongoTemplate mongoTemplate = profile.template("shop");
+        WriteConcernResolver resolver = (WriteConcernResolver) ReflectionTestUtils.getField(mongoTemplate, "writeConcernResolver");
+
+        for (String collectionName : List.of("change_log", "change_log_checkpoint", "change_log_lock")) {
+            assertEquals(WriteConcern.MAJORITY, resolver.resolve(action(collectionName)));
+        }
+        assertEquals(WriteConcern.W1, resolver.resolve(action("users")));
+    }
+
+    @Test
+    void sizesThePoolForTheWidestFanOutAndAddsCompressors() {
+        ReflectionTestUtils.setField(profile, "parallelEnabled", true);
+        ReflectionTestUtils.setField(profile, "maxUnitsPerDatabase", 2);
+        ReflectionTestUtils.setField(profile, "swapThreads", 8);
+        ReflectionTestUtils.setField(profile, "compressors", List.of("zstd", " Snappy", "lz4"));
+
+        MongoClientSettings settings = ReflectionTestUtils.invokeMethod(profile, "migrationSettings", "test client");
+
+        assertEquals(4 * 2 * 8 + 4, settings.getConnectionPoolSettings().getMaxSize());
+        assertEquals(List.of(MongoCompressor.createZstdCompressor(), MongoCompressor.createSnappyCompressor()),
+                settings.getCompressorList());
+        assertEquals("migrations", settings.getApplicationName());
+
+        ReflectionTestUtils.setField(profile, "maxPoolSize", 10);
+        ReflectionTestUtils.setField(profile, "minPoolSize", 50);
+        settings = ReflectionTestUtils.invokeMethod(profile, "migrationSettings", "test client");
+        assertEquals(10, settings.getConnectionPoolSettings().getMaxSize());
+        assertEquals(10, settings.getConnectionPoolSettings().getMinSize());
+    }
+
+    private static MongoAction action(String collectionName) {
+        return new MongoAction(WriteConcern.W1, MongoActionOperation.INSERT, collectionName, Document.class, new Document(), null);
+    }
+}
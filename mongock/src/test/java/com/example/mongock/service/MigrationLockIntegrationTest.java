@@ -0,0 +1,136 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.example.mongock.model.MigrationLock;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Takes, renews, loses and releases the migration lock against a single-node replica set; skipped when Docker
+ * is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(classes = MigrationLockIntegrationTest.LockTestConfiguration.class,
+        properties = {"mongock.lock.lease-ms=500", "mongock.lock.renew-interval-ms=100"})
+class MigrationLockIntegrationTest {
+
+    private static final String DATABASE = "lock_test";
+    private static final Duration LEASE = Duration.ofMinutes(1);
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl(DATABASE));
+    }
+
+    @Autowired
+    private MigrationLockRepository lockRepository;
+
+    @Autowired
+    private MigrationLockService lockService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getDb().drop();
+    }
+
+    @Test
+    void onlyOneOwnerHoldsAnUnexpiredLease() {
+        MigrationLock first = lockRepository.tryAcquire(mongoTemplate, "a", LEASE);
+
+        assertNotNull(first);
+        assertNull(lockRepository.tryAcquire(mongoTemplate, "b", LEASE));
+        assertTrue(lockRepository.isHeld(mongoTemplate, first));
+    }
+
+    @Test
+    void anExpiredLeaseIsTakenOverWithTheNextFencingToken() throws Exception {
+        MigrationLock first = lockRepository.tryAcquire(mongoTemplate, "a", Duration.ZERO);
+        Thread.sleep(10);
+
+        MigrationLock second = lockRepository.tryAcquire(mongoTemplate, "b", LEASE);
+
+        assertNotNull(second);
+        assertEquals(first.getFencingToken() + 1, second.getFencingToken());
+        assertFalse(lockRepository.renew(mongoTemplate, first, LEASE));
+        assertFalse(lockRepository.isHeld(mongoTemplate, first));
+    }
+
+    @Test
+    void aStaleHolderCannotReleaseTheNewLease() throws Exception {
+        MigrationLock first = lockRepository.tryAcquire(mongoTemplate, "a", Duration.ZERO);
+        Thread.sleep(10);
+        MigrationLock second = lockRepository.tryAcquire(mongoTemplate, "b", LEASE);
+
+        lockRepository.release(mongoTemplate, first);
+
+        assertTrue(lockRepository.isHeld(mongoTemplate, second));
+        lockRepository.release(mongoTemplate, second);
+        assertFalse(lockRepository.isHeld(mongoTemplate, second));
+        assertNotNull(lockRepository.tryAcquire(mongoTemplate, "c", LEASE));
+    }
+
+    @Test
+    void renewalKeepsTheLeaseBeyondItsLength() throws Exception {
+        try (MigrationLease lease = lockService.acquire(mongoTemplate)) {
+            Thread.sleep(1_000);
+
+            lease.ensureHeld();
+            lockService.ensureHeld(mongoTemplate);
+        }
+        assertTrue(lockRepository.find(mongoTemplate).getExpiresAt().isBefore(Instant.now()));
+    }
+
+    @Test
+    void fencesWritesOnceAnotherInstanceTookTheLockOver() throws Exception {
+        try (MigrationLease lease = lockService.acquire(mongoTemplate)) {
+            // Another instance took over after this one stalled past its lease
+            mongoTemplate.getCollection(MigrationLockRepository.LOCK_COLLECTION).updateOne(new Document("_id", MigrationLockRepository.LOCK_ID),
+                    new Document("$set", new Document("owner", "other").append("expiresAt", Date.from(Instant.now().plus(LEASE))))
+                            .append("$inc", new Document("fencingToken", 1)));
+            Thread.sleep(1_000);
+
+            assertThrows(IllegalStateException.class, lease::ensureHeld);
+            assertThrows(IllegalStateException.class, () -> lockService.ensureHeld(mongoTemplate));
+        }
+        // The lost lease was not released over the new holder's
+        assertEquals("other", lockRepository.find(mongoTemplate).getOwner());
+        assertTrue(lockRepository.find(mongoTemplate).getExpiresAt().isAfter(Instant.now()));
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import({MigrationLockService.class, MigrationLockRepository.class})
+    static class LockTestConfiguration {
+    }
+}
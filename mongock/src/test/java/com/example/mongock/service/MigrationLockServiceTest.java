@@ -0,0 +1,153 @@
+package com.example.mongock.service;
+
+import com.example.mongock.Repository.MigrationLockRepository;
+import com.example.mongock.model.MigrationLock;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Acquiring, renewing and fencing with the migration lock, against a mocked lock repository: a lease is trusted
+ * locally while it is confirmed, read back once it runs out, and every check fails after the lock was lost.
+ */
+class MigrationLockServiceTest {
+
+    private final MigrationLockRepository lockRepository = mock(MigrationLockRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private MigrationLockService lockService;
+
+    @BeforeEach
+    void setUp() {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getName()).thenReturn("orders");
+        when(mongoTemplate.getDb()).thenReturn(database);
+
+        lockService = new MigrationLockService(lockRepository);
+        ReflectionTestUtils.setField(lockService, "enabled", true);
+        ReflectionTestUtils.setField(lockService, "leaseMillis", 60_000L);
+        ReflectionTestUtils.setField(lockService, "renewIntervalMillis", 20_000L);
+        ReflectionTestUtils.setField(lockService, "pollIntervalMillis", 10L);
+        ReflectionTestUtils.setField(lockService, "waitTimeoutMillis", 1_000L);
+        ReflectionTestUtils.setField(lockService, "followerMode", "wait");
+    }
+
+    @AfterEach
+    void tearDown() {
+        lockService.shutdown();
+    }
+
+    @Test
+    void trustsAConfirmedLeaseWithoutReadingTheLock() throws Exception {
+        when(lockRepository.tryAcquire(any(), anyString(), any())).thenReturn(lock(1));
+
+        try (MigrationLease lease = lockService.acquire(mongoTemplate)) {
+            lockService.ensureHeld(mongoTemplate);
+            lease.ensureHeld();
+        }
+
+        verify(lockRepository, never()).isHeld(any(), any());
+        verify(lockRepository).release(any(), any());
+    }
+
+    @Test
+    void failsEveryWriteOnceAnExpiredLeaseIsFoundTakenOver() throws Exception {
+        ReflectionTestUtils.setField(lockService, "leaseMillis", 0L);
+        when(lockRepository.tryAcquire(any(), anyString(), any())).thenReturn(lock(1));
+        when(lockRepository.isHeld(any(), any())).thenReturn(false);
+
+        try (MigrationLease lease = lockService.acquire(mongoTemplate)) {
+            assertThrows(IllegalStateException.class, () -> lockService.ensureHeld(mongoTemplate));
+            assertThrows(IllegalStateException.class, lease::ensureHeld);
+        }
+
+        // A lost lock belongs to someone else now: releasing it would end their lease
+        verify(lockRepository, never()).release(any(), any());
+    }
+
+    @Test
+    void aFailedRenewalFencesTheNextWrite() throws Exception {
+        ReflectionTestUtils.setField(lockService, "renewIntervalMillis", 10L);
+        when(lockRepository.tryAcquire(any(), anyString(), any())).thenReturn(lock(1));
+        when(lockRepository.renew(any(), any(), any())).thenReturn(false);
+
+        try (MigrationLease ignored = lockService.acquire(mongoTemplate)) {
+            verify(lockRepository, timeout(1_000)).renew(any(), any(), any());
+            long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+            while (!lost() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThrows(IllegalStateException.class, () -> lockService.ensureHeld(mongoTemplate));
+        }
+    }
+
+    @Test
+    void stopsFencingOnceTheLeaseIsClosed() throws Exception {
+        ReflectionTestUtils.setField(lockService, "leaseMillis", 0L);
+        when(lockRepository.tryAcquire(any(), anyString(), any())).thenReturn(lock(1));
+
+        lockService.acquire(mongoTemplate).close();
+
+        lockService.ensureHeld(mongoTemplate);
+        verify(lockRepository, never()).isHeld(any(), any());
+    }
+
+    @Test
+    void followersSkipTheDatabaseInSkipMode() throws Exception {
+        ReflectionTestUtils.setField(lockService, "followerMode", "skip");
+        MigrationLock holder = lock(7);
+        holder.setOwner("other");
+        when(lockRepository.find(any())).thenReturn(holder);
+
+        assertNull(lockService.acquire(mongoTemplate));
+        lockService.ensureHeld(mongoTemplate);
+    }
+
+    @Test
+    void followersWaitForAReleasedLock() throws Exception {
+        MigrationLock holder = lock(7);
+        holder.setOwner("other");
+        holder.setExpiresAt(Instant.EPOCH);
+        when(lockRepository.tryAcquire(any(), anyString(), any())).thenReturn(null, lock(8));
+        when(lockRepository.find(any())).thenReturn(holder);
+
+        try (MigrationLease lease = lockService.acquire(mongoTemplate)) {
+            assertNotNull(lease);
+        }
+    }
+
+    private boolean lost() {
+        try {
+            lockService.ensureHeld(mongoTemplate);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    private static MigrationLock lock(long fencingToken) {
+        MigrationLock lock = new MigrationLock();
+        lock.setId(MigrationLockRepository.LOCK_ID);
+        lock.setOwner("me");
+        lock.setFencingToken(fencingToken);
+        lock.setAcquiredAt(Instant.now());
+        lock.setExpiresAt(Instant.now().plusSeconds(60));
+        return lock;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mongock.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoDatabase;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Meter names and tags of the change-unit stages, and the documents/sec figures of the run report, on a
+ * simple registry with a mock clock.
+ */
+class MigrationMetricsTest {
+
+    private final MockClock clock = new MockClock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private MigrationMetrics migrationMetrics;
+
+    @BeforeEach
+    void setUp() {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getName()).thenReturn("shop");
+        when(mongoTemplate.getDb()).thenReturn(database);
+        migrationMetrics = new MigrationMetrics(meterRegistry);
+    }
+
+    @Test
+    void tagsOperationTimersByChangeUnitAndOutcome() {
+        Timer.Sample sample = migrationMetrics.start();
+        clock.add(Duration.ofMillis(250));
+        migrationMetrics.recordOperation(sample, mongoTemplate, "001-orders", "INSERT", "orders", true);
+
+        Timer timer = meterRegistry.find("mongock.operation")
+                .tags("database", "shop", "collection", "orders", "changeUnit", "001-orders",
+                        "operation", "insert", "outcome", "success")
+                .timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertEquals(250, timer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    void reportsDocumentsPerSecondFromCountersAndTimers(@TempDir Path directory) throws Exception {
+        Timer.Sample first = migrationMetrics.start();
+        clock.add(Duration.ofSeconds(2));
+        migrationMetrics.recordOperation(first, mongoTemplate, "001-orders", "insert", "orders", true);
+        Timer.Sample second = migrationMetrics.start();
+        clock.add(Duration.ofSeconds(2));
+        migrationMetrics.recordOperation(second, mongoTemplate, "001-orders", "insert", "orders", false);
+        migrationMetrics.recordDocuments(mongoTemplate, "001-orders", "insert", "orders", 1_000);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        File reportFile = directory.resolve("reports/run.json").toFile();
+        migrationMetrics.writeRunReport(List.of(), reportFile.getPath(), objectMapper);
+
+        JsonNode report = objectMapper.readTree(reportFile);
+        assertFalse(report.get("meters").isEmpty());
+        JsonNode rate = report.get("throughput").get(0);
+        assertEquals("orders", rate.get("collection").asText());
+        assertEquals(1_000, rate.get("documents").asLong());
+        assertEquals(250.0, rate.get("documentsPerSecond").asDouble(), 0.001);
+    }
+
+    @Test
+    void reportsNoRateForDocumentsWithoutTimedOperations(@TempDir Path directory) throws Exception {
+        migrationMetrics.recordDocuments(mongoTemplate, "002-users", "delete", "users", 10);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        File reportFile = directory.resolve("run.json").toFile();
+        migrationMetrics.writeRunReport(List.of(), reportFile.getPath(), objectMapper);
+
+        JsonNode rate = objectMapper.readTree(reportFile).get("throughput").get(0);
+        assertEquals(0, rate.get("documentsPerSecond").asDouble(), 0.001);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.mongock.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pacing and holding of migration writes: the AIMD factor, rate limits, pausing, and holding on replication lag,
+ * including servers that cannot report it. replSetGetStatus comes from a mocked admin database.
+ */
+class MigrationThrottleTest {
+
+    private final MigrationMetrics migrationMetrics = mock(MigrationMetrics.class);
+    private final MongoDatabase admin = mock(MongoDatabase.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private MigrationThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        MigrationClientProfile migrationClientProfile = mock(MigrationClientProfile.class);
+        MongoClient client = mock(MongoClient.class);
+        when(migrationClientProfile.client()).thenReturn(client);
+        when(client.getDatabase("admin")).thenReturn(admin);
+        when(admin.runCommand(new Document("replSetGetStatus", 1))).thenReturn(replicaSetStatus(0));
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getName()).thenReturn("shop");
+        when(mongoTemplate.getDb()).thenReturn(database);
+
+        throttle = new MigrationThrottle(migrationClientProfile, migrationMetrics);
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "maxWriteLatencyMillis", 200L);
+        ReflectionTestUtils.setField(throttle, "maxReplicationLagSeconds", 10.0);
+        ReflectionTestUtils.setField(throttle, "lagCheckIntervalMillis", 100L);
+    }
+
+    @Test
+    void letsEverythingThroughWhenDisabled() {
+        ReflectionTestUtils.setField(throttle, "enabled", false);
+
+        throttle.acquire(mongoTemplate, "unit-1", 1_000);
+        throttle.permit(mongoTemplate, "unit-1", 1_000).block();
+        throttle.recordLatency(mongoTemplate, "unit-1", TimeUnit.SECONDS.toNanos(5));
+
+        assertEquals(Map.of(), throttle.status().get("changeUnitFactors"));
+        verifyNoInteractions(migrationMetrics, admin);
+    }
+
+    @Test
+    void halvesTheFactorOnSlowBatchesAndRecoversStepByStep() {
+        throttle.acquire(mongoTemplate, "unit-1", 10);
+        long slow = TimeUnit.MILLISECONDS.toNanos(500);
+        long fast = TimeUnit.MILLISECONDS.toNanos(5);
+
+        throttle.recordLatency(mongoTemplate, "unit-1", slow);
+        throttle.recordLatency(mongoTemplate, "unit-1", slow);
+        assertEquals(0.25, factor("shop/unit-1"), 1e-9);
+        throttle.recordLatency(mongoTemplate, "unit-1", fast);
+        assertEquals(0.30, factor("shop/unit-1"), 1e-9);
+
+        for (int i = 0; i < 20; i++) {
+            throttle.recordLatency(mongoTemplate, "unit-1", slow);
+        }
+        assertEquals(1.0 / 64, factor("shop/unit-1"), 1e-9);
+        for (int i = 0; i < 40; i++) {
+            throttle.recordLatency(mongoTemplate, "unit-1", fast);
+        }
+        assertEquals(1.0, factor("shop/unit-1"), 1e-9);
+    }
+
+    @Test
+    void pacesEachUnitToTheDocumentRate() {
+        ReflectionTestUtils.setField(throttle, "docsPerSecond", 1_000.0);
+
+        throttle.acquire(mongoTemplate, "unit-1", 200);
+        throttle.acquire(mongoTemplate, "unit-1", 200);
+        throttle.acquire(mongoTemplate, "unit-2", 200);
+
+        ArgumentCaptor<Long> waited = ArgumentCaptor.forClass(Long.class);
+        verify(migrationMetrics, times(3)).recordThrottle(eq(mongoTemplate), any(), waited.capture());
+        assertEquals(0, waited.getAllValues().get(0), TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(waited.getAllValues().get(1) > TimeUnit.MILLISECONDS.toNanos(150), "second batch waits for its slot");
+        assertEquals(0, waited.getAllValues().get(2), TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void holdsPermitsWhilePaused() throws Exception {
+        throttle.pause();
+        CompletableFuture<Void> permit = throttle.permit(mongoTemplate, "unit-1", 10).toFuture();
+
+        Thread.sleep(300);
+        assertFalse(permit.isDone());
+        assertTrue(throttle.isPaused());
+
+        throttle.resume();
+        permit.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void holdsPermitsWhileSecondariesLagBehind() throws Exception {
+        when(admin.runCommand(new Document("replSetGetStatus", 1))).thenReturn(replicaSetStatus(30));
+        CompletableFuture<Void> permit = throttle.permit(mongoTemplate, "unit-1", 10).toFuture();
+
+        Thread.sleep(300);
+        assertFalse(permit.isDone());
+        assertEquals(30.0, throttle.status().get("replicationLagSeconds"));
+
+        when(admin.runCommand(new Document("replSetGetStatus", 1))).thenReturn(replicaSetStatus(1));
+        permit.get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, throttle.status().get("replicationLagSeconds"));
+    }
+
+    @Test
+    void stopsAskingForLagOnAServerThatCannotReportIt() throws Exception {
+        when(admin.runCommand(new Document("replSetGetStatus", 1))).thenThrow(new MongoException(76, "not running with --replSet"));
+
+        throttle.acquire(mongoTemplate, "unit-1", 10);
+        Thread.sleep(150);
+        throttle.acquire(mongoTemplate, "unit-1", 10);
+
+        verify(admin, times(1)).runCommand(any(Document.class));
+        assertNull(throttle.status().get("replicationLagSeconds"));
+    }
+
+    @Test
+    void keepsCheckingLagAfterATransientError() throws Exception {
+        when(admin.runCommand(new Document("replSetGetStatus", 1)))
+                .thenThrow(new MongoException(6, "host unreachable"))
+                .thenReturn(replicaSetStatus(2));
+
+        throttle.acquire(mongoTemplate, "unit-1", 10);
+        Thread.sleep(150);
+        throttle.acquire(mongoTemplate, "unit-1", 10);
+
+        verify(admin, times(2)).runCommand(any(Document.class));
+        assertEquals(2.0, throttle.status().get("replicationLagSeconds"));
+        verify(migrationMetrics, times(2)).recordThrottle(eq(mongoTemplate), eq("unit-1"), anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private double factor(String key) {
+        return ((Map<String, Double>) throttle.status().get("changeUnitFactors")).get(key);
+    }
+
+    private static Document replicaSetStatus(long lagSeconds) {
+        Date primary = new Date();
+        return new Document("members", List.of(
+                new Document("stateStr", "PRIMARY").append("optimeDate", primary),
+                new Document("stateStr", "SECONDARY").append("optimeDate", new Date(primary.getTime() - lagSeconds * 1000)),
+                new Document("stateStr", "ARBITER")));
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.mongock.service;
+
+import com.example.mongock.model.ChangeLog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The reactive engine's batch pipeline: how many batches are in flight for ordered and unordered sections, results
+ * recorded in batch order, the throttle and lock check ahead of every batch, and what a failed batch leaves on the
+ * change log entry. The reactive collection is a mock whose writes complete after a short delay.
+ */
+class ReactiveChangeUnitEngineTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChangeLogService changeLogService = mock(ChangeLogService.class);
+    private final MigrationThrottle migrationThrottle = mock(MigrationThrottle.class);
+    private final MigrationLockService migrationLockService = mock(MigrationLockService.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private ReactiveChangeUnitEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        MigrationMetrics migrationMetrics = mock(MigrationMetrics.class);
+        ChangeUnitService changeUnitService = new ChangeUnitService(changeLogService, migrationMetrics,
+                mock(CollectionSwapService.class), migrationThrottle, migrationLockService);
+        MigrationClientProfile migrationClientProfile = mock(MigrationClientProfile.class);
+        MongoClient reactiveClient = mock(MongoClient.class);
+        com.mongodb.reactivestreams.client.MongoDatabase reactiveDatabase = mock(com.mongodb.reactivestreams.client.MongoDatabase.class);
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getName()).thenReturn("shop");
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(migrationClientProfile.reactiveClient()).thenReturn(reactiveClient);
+        when(reactiveClient.getDatabase("shop")).thenReturn(reactiveDatabase);
+        when(reactiveDatabase.getCollection("users")).thenReturn(collection);
+        when(changeLogService.createChangeLog(any(), any(), anyList(), anyBoolean())).thenCallRealMethod();
+        when(migrationThrottle.permit(eq(mongoTemplate), eq("unit-1"), anyInt())).thenReturn(Mono.empty());
+
+        engine = new ReactiveChangeUnitEngine(changeUnitService, changeLogService, migrationMetrics, migrationClientProfile,
+                migrationThrottle, migrationLockService);
+        ReflectionTestUtils.setField(engine, "maxInFlightBatches", 3);
+        ReflectionTestUtils.setField(engine, "insertBatchSize", 10);
+        ReflectionTestUtils.setField(engine, "bulkBatchSize", 10);
+    }
+
+    @Test
+    void keepsUpToTheWindowOfUnorderedBatchesInFlightAndRecordsThemInOrder() {
+        stubInsertMany(Set.of());
+
+        engine.writeInsertSection("unit-1", "users", documents(95), null, mongoTemplate);
+
+        ChangeLog changeLog = savedChangeLog();
+        assertTrue(changeLog.isSuccess());
+        assertEquals(95L, changeLog.getInsertedCount());
+        assertEquals(List.of(10, 10, 10, 10, 10, 10, 10, 10, 10, 5), changeLog.getBatchCounts());
+        assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    void keepsASingleBatchInFlightForOrderedSections() {
+        ReflectionTestUtils.setField(engine, "insertOrdered", true);
+        stubInsertMany(Set.of());
+
+        engine.writeInsertSection("unit-1", "users", documents(40), null, mongoTemplate);
+
+        assertEquals(40L, savedChangeLog().getInsertedCount());
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    void checksTheThrottleAndTheLockBeforeEveryBatch() {
+        stubInsertMany(Set.of());
+
+        engine.writeInsertSection("unit-1", "users", documents(20), null, mongoTemplate);
+
+        InOrder order = inOrder(migrationThrottle, migrationLockService, collection);
+        for (int batch = 0; batch < 2; batch++) {
+            order.verify(migrationThrottle).permit(mongoTemplate, "unit-1", 10);
+            order.verify(migrationLockService).ensureHeld(mongoTemplate);
+        }
+        verify(collection, times(2)).insertMany(anyList(), any(InsertManyOptions.class));
+        verify(migrationThrottle, times(2)).recordLatency(eq(mongoTemplate), eq("unit-1"), any(Long.class));
+    }
+
+    @Test
+    void stopsSendingAfterAFailedBatchAndRecordsWhatWasAcknowledged() {
+        stubInsertMany(Set.of(1));
+
+        MongoBulkWriteException exception = assertThrows(MongoBulkWriteException.class,
+                () -> engine.writeInsertSection("unit-1", "users", documents(100), null, mongoTemplate));
+
+        ChangeLog changeLog = savedChangeLog();
+        assertFalse(changeLog.isSuccess());
+        int sent = insertManyCalls();
+        assertTrue(sent < 10, "batches after the failure are not sent");
+        assertEquals(sent, changeLog.getBatchCounts().size());
+        assertEquals(10L * (sent - 1) + exception.getWriteResult().getInsertedCount(), changeLog.getInsertedCount());
+    }
+
+    @Test
+    void accumulatesBulkResultsOfDeleteQueries() throws Exception {
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+            List<WriteModel<Document>> batch = invocation.getArgument(0);
+            return delayed(BulkWriteResult.acknowledged(0, 0, batch.size() * 2, 0, List.of(), List.of()));
+        });
+        List<JsonNode> queries = new ArrayList<>();
+        for (int n = 0; n < 25; n++) {
+            queries.add(objectMapper.readTree("{\"query\": {\"n\": " + n + "}}"));
+        }
+
+        engine.applyDeleteQueries("unit-1", "users", queries.iterator(), false, mongoTemplate);
+
+        ChangeLog changeLog = savedChangeLog();
+        assertEquals("DELETE", changeLog.getOperation());
+        assertEquals(50L, changeLog.getDeletedCount());
+        assertEquals(List.of(10, 10, 5), changeLog.getBatchCounts());
+    }
+
+    /**
+     * Answers insertMany after a short delay, tracking how many are outstanding; batches at the given positions fail
+     * with a bulk write error after inserting 4 of their documents.
+     */
+    private void stubInsertMany(Set<Integer> failingBatches) {
+        AtomicInteger batches = new AtomicInteger();
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            int position = batches.getAndIncrement();
+            if (failingBatches.contains(position)) {
+                return Mono.error(new MongoBulkWriteException(BulkWriteResult.acknowledged(4, 0, 0, 0, List.of(), List.of()),
+                        List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 4)), null, new ServerAddress(), Set.of()));
+            }
+            Map<Integer, BsonValue> insertedIds = new HashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                insertedIds.put(i, new BsonInt32(i));
+            }
+            return delayed(InsertManyResult.acknowledged(insertedIds));
+        });
+    }
+
+    private <T> Mono<T> delayed(T result) {
+        return Mono.defer(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return Mono.delay(Duration.ofMillis(30)).thenReturn(result).doOnTerminate(inFlight::decrementAndGet);
+        });
+    }
+
+    private int insertManyCalls() {
+        return (int) mockingDetails(collection).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("insertMany"))
+                .count();
+    }
+
+    private ChangeLog savedChangeLog() {
+        ArgumentCaptor<ChangeLog> saved = ArgumentCaptor.forClass(ChangeLog.class);
+        verify(changeLogService).saveChangeLog(saved.capture(), eq(mongoTemplate));
+        return saved.getValue();
+    }
+
+    private Iterator<JsonNode> documents(int count) {
+        List<JsonNode> documents = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            documents.add(objectMapper.createObjectNode().put("n", n));
+        }
+        return documents.iterator();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mongock.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Naming and clean-up of a unit's supporting indexes, including ones a crashed run left on the collection.
+ * Index commands are stubbed on a spy; only the names handed to them are checked.
+ */
+class TemporaryIndexesTest {
+
+    private static final String UNIT = "unit-1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private IndexService indexService;
+
+    @BeforeEach
+    void setUp() {
+        indexService = spy(new IndexService(mock(ChangeLogService.class), mock(MigrationMetrics.class)));
+        doReturn(List.of()).when(indexService).createIndexes(any(), any(), anyList(), any());
+        doNothing().when(indexService).dropIndexes(any(), any(), anyList(), any());
+    }
+
+    @Test
+    void prefixesDeclaredAndDefaultNames() {
+        ArgumentCaptor<List<Document>> specs = ArgumentCaptor.captor();
+
+        try (TemporaryIndexes temporaryIndexes = temporaryIndexes("[{\"key\": {\"a\": 1, \"b\": -1}}, {\"key\": {\"c\": 1}, \"name\": \"by_c\"}]")) {
+            doReturn(List.of()).when(indexService).indexNames(any(), any());
+            temporaryIndexes.ensureBuilt();
+        }
+
+        verify(indexService).createIndexes(eq(UNIT), eq("users"), specs.capture(), eq(mongoTemplate));
+        assertEquals(List.of("mongock_tmp_a_1_b_-1", "mongock_tmp_by_c"), specs.getValue().stream().map(spec -> spec.getString("name")).toList());
+    }
+
+    @Test
+    void dropsAnIndexACrashedRunLeftEvenThoughThisRunFoundItPresent() {
+        doReturn(List.of("_id_", "a_1", "mongock_tmp_a_1")).when(indexService).indexNames("users", mongoTemplate);
+
+        try (TemporaryIndexes temporaryIndexes = temporaryIndexes("[{\"key\": {\"a\": 1}}]")) {
+            temporaryIndexes.ensureBuilt();
+        }
+
+        verify(indexService).dropIndexes(UNIT, "users", List.of("mongock_tmp_a_1"), mongoTemplate);
+    }
+
+    @Test
+    void closingWithoutDeclaredIndexesDoesNothing() {
+        TemporaryIndexes.none().close();
+        temporaryIndexes("[]").close();
+
+        verify(indexService, never()).indexNames(any(), any());
+        verify(indexService, never()).dropIndexes(any(), any(), anyList(), any());
+    }
+
+    private TemporaryIndexes temporaryIndexes(String json) {
+        try {
+            return indexService.temporaryIndexes(UNIT, "users", objectMapper.readTree(json), mongoTemplate);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
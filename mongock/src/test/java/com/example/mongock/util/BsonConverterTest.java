@@ -0,0 +1,66 @@
+package com.example.mongock.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * The direct conversion has to produce exactly what the previous {@code Document.parse(node.toString())} path did.
+ */
+class BsonConverterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"_id\": {\"$oid\": \"65b0c0ffee0000000000abcd\"}, \"name\": \"a\"}",
+            "{\"at\": {\"$date\": \"2024-01-28T10:15:30Z\"}, \"atOffset\": {\"$date\": \"2024-01-28T10:15:30.123+02:00\"}}",
+            "{\"at\": {\"$date\": 1706436930000}, \"legacy\": {\"$date\": {\"$numberLong\": \"1706436930000\"}}}",
+            "{\"count\": {\"$numberLong\": \"9007199254740993\"}, \"small\": {\"$numberInt\": \"7\"}}",
+            "{\"price\": {\"$numberDecimal\": \"1234.5678901234567890\"}}",
+            "{\"int\": 1, \"negative\": -2147483648, \"long\": 2147483648, \"maxLong\": 9223372036854775807, \"double\": 1.5, \"whole\": 2.0, \"exp\": 1e3}",
+            "{\"matrix\": [[1, 2], [3, [4, {\"$numberLong\": \"5\"}]]], \"objects\": [{\"a\": [true, false, null]}, {}]}",
+            "{\"nested\": {\"deeper\": {\"_id\": {\"$oid\": \"65b0c0ffee0000000000abce\"}, \"tags\": [\"x\", \"y\"]}}}",
+            "{\"bin\": {\"$binary\": {\"base64\": \"AQID\", \"subType\": \"00\"}}, \"ts\": {\"$timestamp\": {\"t\": 1, \"i\": 2}}}",
+            "{\"empty\": {}, \"text\": \"\\u00e9\\n\"}"
+    })
+    void matchesDocumentParse(String json) throws Exception {
+        JsonNode node = objectMapper.readTree(json);
+
+        assertEquals(Document.parse(node.toString()), BsonConverter.toDocument(node));
+    }
+
+    @Test
+    void keepsNumberWidths() throws Exception {
+        Document document = BsonConverter.toDocument(objectMapper.readTree(
+                "{\"int\": 1, \"long\": 2147483648, \"double\": 1.0, \"numberLong\": {\"$numberLong\": \"1\"}}"));
+
+        assertInstanceOf(Integer.class, document.get("int"));
+        assertInstanceOf(Long.class, document.get("long"));
+        assertInstanceOf(Double.class, document.get("double"));
+        assertInstanceOf(Long.class, document.get("numberLong"));
+    }
+
+    @Test
+    void convertsExtendedJsonTypes() throws Exception {
+        Document document = BsonConverter.toDocument(objectMapper.readTree(
+                "{\"id\": {\"$oid\": \"65b0c0ffee0000000000abcd\"}, \"at\": {\"$date\": \"1970-01-01T00:00:01Z\"},"
+                        + " \"price\": {\"$numberDecimal\": \"0.1\"}, \"list\": [{\"$numberLong\": \"3\"}]}"));
+
+        assertEquals(new ObjectId("65b0c0ffee0000000000abcd"), document.get("id"));
+        assertEquals(new Date(1000), document.get("at"));
+        assertEquals(Decimal128.parse("0.1"), document.get("price"));
+        assertEquals(List.of(3L), document.get("list"));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mongock.util;
+
+import com.example.mongock.model.FileFormat;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Format and compression detection by file name, and reading of length-prefixed BSON streams,
+ * including the lengths a corrupt or truncated dump can carry.
+ */
+class ChangeUnitFileFormatsTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @CsvSource({
+            "units/001.json, JSON, false, 001",
+            "units/002.JSON.gz, JSON, true, 002",
+            "dump/customer.bson, BSON, false, customer",
+            "dump/customer.bson.gz, BSON, true, customer",
+            "dump/orders.bson.zst, BSON, true, orders",
+            "data/events.ndjson, NDJSON, false, events",
+            "data/events.jsonl.zst, NDJSON, true, events",
+            "data/noextension, JSON, false, noextension"
+    })
+    void detectsFormatAndCompressionFromTheName(String filePath, FileFormat format, boolean compressed, String baseName) {
+        assertEquals(format, ChangeUnitFileFormats.format(filePath));
+        assertEquals(compressed, ChangeUnitFileFormats.isCompressed(filePath));
+        assertEquals(baseName, ChangeUnitFileFormats.baseName(filePath));
+    }
+
+    @Test
+    void decompressesGzipAndZstdByExtension() throws IOException {
+        byte[] content = "{\"n\": 1}\n{\"n\": 2}\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        Path plain = Files.write(directory.resolve("events.ndjson"), content);
+        Path gzip = directory.resolve("events.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            out.write(content);
+        }
+        Path zstd = directory.resolve("events.ndjson.zst");
+        try (OutputStream out = new ZstdOutputStream(Files.newOutputStream(zstd))) {
+            out.write(content);
+        }
+
+        for (Path file : List.of(plain, gzip, zstd)) {
+            try (InputStream in = ChangeUnitFileFormats.open(file.toString())) {
+                assertArrayEquals(content, in.readAllBytes(), file.toString());
+            }
+        }
+    }
+
+    @Test
+    void readsLengthPrefixedDocumentsUntilTheEnd() throws IOException {
+        List<Document> documents = List.of(new Document("_id", 1).append("name", "a"), new Document("_id", 2), new Document());
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        for (Document document : documents) {
+            dump.write(bson(document));
+        }
+
+        List<Document> read = new ArrayList<>();
+        Iterator<RawBsonDocument> iterator = ChangeUnitFileFormats.bsonDocuments(new ByteArrayInputStream(dump.toByteArray()));
+        iterator.forEachRemaining(document -> read.add(Document.parse(document.toJson())));
+
+        assertEquals(documents, read);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void returnsNullAtTheEndOfAnEmptyStream() throws IOException {
+        assertNull(ChangeUnitFileFormats.readBsonDocument(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    void rejectsTruncatedDocumentsAndPrefixes() {
+        byte[] document = bson(new Document("name", "truncated"));
+
+        assertThrows(EOFException.class, () -> ChangeUnitFileFormats.readBsonDocument(
+                new ByteArrayInputStream(Arrays.copyOf(document, document.length - 1))));
+        assertThrows(EOFException.class, () -> ChangeUnitFileFormats.readBsonDocument(new ByteArrayInputStream(new byte[]{5, 0})));
+    }
+
+    @Test
+    void rejectsLengthsNoDocumentCanHaveBeforeAllocating() {
+        byte[] tooSmall = {4, 0, 0, 0};
+        byte[] negative = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+        byte[] tooLarge = {0, 0, 0, 0x7f};
+
+        for (byte[] prefix : List.of(tooSmall, negative, tooLarge)) {
+            IOException e = assertThrows(IOException.class, () -> ChangeUnitFileFormats.readBsonDocument(new ByteArrayInputStream(prefix)));
+            assertTrue(e.getMessage().startsWith("Invalid BSON document length"), e.getMessage());
+        }
+    }
+
+    private static byte[] bson(Document document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        new DocumentCodec().encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.mongock.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The structural rules of change-unit sections: every problem of an element is reported with its path, and valid
+ * sections report none.
+ */
+class ChangeUnitSchemaTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void acceptsPlainFieldsOrKnownOperatorsInAnUpdate() throws Exception {
+        assertEquals(List.of(), queryProblems("{\"query\": {\"n\": 1}, \"update\": {\"active\": true}}", true));
+        assertEquals(List.of(), queryProblems("{\"query\": {\"n\": 1}, \"update\": {\"$set\": {\"a\": 1}, \"$inc\": {\"b\": 1}}}", true));
+        assertEquals(List.of(), queryProblems("{\"query\": {\"n\": 1}}", false));
+    }
+
+    @Test
+    void reportsEveryProblemOfAnUpdateQuery() throws Exception {
+        assertEquals(List.of("q: needs a 'query' object", "q.update: needs a non-empty 'update' object"),
+                queryProblems("{\"update\": {}}", true));
+        assertEquals(List.of("q.update: mixes update operators with the plain field 'active'",
+                        "q.update: unknown update operator '$sett'",
+                        "q.update.$inc: must be an object of fields"),
+                queryProblems("{\"query\": {}, \"update\": {\"$set\": {\"a\": 1}, \"active\": true, \"$sett\": {}, \"$inc\": 1}}", true));
+        assertEquals(List.of("q: must be an object"), queryProblems("[]", false));
+    }
+
+    @Test
+    void requiresATargetUnlessTheTransformUpdatesInPlaceOrEndsInItsOwnOutput() throws Exception {
+        assertEquals(List.of(), transformProblems("{\"mode\": \"update\", \"pipeline\": [{\"$set\": {\"a\": 1}}]}"));
+        assertEquals(List.of(), transformProblems("{\"pipeline\": [{\"$match\": {}}, {\"$out\": \"archive\"}]}"));
+        assertEquals(List.of(), transformProblems("{\"into\": \"archive\", \"pipeline\": [{\"$match\": {}}], \"partitions\": 4}"));
+
+        List<String> problems = transformProblems("{\"pipeline\": [{\"$match\": {}}]}");
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("transform.into: required for mode 'merge'"), problems.get(0));
+    }
+
+    @Test
+    void reportsMalformedTransforms() throws Exception {
+        assertEquals(List.of("transform.pipeline[1]: must be an object with a single $stage",
+                        "transform.mode: unknown mode 'replace', expected merge, out or update",
+                        "transform.filter: must be an object",
+                        "transform.partitions: must be a positive number"),
+                transformProblems("{\"into\": \"x\", \"mode\": \"replace\", \"pipeline\": [{\"$match\": {}}, {\"$a\": 1, \"$b\": 2}],"
+                        + " \"filter\": 1, \"partitions\": 0}"));
+        assertEquals(List.of("transform.pipeline: must be a non-empty array of stages"), transformProblems("{\"mode\": \"update\", \"pipeline\": []}"));
+    }
+
+    @Test
+    void checksIndexSectionsAndRenames() throws Exception {
+        List<String> problems = new ArrayList<>();
+        ChangeUnitSchema.checkIndexes(json("{\"create\": [{\"collection\": \"users\", \"key\": {\"a\": 1}}, {\"key\": {\"b\": 1}}],"
+                + " \"drop\": [{\"collection\": \"users\"}]}"), problems);
+        ChangeUnitSchema.checkTempIndexes(json("[{\"key\": {\"a\": 1}}, 7]"), problems);
+        ChangeUnitSchema.checkRenames(json("[{\"oldCollection\": \"a\", \"newCollection\": \"b\"}, {\"oldCollection\": \"c\"}]"), problems);
+
+        assertEquals(List.of("indexes.create[1]: needs a 'collection'",
+                "indexes.drop[0]: needs a 'key' object or a 'name'",
+                "tempIndexes[1]: must be an object",
+                "rename[1]: needs 'oldCollection' and 'newCollection'"), problems);
+    }
+
+    @Test
+    void tellsWhetherAPipelineNamesItsOwnOutput() throws Exception {
+        assertTrue(ChangeUnitSchema.endsInOutput(json("[{\"$match\": {}}, {\"$merge\": {\"into\": \"x\"}}]")));
+        assertFalse(ChangeUnitSchema.endsInOutput(json("[{\"$out\": \"x\"}, {\"$match\": {}}]")));
+        assertFalse(ChangeUnitSchema.endsInOutput(null));
+    }
+
+    private List<String> queryProblems(String entry, boolean update) throws Exception {
+        List<String> problems = new ArrayList<>();
+        ChangeUnitSchema.checkQuery("q", json(entry), update, problems);
+        return problems;
+    }
+
+    private List<String> transformProblems(String transform) throws Exception {
+        List<String> problems = new ArrayList<>();
+        ChangeUnitSchema.checkTransform(json(transform), problems);
+        return problems;
+    }
+
+    private JsonNode json(String content) throws Exception {
+        return objectMapper.readTree(content);
+    }
+}
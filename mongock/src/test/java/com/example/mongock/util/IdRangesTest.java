@@ -0,0 +1,98 @@
+package com.example.mongock.util;
+
+import com.mongodb.Function;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoIterable;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Boundaries picked from a sampled, sorted set of {@code _id}s, and the partitions that cover what the sample
+ * cannot: the open-ended last range and the catch-all for other {@code _id} types. The collection is a mock
+ * whose {@code $sample} returns the given ids.
+ */
+class IdRangesTest {
+
+    @Test
+    void splitsASampleIntoAdjacentRangesPlusACatchAllForOtherTypes() {
+        List<Object> sample = new ArrayList<>(IntStream.range(0, 96).boxed().toList());
+
+        List<String> ranges = partition(sample, 3);
+
+        assertEquals(List.of(
+                "{\"_id\": {\"$lt\": 32}}",
+                "{\"$and\": [{\"_id\": {\"$gte\": 32}}, {\"_id\": {\"$lt\": 64}}]}",
+                "{\"_id\": {\"$gte\": 64}}",
+                "{\"_id\": {\"$not\": {\"$type\": \"number\"}}}"), ranges);
+    }
+
+    @Test
+    void collapsesRepeatedBoundaries() {
+        List<Object> sample = List.of("a", "a", "a", "a", "a", "b");
+
+        List<String> ranges = partition(sample, 3);
+
+        assertEquals(List.of(
+                "{\"_id\": {\"$lt\": \"a\"}}",
+                "{\"_id\": {\"$gte\": \"a\"}}",
+                "{\"_id\": {\"$not\": {\"$type\": \"string\"}}}"), ranges);
+    }
+
+    @Test
+    void keepsOneTypedRangeWhenTheSampleHasNoBoundary() {
+        assertEquals(List.of("{\"_id\": {\"$type\": \"string\"}}", "{\"_id\": {\"$not\": {\"$type\": \"string\"}}}"),
+                partition(List.of("only"), 4));
+    }
+
+    @Test
+    void fallsBackToTheWholeCollectionForMixedUnknownOrMissingIds() {
+        assertEquals(List.of("{}"), partition(List.of(1, "two", 3), 2));
+        assertEquals(List.of("{}"), partition(List.of(new Document("compound", 1), new Document("compound", 2)), 2));
+        assertEquals(List.of("{}"), partition(List.of(), 2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void doesNotSampleForASinglePartition() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+
+        assertEquals(List.of(new Document()), IdRanges.partition(collection, 1));
+        verify(collection, never()).aggregate(anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> partition(List<Object> sampledIds, int partitions) {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        AggregateIterable<Document> aggregate = mock(AggregateIterable.class);
+        when(collection.aggregate(anyList())).thenReturn(aggregate);
+        when(aggregate.map(any())).thenAnswer(invocation -> {
+            Function<Document, Object> mapper = invocation.getArgument(0);
+            MongoIterable<Object> mapped = mock(MongoIterable.class);
+            when(mapped.into(any())).thenAnswer(into -> {
+                Collection<Object> target = into.getArgument(0);
+                sampledIds.forEach(id -> target.add(mapper.apply(new Document("_id", id))));
+                return target;
+            });
+            return mapped;
+        });
+        return IdRanges.partition(collection, partitions).stream()
+                .map(range -> range.toBsonDocument(Document.class, MongoClientSettings.getDefaultCodecRegistry()).toJson())
+                .toList();
+    }
+}